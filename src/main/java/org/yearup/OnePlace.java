@@ -2,8 +2,10 @@ package org.yearup;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class OnePlace {
     public static void main(String[] args) {
         SpringApplication.run(OnePlace.class, args);
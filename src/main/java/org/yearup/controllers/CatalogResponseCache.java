@@ -0,0 +1,285 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import org.yearup.data.events.CatalogVersion;
+import org.yearup.data.events.CategoryChangedEvent;
+import org.yearup.data.events.ProductChangedEvent;
+import org.yearup.data.events.ProductsBulkChangedEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of finished catalog responses: the JSON bytes plus a gzip variant compressed once at the
+ * highest level, so a hit is served without a query, row mapping, Jackson or compression.
+ * Entries remember the catalog version they were built for and are only served for that version;
+ * catalog writes also drop every entry. The cache is bounded by the bytes it holds, not the number of
+ * responses: least recently used entries are evicted once catalog.response-cache.max-bytes is exceeded,
+ * which keeps the hot search parameter combinations. A response bigger than a sixteenth of that, such as
+ * an unpaged full catalog, is served without being cached so it cannot push out the rest.
+ * Every response carries Vary: Accept-Encoding and an ETag per encoding, and a matching
+ * If-None-Match gets a 304 before the cache is even consulted.
+ */
+@Component
+public class CatalogResponseCache
+{
+    // share of the budget one response may take
+    private static final int MAX_ENTRY_SHARE = 16;
+
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final long maxBytes;
+
+    // access order, so iteration starts at the least recently used entry
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // bytes held by entries, guarded by entries
+    private long bytes;
+
+    private static final class Entry
+    {
+        private final long version;
+        private final HttpStatus status;
+        private final HttpHeaders headers;
+        private final byte[] identity;
+        // null when there is no body or compressing did not make it smaller
+        private final byte[] gzip;
+
+        private Entry(long version, HttpStatus status, HttpHeaders headers, byte[] identity, byte[] gzip)
+        {
+            this.version = version;
+            this.status = status;
+            this.headers = headers;
+            this.identity = identity;
+            this.gzip = gzip;
+        }
+
+        // the bodies; the headers and key are small next to them
+        private long size()
+        {
+            return (identity == null ? 0 : identity.length) + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    @Autowired
+    public CatalogResponseCache(ObjectMapper objectMapper, CatalogVersion catalogVersion,
+                                @Value("${catalog.response-cache.max-bytes:33554432}") long maxBytes)
+    {
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Serves a cached catalog response, building it with the loader on a miss.
+     * Only 200 and 204 responses are kept; anything else the loader returns is passed through.
+     *
+     * @param request The current request, for Accept-Encoding and If-None-Match.
+     * @param key     Identifies the response, e.g. the path and every parameter that shapes the body.
+     * @param loader  Builds the response from the DAOs; exceptions it throws are rethrown unchanged.
+     * @return the response, or null when a 304 has been written.
+     */
+    public ResponseEntity<?> respond(WebRequest request, String key, Callable<ResponseEntity<?>> loader) throws Exception
+    {
+        // the version is read before the loader runs, see CatalogVersion.etag
+        long version = catalogVersion.current();
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = catalogVersion.etag(version);
+        String gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        if (request.checkNotModified(gzip ? gzipEtag : etag))
+        {
+            return null;
+        }
+
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = entries.get(key);
+        }
+        if (entry == null || entry.version != version)
+        {
+            ResponseEntity<?> response = loader.call();
+            if (response.getStatusCode() != HttpStatus.OK && response.getStatusCode() != HttpStatus.NO_CONTENT)
+            {
+                return response;
+            }
+            entry = toEntry(version, response);
+            if (entry.size() <= maxBytes / MAX_ENTRY_SHARE)
+            {
+                put(key, entry);
+            }
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(entry.status)
+                                                           .headers(entry.headers)
+                                                           .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (entry.identity == null)
+        {
+            return builder.eTag(etag).build();
+        }
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (gzip && entry.gzip != null)
+        {
+            return builder.eTag(gzipEtag).header(HttpHeaders.CONTENT_ENCODING, "gzip").body(entry.gzip);
+        }
+        return builder.eTag(etag).body(entry.identity);
+    }
+
+    /**
+     * Builds a cache key from a path and the values of the parameters that shape the response.
+     */
+    public static String key(String path, Object... parameters)
+    {
+        StringBuilder key = new StringBuilder(path);
+        for (Object parameter : parameters)
+        {
+            key.append('|').append(parameter);
+        }
+        return key.toString();
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        clear();
+    }
+
+    @EventListener
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        clear();
+    }
+
+    @EventListener
+    public void onCategoryChanged(CategoryChangedEvent event)
+    {
+        clear();
+    }
+
+    private void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private void put(String key, Entry entry)
+    {
+        synchronized (entries)
+        {
+            Entry replaced = entries.put(key, entry);
+            bytes += entry.size() - (replaced == null ? 0 : replaced.size());
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (bytes > maxBytes)
+            {
+                bytes -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the bytes of response bodies the cache holds.
+     */
+    long bytes()
+    {
+        synchronized (entries)
+        {
+            return bytes;
+        }
+    }
+
+    private Entry toEntry(long version, ResponseEntity<?> response) throws IOException
+    {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.remove(HttpHeaders.ETAG);
+        if (response.getBody() == null)
+        {
+            return new Entry(version, response.getStatusCode(), headers, null, null);
+        }
+        byte[] identity = objectMapper.writeValueAsBytes(response.getBody());
+        byte[] gzip = compress(identity);
+        return new Entry(version, response.getStatusCode(), headers, identity,
+                         gzip.length < identity.length ? gzip : null);
+    }
+
+    private static byte[] compress(byte[] bytes)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        // built once and served many times, so it is worth the slowest setting
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)
+        {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        })
+        {
+            gzip.write(bytes);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // "gzip, deflate, br" or "gzip;q=0.8" accept gzip, "gzip;q=0" and "identity" do not
+    static boolean acceptsGzip(String acceptEncoding)
+    {
+        if (acceptEncoding == null)
+        {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(","))
+        {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < parts.length; i++)
+            {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q="))
+                {
+                    try
+                    {
+                        accepted = Double.parseDouble(parameter.substring(2)) > 0;
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        accepted = false;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase("gzip"))
+            {
+                gzip = accepted;
+            }
+            else if (name.equals("*"))
+            {
+                wildcard = accepted;
+            }
+        }
+        // an explicit gzip entry wins over the wildcard
+        return gzip != null ? gzip : Boolean.TRUE.equals(wildcard);
+    }
+}
@@ -1,17 +1,29 @@
 package org.yearup.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.yearup.data.events.CatalogVersion;
+import org.yearup.data.index.BestSellersIndex;
+import org.yearup.data.index.CategorySummaryIndex;
 import org.yearup.data.interfaces.CategoryDao;
 import org.yearup.data.interfaces.ProductDao;
 import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
 import org.yearup.models.Product;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.paging.PageRequest;
+import org.yearup.models.paging.ProductPage;
+import org.yearup.models.paging.ProductSort;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 // add the annotations to make this a REST controller
 // add the annotation to make this controller the endpoint for the following url
@@ -20,73 +32,167 @@ import java.util.List;
 
 @RestController
 @RequestMapping("categories")
-@CrossOrigin
+@CrossOrigin(exposedHeaders = ProductPage.NEXT_CURSOR_HEADER)
 public class CategoriesController
 {
     private CategoryDao categoryDao;
     private ProductDao productDao;
+    private ObjectMapper objectMapper;
+    private CatalogVersion catalogVersion;
+    private CatalogResponseCache responseCache;
+    private BestSellersIndex bestSellers;
+    private CategorySummaryIndex summaryIndex;
 
 
     // create an Autowired controller to inject the categoryDao and ProductDao
     @Autowired
-    public CategoriesController(CategoryDao categoryDao, ProductDao productDao){
+    public CategoriesController(CategoryDao categoryDao, ProductDao productDao, ObjectMapper objectMapper,
+                                CatalogVersion catalogVersion, CatalogResponseCache responseCache,
+                                BestSellersIndex bestSellers, CategorySummaryIndex summaryIndex){
         this.categoryDao = categoryDao;
         this.productDao = productDao;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.responseCache = responseCache;
+        this.bestSellers = bestSellers;
+        this.summaryIndex = summaryIndex;
     }
 
     /**
      * Get all categories.
+     * Like every catalog read here, answered with 304 when If-None-Match holds the current catalog ETag.
+     * The serialized and gzipped list is cached until the next catalog write.
      */
     @GetMapping
     // add the appropriate annotation for a get action
-    public ResponseEntity<List<Category>> getAll() {
+    public ResponseEntity<?> getAll(WebRequest request) {
         try {
-            List<Category> categories = categoryDao.getAllCategories();
-            if (categories.isEmpty()) {
-                return ResponseEntity.noContent().build();
-            }
-            return ResponseEntity.ok(categories);
+            return responseCache.respond(request, CatalogResponseCache.key("categories"), () -> {
+                List<Category> categories = categoryDao.getAllCategories();
+                if (categories.isEmpty()) {
+                    return ResponseEntity.noContent().build();
+                }
+                return ResponseEntity.ok(categories);
+            });
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Collections.emptyList());
         }
     }
+    /**
+     * Get every category with its product count, featured product count and price range,
+     * so a navigation menu renders from one call.
+     * Served from aggregates kept in memory and updated on every product write; until they are
+     * built the numbers come from one GROUP BY query. Cached like the category list.
+     */
+    // https://localhost:8080/categories/summary
+    @GetMapping("summary")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<?> getSummaries(WebRequest request) {
+        try {
+            return responseCache.respond(request, CatalogResponseCache.key("categories/summary"), () -> {
+                List<CategorySummary> summaries = summaryIndex.isReady()
+                        ? summaryIndex.summaries()
+                        : categoryDao.getSummaries();
+                if (summaries.isEmpty()) {
+                    return ResponseEntity.noContent().build();
+                }
+                return ResponseEntity.ok(summaries);
+            });
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
     /**
      * Get category by ID.
      */
     // add the appropriate annotation for a get action
     @GetMapping("{id}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<Category> getById(@PathVariable int id) {
+    public ResponseEntity<Category> getById(@PathVariable int id, WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         try {
             Category category = categoryDao.getById(id);
             if (category == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
-            return ResponseEntity.ok(category);
+            return ResponseEntity.ok().eTag(etag).body(category);
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     /**
      * Get all products within a specific category.
+     * Accepts the same sort, limit, after and stream parameters as GET /products.
+     * Apart from streams, responses are kept serialized and gzipped until the catalog changes.
      */
     // the url to return all products in category 1 would look like this
     // https://localhost:8080/categories/1/products
     @GetMapping("{categoryId}/products")
-    public ResponseEntity<List<Product>> getProductsByCatId(@PathVariable int categoryId) {
+    public ResponseEntity<?> getProductsByCatId(
+            @PathVariable int categoryId,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "stream", defaultValue = "false") boolean stream,
+            WebRequest request) {
         try {
-            List<Product> products = productDao.listByCategoryId(categoryId);
-            if (products.isEmpty()) {
-                return ResponseEntity.noContent().build();
+            if (stream) {
+                if (limit != null || after != null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                String etag = catalogVersion.etag();
+                if (request.checkNotModified(etag)) {
+                    return null;
+                }
+                ProductFilter filter = new ProductFilter(List.of(categoryId), null, null, null);
+                return ProductsController.streamResponse(productDao, objectMapper, filter, ProductSort.fromParam(sort), etag);
             }
-            return ResponseEntity.ok(products);
+            PageRequest pageRequest = PageRequest.of(sort, limit, after);
+            String key = CatalogResponseCache.key("categories/products", categoryId, pageRequest.getSort(), limit, after);
+            return responseCache.respond(request, key, () ->
+                    ProductsController.pageResponse(productDao.listByCategoryId(categoryId, pageRequest), null));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Collections.emptyList());
         }
     }
 
+    /**
+     * Get the best selling products of a category, ranked by units ordered and cart additions.
+     * Served from a ranking kept in memory and updated on every order and cart addition.
+     */
+    // https://localhost:8080/categories/1/top
+    @GetMapping("{categoryId}/top")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<List<Product>> getTopProducts(
+            @PathVariable int categoryId,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        if (limit < 1 || limit > BestSellersIndex.TOP_K) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!bestSellers.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        try {
+            int[] top = bestSellers.top(categoryId, limit);
+            if (top.length == 0) {
+                return categoryDao.getById(categoryId) == null
+                        ? ResponseEntity.status(HttpStatus.NOT_FOUND).build()
+                        : ResponseEntity.noContent().build();
+            }
+            List<Integer> ids = Arrays.stream(top).boxed().collect(Collectors.toList());
+            return ResponseEntity.ok(productDao.getByIds(ids).getProducts());
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Add a new category.
      * Accessible only to users with ADMIN role.
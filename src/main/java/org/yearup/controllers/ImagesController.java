@@ -0,0 +1,204 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.yearup.data.images.ImageStore;
+import org.yearup.data.images.ThumbnailService;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the product images named by Product.imageUrl from the images.dir directory.
+ * http://localhost:8080/images/smartphone.jpg
+ * http://localhost:8080/images/thumbnails/320/smartphone.jpg
+ */
+@RestController
+@RequestMapping("images")
+@CrossOrigin
+public class ImagesController
+{
+    // Tomcat request attributes that hand the file to the connector, which sends it with sendfile
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final long ONE_YEAR_SECONDS = 365L * 24 * 60 * 60;
+    private static final long ONE_DAY_SECONDS = 24 * 60 * 60;
+
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    // longer than any single resize; past it the pool is backed up and the client should retry
+    private static final long THUMBNAIL_TIMEOUT_SECONDS = 10;
+
+    private ImageStore imageStore;
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    public ImagesController(ImageStore imageStore, ThumbnailService thumbnailService)
+    {
+        this.imageStore = imageStore;
+        this.thumbnailService = thumbnailService;
+    }
+
+    /**
+     * Endpoint to fetch an image. The bytes go from the file to the socket without passing through
+     * the Java heap: Tomcat's sendfile support when the connector offers it, FileChannel.transferTo otherwise.
+     * Supports a single byte range (Range and If-Range) and conditional requests on a content hash ETag.
+     * Content addressed names never change and are cached for a year; other names for a day.
+     * This endpoint is accessible to all users.
+     *
+     * @param name The image file name.
+     */
+    @GetMapping("{name:.+}")
+    @PreAuthorize("permitAll()")
+    public void getImage(@PathVariable String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file = imageStore.find(name);
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        serve(file, name, request, response);
+    }
+
+    /**
+     * Endpoint to fetch an image scaled down to one of the thumbnail widths (images.thumbnails.widths).
+     * The first request for a variant generates it, later requests are served from the thumbnail
+     * directory exactly like full images.
+     * This endpoint is accessible to all users.
+     *
+     * @param width The thumbnail width in pixels.
+     * @param name  The image file name.
+     */
+    @GetMapping("thumbnails/{width}/{name:.+}")
+    @PreAuthorize("permitAll()")
+    public void getThumbnail(@PathVariable int width, @PathVariable String name,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path file;
+        try {
+            CompletableFuture<Path> thumbnail = thumbnailService.thumbnail(name, width);
+            if (thumbnail == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            file = thumbnail.get(THUMBNAIL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (IllegalArgumentException ex) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        } catch (RejectedExecutionException | TimeoutException ex) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        } catch (ExecutionException ex) {
+            response.sendError(ex.getCause() instanceof IllegalArgumentException
+                    ? HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE
+                    : HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        serve(file, name, request, response);
+    }
+
+    // the requested name decides the cache lifetime, the file its content type and bytes
+    private void serve(Path file, String name, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = "\"" + imageStore.sha256(file) + "\"";
+        long length = Files.size(file);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, ImageStore.isContentAddressed(name)
+                ? "public, max-age=" + ONE_YEAR_SECONDS + ", immutable"
+                : "public, max-age=" + ONE_DAY_SECONDS);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // a stale If-Range means the client's partial copy is of other bytes, so it gets the whole image
+        if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            Matcher matcher = SINGLE_RANGE.matcher(range.trim());
+            // several ranges are allowed to be answered with the whole image
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                try {
+                    if (matcher.group(1).isEmpty()) {
+                        // "bytes=-500" is the last 500 bytes
+                        start = Math.max(0, length - Long.parseLong(matcher.group(2)));
+                    } else {
+                        start = Long.parseLong(matcher.group(1));
+                        if (!matcher.group(2).isEmpty()) {
+                            end = Math.min(end, Long.parseLong(matcher.group(2)));
+                        }
+                    }
+                } catch (NumberFormatException ex) {
+                    start = length;
+                }
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString()).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,103 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.yearup.data.index.ProductFuzzyIndex;
+import org.yearup.data.index.ProductSuggestIndex;
+import org.yearup.data.index.ProductTextIndex;
+import org.yearup.models.Product;
+import org.yearup.models.Suggestion;
+
+import java.util.List;
+
+/**
+ * Text search endpoints over the product catalog, served from in-memory indexes.
+ * http://localhost:8080/products/search
+ * http://localhost:8080/products/suggest
+ */
+@RestController
+@RequestMapping("products")
+@CrossOrigin
+public class ProductSearchController
+{
+    private static final int MAX_LIMIT = 100;
+
+    private ProductTextIndex textIndex;
+    private ProductSuggestIndex suggestIndex;
+    private ProductFuzzyIndex fuzzyIndex;
+
+    @Autowired
+    public ProductSearchController(ProductTextIndex textIndex,
+                                   ProductSuggestIndex suggestIndex,
+                                   ProductFuzzyIndex fuzzyIndex)
+    {
+        this.textIndex = textIndex;
+        this.suggestIndex = suggestIndex;
+        this.fuzzyIndex = fuzzyIndex;
+    }
+
+    /**
+     * Endpoint for full text search over product names and descriptions, ranked by BM25.
+     * Every word must match; "quoted words" must appear as a phrase and word* matches a prefix.
+     * With fuzzy=true the words are instead matched against product names allowing typos,
+     * so "hedphones" finds "Headphones".
+     * This endpoint is accessible to all users.
+     *
+     * @param query The search text.
+     * @param limit Optional maximum number of results, 20 by default.
+     * @param fuzzy Optional flag for typo tolerant name lookup.
+     * @return The best matching products, best match first.
+     */
+    @GetMapping("search")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<List<Product>> search(
+            @RequestParam(name = "q") String query,
+            @RequestParam(name = "limit", defaultValue = "20") int limit,
+            @RequestParam(name = "fuzzy", defaultValue = "false") boolean fuzzy) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!(fuzzy ? fuzzyIndex.isReady() : textIndex.isReady())) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        try {
+            List<Product> products = fuzzy ? fuzzyIndex.search(query, limit) : textIndex.search(query, limit);
+            if (products.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            return ResponseEntity.ok(products);
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint for typeahead completions over product and category names.
+     * Any word of a name can match, so "shi" completes "Men's Dress Shirt".
+     * This endpoint is accessible to all users.
+     *
+     * @param prefix The text typed so far.
+     * @param limit Optional maximum number of completions, 10 by default.
+     * @return The best completions: categories first, then products by page views, featured first among equal views.
+     */
+    @GetMapping("suggest")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam(name = "prefix") String prefix,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        if (limit < 1 || limit > ProductSuggestIndex.TOP_K) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!suggestIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        try {
+            return ResponseEntity.ok(suggestIndex.suggest(prefix, limit));
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
@@ -1,56 +1,222 @@
 package org.yearup.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.yearup.data.events.CatalogVersion;
+import org.yearup.data.images.ImageStore;
+import org.yearup.data.index.FeaturedProductsIndex;
+import org.yearup.data.importing.ProductRowReader;
+import org.yearup.data.importing.SupplierFeedSync;
+import org.yearup.data.views.ProductViewCounter;
+import org.yearup.models.ImportReport;
+import org.yearup.models.SyncReport;
 import org.yearup.models.Product;
 import org.yearup.data.interfaces.ProductDao;
+import org.yearup.models.ProductBatch;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.ProductSearchResult;
+import org.yearup.models.ProductViews;
+import org.yearup.models.paging.PageRequest;
+import org.yearup.models.paging.ProductPage;
+import org.yearup.models.paging.ProductSort;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
 
 @RestController
 @RequestMapping("products")
-@CrossOrigin
+@CrossOrigin(exposedHeaders = ProductPage.NEXT_CURSOR_HEADER)
 public class ProductsController
 {
+    // a URL with more IDs than this would not get past most proxies anyway
+    private static final int MAX_IDS = 1000;
+    private static final String SORT_VIEWS = "views";
+    private static final int DEFAULT_VIEWS_LIMIT = 50;
+
     private ProductDao productDao;
+    private ObjectMapper objectMapper;
+    private CatalogVersion catalogVersion;
+    private CatalogResponseCache responseCache;
+    private SupplierFeedSync supplierFeedSync;
+    private FeaturedProductsIndex featuredIndex;
+    private ImageStore imageStore;
+    private ProductViewCounter viewCounter;
 
 
     @Autowired
-    public ProductsController(ProductDao productDao)
+    public ProductsController(ProductDao productDao,
+                              ObjectMapper objectMapper,
+                              CatalogVersion catalogVersion,
+                              CatalogResponseCache responseCache,
+                              SupplierFeedSync supplierFeedSync,
+                              FeaturedProductsIndex featuredIndex,
+                              ImageStore imageStore,
+                              ProductViewCounter viewCounter)
     {
         this.productDao = productDao;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.responseCache = responseCache;
+        this.supplierFeedSync = supplierFeedSync;
+        this.featuredIndex = featuredIndex;
+        this.imageStore = imageStore;
+        this.viewCounter = viewCounter;
     }
 
 
     /**
      * Endpoint to search for products based on optional query parameters such as
      * category, price range, and color.
+     * Category and color accept several values (?cat=1&cat=2 or ?cat=1,2); a product matches
+     * if it is in any of the categories and has any of the colors.
+     * With a limit the result is paged; the X-Next-Cursor response header holds the value
+     * to pass as "after" for the next page and is absent on the last page.
+     * With facets=true the body is an object holding the products and the color, category and
+     * price bucket counts of the whole matching set.
+     * With stream=true every matching product is written out as it is read, so large results
+     * are never held in memory; limit, after and facets can not be combined with it.
+     * Responses carry the catalog version as ETag; a matching If-None-Match gets a 304.
+     * Apart from streams, responses are kept serialized and gzipped until the catalog changes.
+     * With sort=views the products are ordered by page views; view counts change with every request,
+     * so these responses are neither cached nor tagged and can not be paged with after, streamed or faceted;
+     * they hold at most limit products, 50 if no limit is given.
      * This endpoint is accessible to all users.
      *
-     * @param categoryId Optional category ID to filter products.
+     * @param categoryIds Optional category IDs to filter products.
      * @param minPrice Optional minimum price to filter products.
      * @param maxPrice Optional maximum price to filter products.
-     * @param color Optional color to filter products.
+     * @param colors Optional colors to filter products.
+     * @param sort Optional sort order: product_id (default), price_asc, price_desc, name or views.
+     * @param limit Optional page size.
+     * @param after Optional cursor returned with the previous page.
+     * @param facets Optional flag to include facet counts.
+     * @param stream Optional flag to stream the whole result.
      * @return List of products matching the search criteria.
      */
     @GetMapping()
     @PreAuthorize("permitAll()")
-    public ResponseEntity<List<Product>> search(
-            @RequestParam(name = "cat", required = false) Integer categoryId,
+    public ResponseEntity<?> search(
+            @RequestParam(name = "cat", required = false) List<Integer> categoryIds,
             @RequestParam(name = "minPrice", required = false) BigDecimal minPrice,
             @RequestParam(name = "maxPrice", required = false) BigDecimal maxPrice,
-            @RequestParam(name = "color", required = false) String color) {
+            @RequestParam(name = "color", required = false) List<String> colors,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestParam(name = "facets", defaultValue = "false") boolean facets,
+            @RequestParam(name = "stream", defaultValue = "false") boolean stream,
+            WebRequest request) {
         try {
-            List<Product> products = productDao.search(categoryId, minPrice, maxPrice, color);
-            if (products.isEmpty()) {
-                return ResponseEntity.noContent().build();
+            ProductFilter filter = new ProductFilter(categoryIds, minPrice, maxPrice, colors);
+            if (sort != null && SORT_VIEWS.equalsIgnoreCase(sort.trim())) {
+                if (stream || after != null || facets) {
+                    return ResponseEntity.badRequest().build();
+                }
+                return ResponseEntity.ok(mostViewed(filter, limit == null ? DEFAULT_VIEWS_LIMIT : limit));
+            }
+            if (stream) {
+                if (limit != null || after != null || facets) {
+                    return ResponseEntity.badRequest().build();
+                }
+                String etag = catalogVersion.etag();
+                if (request.checkNotModified(etag)) {
+                    return null;
+                }
+                return streamResponse(productDao, objectMapper, filter, ProductSort.fromParam(sort), etag);
             }
-            return ResponseEntity.ok(products);
+            PageRequest pageRequest = PageRequest.of(sort, limit, after);
+            String key = CatalogResponseCache.key("products", filter.getCategoryIds(), filter.getMinPrice(),
+                    filter.getMaxPrice(), filter.getColors(), pageRequest.getSort(), limit, after, facets);
+            return responseCache.respond(request, key, () -> {
+                ProductPage page = productDao.search(filter, pageRequest);
+                if (!facets || page.getItems().isEmpty()) {
+                    return pageResponse(page, null);
+                }
+                ResponseEntity<List<Product>> response = pageResponse(page, null);
+                return ResponseEntity.ok()
+                                     .headers(response.getHeaders())
+                                     .body(new ProductSearchResult(page.getItems(), productDao.facets(filter)));
+            });
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint to fetch several products by ID in one request, e.g. /products?ids=1,2,3.
+     * Takes precedence over the search parameters. The products come back in the order of
+     * the IDs; IDs without a product are listed in missingIds.
+     * Responses carry the catalog version as ETag and are cached like searches.
+     * This endpoint is accessible to all users.
+     *
+     * @param productIds The IDs of the products to fetch, at most 1000.
+     * @return The products found and the IDs that were not found.
+     */
+    @GetMapping(params = "ids")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<?> getByIds(@RequestParam(name = "ids") List<Integer> productIds, WebRequest request) {
+        if (productIds.isEmpty() || productIds.size() > MAX_IDS || productIds.contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            String key = CatalogResponseCache.key("products/ids", productIds);
+            return responseCache.respond(request, key, () -> {
+                ProductBatch batch = productDao.getByIds(productIds);
+                return ResponseEntity.ok(batch);
+            });
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint to fetch the featured products, for example for the home page.
+     * Served from a list kept in memory and updated on every product write, never from the database.
+     * This endpoint is accessible to all users.
+     *
+     * @param categoryId Optional category ID to only get the featured products of that category.
+     * @return The featured products in product ID order.
+     */
+    @GetMapping("featured")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<?> getFeatured(@RequestParam(name = "cat", required = false) Integer categoryId,
+                                         WebRequest request) {
+        if (!featuredIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        try {
+            return responseCache.respond(request, CatalogResponseCache.key("products/featured", categoryId), () -> {
+                List<Product> products = featuredIndex.featured(categoryId);
+                if (products.isEmpty()) {
+                    return ResponseEntity.noContent().build();
+                }
+                return ResponseEntity.ok(products);
+            });
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -58,6 +224,7 @@ public class ProductsController
 
     /**
      * Endpoint to fetch a product by its ID.
+     * Responses carry the catalog version as ETag; a matching If-None-Match gets a 304.
      * This endpoint is accessible to all users.
      *
      * @param productId ID of the product to fetch.
@@ -66,17 +233,45 @@ public class ProductsController
      */
     @GetMapping("{productId}")
     @PreAuthorize("permitAll()")
-    public ResponseEntity<Product> getById(@PathVariable int productId) {
+    public ResponseEntity<Product> getById(@PathVariable int productId, WebRequest request) {
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(etag)) {
+            // the client still shows the product, so this is a view as well if the product is known to exist
+            viewCounter.revisited(productId);
+            return null;
+        }
         try {
             Product product = productDao.getById(productId);
             if (product == null) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
             }
-            return ResponseEntity.ok(product);
+            viewCounter.viewed(productId);
+            return ResponseEntity.ok().eTag(etag).body(product);
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint to fetch the most viewed products with their view counts.
+     * Counts include views not yet written to the database. Only accessible to users with ADMIN role.
+     *
+     * @param limit Optional maximum number of products, 50 by default.
+     * @return The product IDs and view counts, most viewed first.
+     */
+    @GetMapping("views")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<List<ProductViews>> getMostViewed(@RequestParam(name = "limit", defaultValue = "50") int limit) {
+        if (limit < 1 || limit > PageRequest.MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(viewCounter.mostViewed(limit));
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
     /**
      * Endpoint to add a new product. Only accessible to users with ADMIN role.
      *
@@ -94,6 +289,53 @@ public class ProductsController
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+    /**
+     * Endpoint to import many products from one NDJSON or CSV upload. Only accessible to users with ADMIN role.
+     * The body is read as it arrives and inserted in batches; products whose name already exists in
+     * their category are skipped, and rows that can not be imported are listed in the report
+     * without stopping the rest.
+     *
+     * @param contentType application/x-ndjson for one product object per line, or text/csv with a header line.
+     * @param body        The feed.
+     * @return The number of rows read, inserted, skipped and rejected, with the reasons.
+     */
+    @PostMapping(path = "import", consumes = {"application/x-ndjson", "text/csv"})
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<ImportReport> importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                       InputStream body) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            Charset charset = mediaType.getCharset() != null ? mediaType.getCharset() : StandardCharsets.UTF_8;
+            Reader reader = new InputStreamReader(body, charset);
+            ProductRowReader rows = mediaType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                    ? ProductRowReader.csv(reader)
+                    : ProductRowReader.ndjson(reader, objectMapper);
+            return ResponseEntity.ok(productDao.importProducts(rows));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint to apply the supplier price and stock feed now instead of waiting for the nightly run.
+     * Only accessible to users with ADMIN role.
+     *
+     * @return The number of products changed, already current and unknown, or 404 if there is no feed file.
+     */
+    @PostMapping("sync")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<SyncReport> syncSupplierFeed() {
+        try {
+            return ResponseEntity.ok(supplierFeedSync.sync());
+        } catch (NoSuchFileException ex) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Endpoint to update an existing product by its ID. Only accessible to users with ADMIN role.
      *
@@ -113,6 +355,35 @@ public class ProductsController
     }
 
 
+    /**
+     * Endpoint to upload a product image as the multipart part "image". Only accessible to users with ADMIN role.
+     * The image is streamed to disk and stored under the SHA-256 of its content, so products sharing
+     * an image share one file; then only the product's image_url column is pointed at it.
+     *
+     * @param productId The ID of the product the image is for.
+     * @param image A jpg, jpeg, png, gif or webp file.
+     * @return The updated product, 404 if there is no such product, 400 for other file types.
+     */
+    @PostMapping(path = "{productId}/image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<Product> uploadImage(@PathVariable int productId, @RequestPart("image") MultipartFile image) {
+        try {
+            String name;
+            try (InputStream content = image.getInputStream()) {
+                name = imageStore.store(content, image.getOriginalFilename());
+            }
+            // for an unknown product the stored file is merely unused, it may be shared with other products
+            Product product = productDao.updateImageUrl(productId, name);
+            if (product == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            return ResponseEntity.ok(product);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 
     /**
      * Endpoint to delete a product by its ID. Only accessible to users with ADMIN role.
@@ -135,4 +406,87 @@ public class ProductsController
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    /**
+     * Helper method to turn a page into a response: 204 when empty, otherwise the products
+     * with the next cursor and, if given, the catalog ETag in headers.
+     */
+    static ResponseEntity<List<Product>> pageResponse(ProductPage page, String etag) {
+        if (page.getItems().isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        if (page.getNextCursor() != null) {
+            response.header(ProductPage.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    /**
+     * Helper method to pick the most viewed products matching a filter, most viewed first, ties by product ID.
+     * The matches stream through a heap of at most limit products, so memory does not grow with the catalog.
+     */
+    private List<Product> mostViewed(ProductFilter filter, int limit) {
+        if (limit < 1 || limit > PageRequest.MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + PageRequest.MAX_LIMIT);
+        }
+        // least viewed on top, so the head is the one to drop; each count is read once as it keeps changing
+        PriorityQueue<ViewedProduct> top = new PriorityQueue<>(
+                Comparator.<ViewedProduct>comparingLong(viewed -> viewed.views)
+                          .thenComparing(viewed -> viewed.product.getProductId(), Comparator.reverseOrder()));
+        productDao.forEachMatch(filter, ProductSort.PRODUCT_ID, product -> {
+            top.add(new ViewedProduct(product, viewCounter.views(product.getProductId())));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<Product> sorted = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            sorted.add(top.poll().product);
+        }
+        Collections.reverse(sorted);
+        return sorted;
+    }
+
+    private static final class ViewedProduct {
+        private final Product product;
+        private final long views;
+
+        private ViewedProduct(Product product, long views) {
+            this.product = product;
+            this.views = views;
+        }
+    }
+
+    /**
+     * Helper method to write every product matching a filter as one JSON array while the DAO reads them.
+     * The generator flushes to the response each time its buffer fills, so memory stays flat
+     * however many products match. Errors after the first bytes went out can only abort the response.
+     */
+    static ResponseEntity<StreamingResponseBody> streamResponse(ProductDao productDao,
+                                                                ObjectMapper objectMapper,
+                                                                ProductFilter filter,
+                                                                ProductSort sort,
+                                                                String etag) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                json.writeStartArray();
+                productDao.forEachMatch(filter, sort, product -> {
+                    try {
+                        json.writeObject(product);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                json.writeEndArray();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 }
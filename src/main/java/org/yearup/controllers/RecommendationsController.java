@@ -0,0 +1,112 @@
+package org.yearup.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.yearup.data.index.CoPurchaseIndex;
+import org.yearup.data.index.SimilarProductsIndex;
+import org.yearup.data.interfaces.ProductDao;
+import org.yearup.models.Product;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Product recommendation endpoints, served from precomputed in-memory lists.
+ * http://localhost:8080/products/1/related
+ * http://localhost:8080/products/1/similar
+ */
+@RestController
+@RequestMapping("products")
+@CrossOrigin
+public class RecommendationsController
+{
+    private ProductDao productDao;
+    private CoPurchaseIndex coPurchaseIndex;
+    private SimilarProductsIndex similarIndex;
+
+    @Autowired
+    public RecommendationsController(ProductDao productDao,
+                                     CoPurchaseIndex coPurchaseIndex,
+                                     SimilarProductsIndex similarIndex)
+    {
+        this.productDao = productDao;
+        this.coPurchaseIndex = coPurchaseIndex;
+        this.similarIndex = similarIndex;
+    }
+
+    /**
+     * Endpoint for "frequently bought together": the products that were most often ordered
+     * together with a product.
+     * This endpoint is accessible to all users.
+     *
+     * @param productId The ID of the product.
+     * @param limit Optional maximum number of products, 10 by default.
+     * @return The related products, most often bought together first.
+     */
+    @GetMapping("{productId}/related")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<List<Product>> getRelated(
+            @PathVariable int productId,
+            @RequestParam(name = "limit", defaultValue = "10") int limit) {
+        if (limit < 1 || limit > CoPurchaseIndex.TOP_K) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!coPurchaseIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        try {
+            int[] related = coPurchaseIndex.related(productId);
+            return productsResponse(productId, related, limit);
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Endpoint for "similar items": the products whose name, description, color and category are
+     * closest to those of a product. Works for products that were never ordered.
+     * This endpoint is accessible to all users.
+     *
+     * @param productId The ID of the product.
+     * @param k Optional maximum number of products, 10 by default.
+     * @return The similar products, most similar first.
+     */
+    @GetMapping("{productId}/similar")
+    @PreAuthorize("permitAll()")
+    public ResponseEntity<List<Product>> getSimilar(
+            @PathVariable int productId,
+            @RequestParam(name = "k", defaultValue = "10") int k) {
+        if (k < 1 || k > SimilarProductsIndex.MAX_K) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!similarIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        try {
+            int[] similar = similarIndex.similar(productId, k);
+            return productsResponse(productId, similar == null ? new int[0] : similar, k);
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // 404 for an unknown product, 204 when it has no recommendations
+    private ResponseEntity<List<Product>> productsResponse(int productId, int[] productIds, int limit) {
+        if (productIds.length == 0) {
+            return productDao.getById(productId) == null
+                    ? ResponseEntity.status(HttpStatus.NOT_FOUND).build()
+                    : ResponseEntity.noContent().build();
+        }
+        List<Integer> ids = Arrays.stream(productIds).limit(limit).boxed().collect(Collectors.toList());
+        // products deleted since they were counted are listed as missing and left out
+        List<Product> products = productDao.getByIds(ids).getProducts();
+        if (products.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(products);
+    }
+}
@@ -10,11 +10,13 @@ import org.springframework.web.server.ResponseStatusException;
 import org.yearup.data.interfaces.ProductDao;
 import org.yearup.data.interfaces.ShoppingCartDao;
 import org.yearup.data.interfaces.UserDao;
+import org.yearup.models.cart.CartItemChange;
 import org.yearup.models.cart.ShoppingCart;
 import org.yearup.models.cart.ShoppingCartItem;
 import org.yearup.models.User;
 
 import java.security.Principal;
+import java.util.List;
 
 // convert this class to a REST controller
 // only logged in users should have access to these actions
@@ -23,6 +25,9 @@ import java.security.Principal;
 @PreAuthorize("isAuthenticated()")
 @CrossOrigin
 public class ShoppingCartController {
+    // products per batch request; a reorder or a saved list is far smaller
+    private static final int MAX_ITEMS = 500;
+
     // a shopping cart requires
     private ShoppingCartDao shoppingCartDao;
     private UserDao userDao;
@@ -69,11 +74,15 @@ public class ShoppingCartController {
 
     /**
      * Add a product to the cart for the currently logged-in user. (json passed )
+     * The optional quantity (1 by default) is added to what is already in the cart, atomically,
+     * and the cart line with its new quantity is returned.
      */
     // add a POST method to add a product to the cart - the url should be
     // https://localhost:8080/cart/products/15 (15 is the productId to be added
     @PostMapping("/products/{id}")
-    public ResponseEntity<?> postCart(@PathVariable int id, Principal principal) {
+    public ResponseEntity<?> postCart(@PathVariable int id,
+                                      @RequestParam(name = "quantity", defaultValue = "1") int quantity,
+                                      Principal principal) {
         try {
             String userName = principal.getName();
             User user = userDao.getByUserName(userName);
@@ -82,16 +91,73 @@ public class ShoppingCartController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
             }
 
-            shoppingCartDao.post(user, id);
-            return ResponseEntity.status(HttpStatus.CREATED).body("Product added to cart");
+            ShoppingCartItem line = shoppingCartDao.addItem(user, id, quantity);
+            if (line == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Product not found");
+            }
+            return ResponseEntity.status(HttpStatus.CREATED).body(line);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error");
         }
     }
 
 
+    /**
+     * Add many products to the cart for the currently logged-in user in one request, e.g. to reorder
+     * a past order. The body is a list of productId/quantity pairs; the quantities are added to what
+     * is already in the cart. All changes are applied in one transaction, or none if any product is unknown.
+     * Returns the updated cart.
+     */
+    // https://localhost:8080/cart/products
+    @PostMapping("/products")
+    public ResponseEntity<?> postCartItems(@RequestBody List<CartItemChange> items, Principal principal) {
+        if (items == null || items.isEmpty() || items.size() > MAX_ITEMS || items.contains(null)) {
+            return ResponseEntity.badRequest().body("Between 1 and " + MAX_ITEMS + " items are required");
+        }
+        try {
+            User user = userDao.getByUserName(principal.getName());
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+            }
+            return ResponseEntity.ok(shoppingCartDao.addItems(user, items));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error");
+        }
+    }
+
+    /**
+     * Set the quantities of many products in the cart for the currently logged-in user in one request,
+     * e.g. to restore a saved list. The body is a list of productId/quantity pairs; a quantity of 0
+     * removes the product, products not listed are left alone. All changes are applied in one
+     * transaction, or none if any product is unknown. Returns the updated cart.
+     */
+    // https://localhost:8080/cart
+    @PutMapping()
+    public ResponseEntity<?> putCartItems(@RequestBody List<CartItemChange> items, Principal principal) {
+        if (items == null || items.isEmpty() || items.size() > MAX_ITEMS || items.contains(null)) {
+            return ResponseEntity.badRequest().body("Between 1 and " + MAX_ITEMS + " items are required");
+        }
+        try {
+            User user = userDao.getByUserName(principal.getName());
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+            }
+            return ResponseEntity.ok(shoppingCartDao.setItems(user, items));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error");
+        }
+    }
+
     /**
      * Update the quantity of a product in the cart for the currently logged-in user. (json passed)
+     * Adds the line if the product is not in the cart yet; a quantity of 0 removes it.
+     * Returns the cart line with its new quantity.
      */
     // add a PUT method to update an existing product in the cart - the url should be
     // https://localhost:8080/cart/products/15 (15 is the productId to be updated)
@@ -106,8 +172,41 @@ public class ShoppingCartController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
             }
 
-            shoppingCartDao.update(user, id, item.getQuantity());
-            return ResponseEntity.ok("Product quantity updated");
+            if (item.getQuantity() < 0) {
+                return ResponseEntity.badRequest().body("quantity can not be negative");
+            }
+            if (item.getQuantity() == 0) {
+                shoppingCartDao.removeItem(user, id);
+                return ResponseEntity.noContent().build();
+            }
+            ShoppingCartItem line = shoppingCartDao.setItem(user, id, item.getQuantity());
+            if (line == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Product not found");
+            }
+            return ResponseEntity.ok(line);
+        } catch (Exception ex) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error");
+        }
+    }
+
+    /**
+     * Remove a single product from the cart for the currently logged-in user.
+     */
+    // https://localhost:8080/cart/products/15 (15 is the productId to be removed)
+    @DeleteMapping("/products/{id}")
+    public ResponseEntity<?> deleteCartItem(@PathVariable int id, Principal principal) {
+        try {
+            String userName = principal.getName();
+            User user = userDao.getByUserName(userName);
+
+            if (user == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+            }
+
+            if (!shoppingCartDao.removeItem(user, id)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Product not in cart");
+            }
+            return ResponseEntity.noContent().build();
         } catch (Exception ex) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Internal server error");
         }
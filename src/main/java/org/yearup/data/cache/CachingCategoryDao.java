@@ -0,0 +1,334 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.events.CategoryChangedEvent;
+import org.yearup.data.interfaces.CategoryDao;
+import org.yearup.data.mysql.MySqlCategoryDao;
+import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link CategoryDao} that answers reads from an immutable snapshot of the categories table.
+ * The snapshot holds the categories by ID and by case-insensitive name, matching how MySQL compares
+ * names. Writes go to the database first; the {@link CategoryChangedEvent} the delegate publishes for them
+ * swaps in a copy of the snapshot with the change applied. This listener runs ahead of every other one, so
+ * the response cache and the catalog version never see the new version while reads still get the old snapshot.
+ * <p>
+ * A scheduled check every quarter of categories.cache.refresh-ms reloads the snapshot in the background
+ * once it is three quarters of that old, so it is replaced before it expires; should the schedule fall
+ * behind, the first read of an expired snapshot starts the reload. Reads keep answering from the current
+ * snapshot, so after the first load they never wait for the database. A reload that overlaps a write is
+ * discarded and read again rather than undoing the write.
+ * If reloading fails the last snapshot keeps being served, and the next attempt waits
+ * {@value #RETRY_MIN_MS} ms, doubling with every further failure up to categories.cache.refresh-ms.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "categories.cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CachingCategoryDao implements CategoryDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(CachingCategoryDao.class);
+
+    private static final long RETRY_MIN_MS = 1000;
+    // reloads in a row that writes may discard before waiting for the next attempt
+    private static final int MAX_RELOADS = 3;
+
+    private final CategoryDao delegate;
+    private final long refreshNanos;
+    private final long refreshAheadNanos;
+    private final LongSupplier clock;
+    private final ExecutorService refresher;
+
+    // null until the first read; only replaced, never changed
+    private volatile Snapshot snapshot;
+    // incremented by every write, so a reload that read the table before the write can tell
+    private long writes;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // clock time before which no reload is started, set after a failed or discarded one
+    private volatile long retryAt;
+    // failed reloads in a row; only touched by the refresher thread
+    private int failures;
+
+    private static final class Snapshot
+    {
+        private final Map<Integer, Category> byId;
+        // lower-cased name -> category
+        private final Map<String, Category> byName;
+        private final List<Category> all;
+        private final long loadedAt;
+
+        private Snapshot(TreeMap<Integer, Category> byId, long loadedAt)
+        {
+            Map<String, Category> byName = new HashMap<>();
+            for (Category category : byId.values())
+            {
+                if (category.getName() != null)
+                {
+                    byName.put(key(category.getName()), category);
+                }
+            }
+            this.byId = Collections.unmodifiableMap(byId);
+            this.byName = Map.copyOf(byName);
+            this.all = List.copyOf(byId.values());
+            this.loadedAt = loadedAt;
+        }
+
+        private static Snapshot of(List<Category> categories, long loadedAt)
+        {
+            TreeMap<Integer, Category> byId = new TreeMap<>();
+            for (Category category : categories)
+            {
+                byId.put(category.getCategoryId(), copy(category));
+            }
+            return new Snapshot(byId, loadedAt);
+        }
+
+        private Snapshot with(Category category)
+        {
+            TreeMap<Integer, Category> copy = new TreeMap<>(byId);
+            copy.put(category.getCategoryId(), copy(category));
+            return new Snapshot(copy, loadedAt);
+        }
+
+        private Snapshot without(int categoryId)
+        {
+            TreeMap<Integer, Category> copy = new TreeMap<>(byId);
+            copy.remove(categoryId);
+            return new Snapshot(copy, loadedAt);
+        }
+    }
+
+    @Autowired
+    public CachingCategoryDao(MySqlCategoryDao delegate,
+                              @Value("${categories.cache.refresh-ms:60000}") long refreshMillis)
+    {
+        this(delegate, refreshMillis, System::nanoTime, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "category-refresh");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    CachingCategoryDao(CategoryDao delegate, long refreshMillis, LongSupplier clock, ExecutorService refresher)
+    {
+        this.delegate = delegate;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+        this.refreshAheadNanos = refreshNanos / 4 * 3;
+        this.clock = clock;
+        this.refresher = refresher;
+    }
+
+    @Override
+    public List<Category> getAllCategories()
+    {
+        List<Category> all = snapshot().all;
+        List<Category> categories = new ArrayList<>(all.size());
+        for (Category category : all)
+        {
+            categories.add(copy(category));
+        }
+        return categories;
+    }
+
+    @Override
+    public Category getById(int categoryId)
+    {
+        return copy(snapshot().byId.get(categoryId));
+    }
+
+    @Override
+    public Category getByName(String name)
+    {
+        return name == null ? null : copy(snapshot().byName.get(key(name)));
+    }
+
+    @Override
+    public boolean categoryExist(String name)
+    {
+        return name != null && snapshot().byName.containsKey(key(name));
+    }
+
+    /**
+     * Not cached here; the summary index and the response cache keep the aggregates.
+     */
+    @Override
+    public List<CategorySummary> getSummaries()
+    {
+        return delegate.getSummaries();
+    }
+
+    @Override
+    public Category create(Category category)
+    {
+        return delegate.create(category);
+    }
+
+    @Override
+    public void update(int categoryId, Category category)
+    {
+        delegate.update(categoryId, category);
+    }
+
+    @Override
+    public void delete(int categoryId)
+    {
+        delegate.delete(categoryId);
+    }
+
+    /**
+     * Swaps in the snapshot with a saved category, or without a deleted one.
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onCategoryChanged(CategoryChangedEvent event)
+    {
+        writes++;
+        Snapshot current = snapshot;
+        if (current != null)
+        {
+            snapshot = event.isDeleted() ? current.without(event.getCategoryId()) : current.with(event.getCategory());
+        }
+    }
+
+    /**
+     * Starts a background reload once the snapshot is three quarters of categories.cache.refresh-ms old.
+     */
+    @Scheduled(fixedDelayString = "#{${categories.cache.refresh-ms:60000} / 4}",
+               initialDelayString = "#{${categories.cache.refresh-ms:60000} / 4}")
+    public void refreshAhead()
+    {
+        Snapshot current = snapshot;
+        if (current != null && clock.getAsLong() - current.loadedAt >= refreshAheadNanos)
+        {
+            startRefresh();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        refresher.shutdownNow();
+    }
+
+    private Snapshot snapshot()
+    {
+        Snapshot current = snapshot;
+        if (current == null)
+        {
+            return load();
+        }
+        if (clock.getAsLong() - current.loadedAt >= refreshNanos)
+        {
+            startRefresh();
+        }
+        return current;
+    }
+
+    private void startRefresh()
+    {
+        long retry = retryAt;
+        if ((retry != 0 && clock.getAsLong() - retry < 0) || !refreshing.compareAndSet(false, true))
+        {
+            return;
+        }
+        try
+        {
+            refresher.execute(this::refresh);
+        }
+        catch (RejectedExecutionException e)
+        {
+            refreshing.set(false);
+        }
+    }
+
+    // the one read that waits for the database: nothing can be served before the first load
+    private synchronized Snapshot load()
+    {
+        if (snapshot == null)
+        {
+            snapshot = Snapshot.of(delegate.getAllCategories(), clock.getAsLong());
+        }
+        return snapshot;
+    }
+
+    private void refresh()
+    {
+        try
+        {
+            for (int reload = 0; reload < MAX_RELOADS; reload++)
+            {
+                if (reload())
+                {
+                    failures = 0;
+                    retryAt = 0;
+                    return;
+                }
+            }
+            // writes keep landing during the reads; the snapshot already has them, so just try later
+            retryAt = clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(RETRY_MIN_MS);
+        }
+        catch (RuntimeException e)
+        {
+            failures++;
+            long backoff = Math.min(refreshNanos, TimeUnit.MILLISECONDS.toNanos(RETRY_MIN_MS) << Math.min(failures - 1, 20));
+            retryAt = clock.getAsLong() + backoff;
+            logger.error("Error refreshing categories, serving the previous snapshot and retrying in {} ms",
+                         TimeUnit.NANOSECONDS.toMillis(backoff), e);
+        }
+        finally
+        {
+            refreshing.set(false);
+        }
+    }
+
+    // installs a fresh snapshot unless a write since the read may be missing from it
+    private boolean reload()
+    {
+        long before;
+        synchronized (this)
+        {
+            before = writes;
+        }
+        long loadedAt = clock.getAsLong();
+        List<Category> categories = delegate.getAllCategories();
+        synchronized (this)
+        {
+            if (writes != before)
+            {
+                return false;
+            }
+            snapshot = Snapshot.of(categories, loadedAt);
+            return true;
+        }
+    }
+
+    private static String key(String name)
+    {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // categories are mutable, so neither the snapshot nor callers hand out shared instances
+    private static Category copy(Category category)
+    {
+        return category == null ? null : new Category(category.getCategoryId(), category.getName(), category.getDescription());
+    }
+}
@@ -0,0 +1,520 @@
+package org.yearup.data.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.events.CartItemAddedEvent;
+import org.yearup.data.interfaces.ProductDao;
+import org.yearup.data.interfaces.ShoppingCartDao;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.models.Product;
+import org.yearup.models.User;
+import org.yearup.models.cart.CartItemChange;
+import org.yearup.models.cart.ShoppingCart;
+import org.yearup.models.cart.ShoppingCartItem;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Write-behind {@link ShoppingCartDao}, enabled with cart.write-behind.enabled=true.
+ * Active carts live in memory as two int arrays of product IDs and quantities per user. A cart is
+ * loaded from MySQL on first use; changes only mark it dirty, and every cart.write-behind.flush-ms
+ * the dirty carts are written back together, each replaced as a whole, so any number of changes to
+ * a cart between two flushes cost one write. Carts are also written on shutdown, and checkout
+ * writes the user's cart before reading it. Clearing a cart, as checkout does, goes to MySQL at once.
+ * <p>
+ * Changes to one cart are serialized by one of {@value #STRIPES} striped locks, so different users
+ * rarely wait for each other. Carts that are written back and unused for cart.write-behind.idle-ms
+ * are dropped from memory. Changes made after the last flush are lost if the process dies.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "cart.write-behind.enabled", havingValue = "true")
+public class WriteBehindShoppingCartDao implements ShoppingCartDao
+{
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindShoppingCartDao.class);
+
+    static final int STRIPES = 64;
+
+    private final MySqlShoppingCartDao delegate;
+    private final ProductDao productDao;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long idleNanos;
+    private final LongSupplier clock;
+
+    private final Object[] locks = new Object[STRIPES];
+    // user_id -> cart; a cart is only changed while holding the lock of its user
+    private final Map<Integer, Lines> carts = new ConcurrentHashMap<>();
+    // users whose cart changed since it was last written
+    private final Set<Integer> dirty = ConcurrentHashMap.newKeySet();
+    // held while carts are written, so two writes of one cart can not land out of order
+    private final Object writeLock = new Object();
+
+    /**
+     * The lines of one cart, in the order the products were added.
+     */
+    private static final class Lines
+    {
+        private int[] productIds = new int[4];
+        private int[] quantities = new int[4];
+        private int size;
+        private long lastUsed;
+
+        private int indexOf(int productId)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (productIds[i] == productId)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int add(int productId, int quantity)
+        {
+            int index = indexOf(productId);
+            return set(productId, index < 0 ? quantity : quantities[index] + quantity);
+        }
+
+        private int set(int productId, int quantity)
+        {
+            int index = indexOf(productId);
+            if (index < 0)
+            {
+                if (size == productIds.length)
+                {
+                    productIds = Arrays.copyOf(productIds, size * 2);
+                    quantities = Arrays.copyOf(quantities, size * 2);
+                }
+                index = size++;
+                productIds[index] = productId;
+            }
+            quantities[index] = quantity;
+            return quantity;
+        }
+
+        private boolean remove(int productId)
+        {
+            int index = indexOf(productId);
+            if (index < 0)
+            {
+                return false;
+            }
+            size--;
+            System.arraycopy(productIds, index + 1, productIds, index, size - index);
+            System.arraycopy(quantities, index + 1, quantities, index, size - index);
+            return true;
+        }
+
+        private List<CartItemChange> copy()
+        {
+            List<CartItemChange> lines = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+            {
+                lines.add(new CartItemChange(productIds[i], quantities[i]));
+            }
+            return lines;
+        }
+    }
+
+    @Autowired
+    public WriteBehindShoppingCartDao(MySqlShoppingCartDao delegate,
+                                      ProductDao productDao,
+                                      ApplicationEventPublisher eventPublisher,
+                                      @Value("${cart.write-behind.idle-ms:1800000}") long idleMillis)
+    {
+        this(delegate, productDao, eventPublisher, idleMillis, System::nanoTime);
+    }
+
+    WriteBehindShoppingCartDao(MySqlShoppingCartDao delegate,
+                               ProductDao productDao,
+                               ApplicationEventPublisher eventPublisher,
+                               long idleMillis,
+                               LongSupplier clock)
+    {
+        this.delegate = delegate;
+        this.productDao = productDao;
+        this.eventPublisher = eventPublisher;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public ShoppingCart getByUserId(User user)
+    {
+        List<CartItemChange> lines;
+        synchronized (lockOf(user))
+        {
+            lines = lines(user).copy();
+        }
+        return toCart(lines);
+    }
+
+    /**
+     * Writes the user's cart to MySQL first, so the order is placed from exactly what is stored.
+     */
+    @Override
+    public ShoppingCart getConfirmedCart(User user)
+    {
+        flush(user);
+        ShoppingCart cart = getByUserId(user);
+        if (cart.getItems().isEmpty())
+        {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Shopping cart is empty");
+        }
+        return cart;
+    }
+
+    @Override
+    public void post(User user, int productId)
+    {
+        if (addItem(user, productId, 1) == null)
+        {
+            throw new RuntimeException("Error inserting product, no product with ID " + productId);
+        }
+    }
+
+    /**
+     * Like the MySQL DAO, only changes the quantity of a product that is already in the cart.
+     */
+    @Override
+    public void update(User user, int productId, int quantity)
+    {
+        synchronized (lockOf(user))
+        {
+            Lines lines = lines(user);
+            if (lines.indexOf(productId) >= 0)
+            {
+                lines.set(productId, quantity);
+                dirty.add(user.getId());
+            }
+        }
+    }
+
+    @Override
+    public ShoppingCartItem addItem(User user, int productId, int quantity)
+    {
+        if (quantity < 1)
+        {
+            throw new IllegalArgumentException("quantity must be at least 1");
+        }
+        Product product = findProduct(productId);
+        if (product == null)
+        {
+            return null;
+        }
+        int newQuantity;
+        synchronized (lockOf(user))
+        {
+            newQuantity = lines(user).add(productId, quantity);
+            dirty.add(user.getId());
+        }
+        eventPublisher.publishEvent(new CartItemAddedEvent(user.getId(), productId));
+        return new ShoppingCartItem(product, newQuantity, BigDecimal.ZERO);
+    }
+
+    @Override
+    public ShoppingCartItem setItem(User user, int productId, int quantity)
+    {
+        if (quantity < 1)
+        {
+            throw new IllegalArgumentException("quantity must be at least 1");
+        }
+        Product product = findProduct(productId);
+        if (product == null)
+        {
+            return null;
+        }
+        synchronized (lockOf(user))
+        {
+            lines(user).set(productId, quantity);
+            dirty.add(user.getId());
+        }
+        return new ShoppingCartItem(product, quantity, BigDecimal.ZERO);
+    }
+
+    @Override
+    public boolean removeItem(User user, int productId)
+    {
+        synchronized (lockOf(user))
+        {
+            if (!lines(user).remove(productId))
+            {
+                return false;
+            }
+            dirty.add(user.getId());
+            return true;
+        }
+    }
+
+    @Override
+    public ShoppingCart addItems(User user, List<CartItemChange> items)
+    {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        for (CartItemChange item : items)
+        {
+            if (item.getQuantity() < 1)
+            {
+                throw new IllegalArgumentException("quantity must be at least 1");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        requireProducts(quantities.keySet());
+
+        List<CartItemChange> lines;
+        synchronized (lockOf(user))
+        {
+            Lines cart = lines(user);
+            quantities.forEach(cart::add);
+            dirty.add(user.getId());
+            lines = cart.copy();
+        }
+        for (Integer productId : quantities.keySet())
+        {
+            eventPublisher.publishEvent(new CartItemAddedEvent(user.getId(), productId));
+        }
+        return toCart(lines);
+    }
+
+    @Override
+    public ShoppingCart setItems(User user, List<CartItemChange> items)
+    {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        Set<Integer> kept = new HashSet<>();
+        for (CartItemChange item : items)
+        {
+            if (item.getQuantity() < 0)
+            {
+                throw new IllegalArgumentException("quantity can not be negative");
+            }
+            quantities.put(item.getProductId(), item.getQuantity());
+        }
+        quantities.forEach((productId, quantity) -> {
+            if (quantity > 0)
+            {
+                kept.add(productId);
+            }
+        });
+        requireProducts(kept);
+
+        List<CartItemChange> lines;
+        synchronized (lockOf(user))
+        {
+            Lines cart = lines(user);
+            quantities.forEach((productId, quantity) -> {
+                if (quantity == 0)
+                {
+                    cart.remove(productId);
+                }
+                else
+                {
+                    cart.set(productId, quantity);
+                }
+            });
+            dirty.add(user.getId());
+            lines = cart.copy();
+        }
+        return toCart(lines);
+    }
+
+    /**
+     * Empties the cart in memory and in MySQL at once, so a placed order never leaves its cart behind.
+     */
+    @Override
+    public void delete(User user)
+    {
+        synchronized (writeLock)
+        {
+            synchronized (lockOf(user))
+            {
+                Lines lines = carts.get(user.getId());
+                if (lines != null)
+                {
+                    lines.size = 0;
+                }
+                dirty.remove(user.getId());
+            }
+            delegate.delete(user);
+        }
+    }
+
+    /**
+     * Writes every changed cart in one batch, then drops carts that have been idle for long enough.
+     * If the write fails the carts stay changed and are retried with the next flush.
+     */
+    @Scheduled(fixedDelayString = "${cart.write-behind.flush-ms:5000}", initialDelayString = "${cart.write-behind.flush-ms:5000}")
+    @PreDestroy
+    public void flush()
+    {
+        synchronized (writeLock)
+        {
+            try
+            {
+                write(new ArrayList<>(dirty));
+            }
+            catch (RuntimeException e)
+            {
+                // logged by write, the carts are written with the next flush
+            }
+            // under the write lock, so a cart being written can not be dropped and reloaded stale
+            evictIdle();
+        }
+    }
+
+    /**
+     * Writes one user's cart if it changed since it was last written.
+     */
+    public void flush(User user)
+    {
+        synchronized (writeLock)
+        {
+            if (dirty.contains(user.getId()))
+            {
+                write(List.of(user.getId()));
+            }
+        }
+    }
+
+    // callers hold the write lock
+    private void write(List<Integer> userIds)
+    {
+        if (userIds.isEmpty())
+        {
+            return;
+        }
+        Map<Integer, List<CartItemChange>> snapshot = new HashMap<>();
+        for (Integer userId : userIds)
+        {
+            synchronized (lockOf(userId))
+            {
+                // cleared before the copy, so a change made while the batch is written marks the cart again
+                if (dirty.remove(userId))
+                {
+                    Lines lines = carts.get(userId);
+                    snapshot.put(userId, lines == null ? List.of() : lines.copy());
+                }
+            }
+        }
+        try
+        {
+            delegate.replaceCarts(snapshot);
+        }
+        catch (RuntimeException e)
+        {
+            dirty.addAll(snapshot.keySet());
+            logger.error("Error writing {} shopping carts, retrying with the next flush", snapshot.size(), e);
+            throw e;
+        }
+    }
+
+    // callers hold the write lock
+    private void evictIdle()
+    {
+        long now = clock.getAsLong();
+        for (Integer userId : carts.keySet())
+        {
+            synchronized (lockOf(userId))
+            {
+                Lines lines = carts.get(userId);
+                if (lines != null && !dirty.contains(userId) && now - lines.lastUsed >= idleNanos)
+                {
+                    carts.remove(userId);
+                }
+            }
+        }
+    }
+
+    // callers hold the lock of the user; the first use of a cart loads it while holding it
+    private Lines lines(User user)
+    {
+        Lines lines = carts.get(user.getId());
+        if (lines == null)
+        {
+            lines = new Lines();
+            for (ShoppingCartItem item : delegate.getByUserId(user).getItems().values())
+            {
+                lines.set(item.getProductId(), item.getQuantity());
+            }
+            carts.put(user.getId(), lines);
+        }
+        lines.lastUsed = clock.getAsLong();
+        return lines;
+    }
+
+    private Object lockOf(User user)
+    {
+        return lockOf(user.getId());
+    }
+
+    private Object lockOf(int userId)
+    {
+        return locks[Math.floorMod(userId, STRIPES)];
+    }
+
+    // the products come from the in-memory catalog once it is built; deleted products are left out
+    private ShoppingCart toCart(List<CartItemChange> lines)
+    {
+        ShoppingCart cart = new ShoppingCart();
+        if (lines.isEmpty())
+        {
+            return cart;
+        }
+        List<Integer> productIds = new ArrayList<>(lines.size());
+        for (CartItemChange line : lines)
+        {
+            productIds.add(line.getProductId());
+        }
+        Map<Integer, Product> products = new HashMap<>();
+        for (Product product : productDao.getByIds(productIds).getProducts())
+        {
+            products.put(product.getProductId(), product);
+        }
+        for (CartItemChange line : lines)
+        {
+            Product product = products.get(line.getProductId());
+            if (product != null)
+            {
+                cart.add(new ShoppingCartItem(new Product(product), line.getQuantity(), BigDecimal.ZERO));
+            }
+        }
+        return cart;
+    }
+
+    private Product findProduct(int productId)
+    {
+        List<Product> found = productDao.getByIds(List.of(productId)).getProducts();
+        return found.isEmpty() ? null : new Product(found.get(0));
+    }
+
+    private void requireProducts(Collection<Integer> productIds)
+    {
+        if (productIds.isEmpty())
+        {
+            return;
+        }
+        List<Integer> missing = productDao.getByIds(new ArrayList<>(productIds)).getMissingIds();
+        if (!missing.isEmpty())
+        {
+            throw new IllegalArgumentException("Unknown product IDs: " + missing);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.yearup.data.events;
+
+/**
+ * Published by the shopping cart DAO after a product has been added to a cart.
+ * Popularity rankings listen for it, a cart addition being an early signal of demand.
+ */
+public class CartItemAddedEvent
+{
+    private final int userId;
+    private final int productId;
+
+    /**
+     * @param userId    The ID of the user whose cart it is.
+     * @param productId The ID of the product that was added.
+     */
+    public CartItemAddedEvent(int userId, int productId)
+    {
+        this.userId = userId;
+        this.productId = productId;
+    }
+
+    public int getUserId()
+    {
+        return userId;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+}
@@ -0,0 +1,64 @@
+package org.yearup.data.events;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing version of the product catalog, bumped on every product or category write
+ * and after bulk product writes.
+ * Catalog reads use it as a strong ETag, so a client that already holds the current version gets a
+ * 304 before anything is read or serialized.
+ * The ETag also carries the start time of this process: the counter restarts at zero on every boot
+ * and must never hand out a tag that an older process used for different contents.
+ */
+@Component
+public class CatalogVersion
+{
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong version = new AtomicLong();
+
+    public long current()
+    {
+        return version.get();
+    }
+
+    /**
+     * Read this before reading the catalog: a write that lands in between then only makes the
+     * tag older than the body, which costs a later refetch, never a stale 304.
+     *
+     * @return the strong ETag of the current catalog version, quotes included.
+     */
+    public String etag()
+    {
+        return etag(version.get());
+    }
+
+    /**
+     * @param version A version previously returned by {@link #current()}.
+     * @return the strong ETag of that version, quotes included.
+     */
+    public String etag(long version)
+    {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        version.incrementAndGet();
+    }
+
+    @EventListener
+    public void onCategoryChanged(CategoryChangedEvent event)
+    {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,47 @@
+package org.yearup.data.events;
+
+import org.yearup.models.Category;
+
+/**
+ * Published by the category DAO after a category row has been inserted, updated or deleted.
+ */
+public class CategoryChangedEvent
+{
+    private final int categoryId;
+    private final Category category;
+
+    /**
+     * @param categoryId The ID of the category that changed.
+     * @param category   The category as it is now stored, or null if it was deleted.
+     */
+    public CategoryChangedEvent(int categoryId, Category category)
+    {
+        this.categoryId = categoryId;
+        this.category = category;
+    }
+
+    public static CategoryChangedEvent saved(Category category)
+    {
+        return new CategoryChangedEvent(category.getCategoryId(), category);
+    }
+
+    public static CategoryChangedEvent deleted(int categoryId)
+    {
+        return new CategoryChangedEvent(categoryId, null);
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public Category getCategory()
+    {
+        return category;
+    }
+
+    public boolean isDeleted()
+    {
+        return category == null;
+    }
+}
@@ -0,0 +1,43 @@
+package org.yearup.data.events;
+
+import org.yearup.models.order.OrderLineItem;
+
+import java.util.List;
+
+/**
+ * Published by the order DAO after the line items of an order have been inserted.
+ * Recommendation indexes listen for it to count the new purchases without rescanning every order.
+ */
+public class OrderPlacedEvent
+{
+    private final int orderId;
+    private final List<OrderLineItem> lines;
+
+    /**
+     * @param orderId The ID of the order.
+     * @param lines   The line items as they were inserted.
+     */
+    public OrderPlacedEvent(int orderId, List<OrderLineItem> lines)
+    {
+        this.orderId = orderId;
+        this.lines = List.copyOf(lines);
+    }
+
+    public int getOrderId()
+    {
+        return orderId;
+    }
+
+    public List<OrderLineItem> getLines()
+    {
+        return lines;
+    }
+
+    /**
+     * @return the IDs of the products in the order, each once, in line order.
+     */
+    public int[] getProductIds()
+    {
+        return lines.stream().mapToInt(OrderLineItem::getProductId).distinct().toArray();
+    }
+}
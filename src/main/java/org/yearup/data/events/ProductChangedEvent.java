@@ -0,0 +1,48 @@
+package org.yearup.data.events;
+
+import org.yearup.models.Product;
+
+/**
+ * Published by the product DAO after a product row has been inserted, updated or deleted.
+ * In-memory indexes listen for it to keep their view of the catalog current.
+ */
+public class ProductChangedEvent
+{
+    private final int productId;
+    private final Product product;
+
+    /**
+     * @param productId The ID of the product that changed.
+     * @param product   The product as it is now stored, or null if it was deleted.
+     */
+    public ProductChangedEvent(int productId, Product product)
+    {
+        this.productId = productId;
+        this.product = product;
+    }
+
+    public static ProductChangedEvent saved(Product product)
+    {
+        return new ProductChangedEvent(product.getProductId(), product);
+    }
+
+    public static ProductChangedEvent deleted(int productId)
+    {
+        return new ProductChangedEvent(productId, null);
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public Product getProduct()
+    {
+        return product;
+    }
+
+    public boolean isDeleted()
+    {
+        return product == null;
+    }
+}
@@ -0,0 +1,24 @@
+package org.yearup.data.events;
+
+/**
+ * Published after a bulk write touched many product rows at once, such as an import or a supplier sync.
+ * Replaying one {@link ProductChangedEvent} per row would patch the in-memory indexes row by row,
+ * so listeners rebuild or invalidate everything they hold instead.
+ */
+public class ProductsBulkChangedEvent
+{
+    private final int rowsChanged;
+
+    /**
+     * @param rowsChanged The number of product rows inserted or updated.
+     */
+    public ProductsBulkChangedEvent(int rowsChanged)
+    {
+        this.rowsChanged = rowsChanged;
+    }
+
+    public int getRowsChanged()
+    {
+        return rowsChanged;
+    }
+}
@@ -0,0 +1,203 @@
+package org.yearup.data.images;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * The directory product images are served from, configured with images.dir.
+ * Image names are the values of Product.imageUrl, e.g. "smartphone.jpg"; anything that is not a
+ * plain file name inside the directory is rejected, so a name can never reach another path.
+ * Content hashes are computed once per file version and remembered until the size or the
+ * modification time of the file changes.
+ * Uploaded images are stored under the SHA-256 of their content, so identical uploads are kept once.
+ */
+@Component
+public class ImageStore
+{
+    private static final Pattern FILE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    // names written by the upload endpoint: the SHA-256 of the content plus the extension
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}\\.[A-Za-z0-9]+");
+
+    private static final Set<String> UPLOAD_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "webp");
+
+    private final Path root;
+    private final Map<Path, Hash> hashes = new ConcurrentHashMap<>();
+
+    private static final class Hash
+    {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        private Hash(long size, long modified, String sha256)
+        {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+
+    @Autowired
+    public ImageStore(@Value("${images.dir:images}") String directory)
+    {
+        this.root = Path.of(directory).toAbsolutePath().normalize();
+    }
+
+    public Path getRoot()
+    {
+        return root;
+    }
+
+    /**
+     * @param name An image file name such as "smartphone.jpg".
+     * @return the path of the image, or null if the name is not a plain file name or no such file exists.
+     */
+    public Path find(String name)
+    {
+        Path path = pathOf(name);
+        return path != null && Files.isRegularFile(path) ? path : null;
+    }
+
+    /**
+     * @param name An image file name such as "smartphone.jpg".
+     * @return the path the image has or would have, or null if the name is not a plain file name.
+     */
+    public Path pathOf(String name)
+    {
+        if (name == null || !FILE_NAME.matcher(name).matches())
+        {
+            return null;
+        }
+        Path path = root.resolve(name).normalize();
+        return path.getParent().equals(root) ? path : null;
+    }
+
+    /**
+     * @return true if the name is a content hash, so the bytes behind it can never change.
+     */
+    public static boolean isContentAddressed(String name)
+    {
+        return CONTENT_ADDRESSED.matcher(name).matches();
+    }
+
+    /**
+     * @param file An image returned by {@link #find}.
+     * @return the hex SHA-256 of the file content.
+     */
+    public String sha256(Path file) throws IOException
+    {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long modified = attributes.lastModifiedTime().toMillis();
+        Hash hash = hashes.get(file);
+        if (hash == null || hash.size != attributes.size() || hash.modified != modified)
+        {
+            hash = new Hash(attributes.size(), modified, digest(file));
+            hashes.put(file, hash);
+        }
+        return hash.sha256;
+    }
+
+    /**
+     * Stores an uploaded image under the SHA-256 of its content. The stream is copied to a temporary
+     * file in the images directory while it is hashed, so the upload is never held in memory;
+     * if an image with the same content is already stored the copy is dropped.
+     *
+     * @param content  The image bytes, read to the end but not closed.
+     * @param fileName The name the client gave the file, for its extension.
+     * @return the name the image is stored under, e.g. "9f86d08...0a08.jpg".
+     * @throws IllegalArgumentException if the extension is not one of jpg, jpeg, png, gif or webp.
+     */
+    public String store(InputStream content, String fileName) throws IOException
+    {
+        String extension = extensionOf(fileName);
+        if (!UPLOAD_EXTENSIONS.contains(extension))
+        {
+            throw new IllegalArgumentException("Unsupported image type: " + fileName);
+        }
+
+        Files.createDirectories(root);
+        Path temp = Files.createTempFile(root, "upload", ".tmp");
+        try
+        {
+            MessageDigest sha256 = newSha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), sha256))
+            {
+                content.transferTo(out);
+            }
+            String hex = HexFormat.of().formatHex(sha256.digest());
+            String name = hex + "." + extension;
+            Path target = root.resolve(name);
+            // otherwise the same image was uploaded before, possibly for another product
+            if (!Files.exists(target))
+            {
+                // a concurrent upload of the same bytes may win the rename, which leaves identical content
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            hashes.put(target, new Hash(attributes.size(), attributes.lastModifiedTime().toMillis(), hex));
+            return name;
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String extensionOf(String fileName)
+    {
+        int dot = fileName == null ? -1 : fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static String digest(Path file) throws IOException
+    {
+        MessageDigest sha256 = newSha256();
+        // a direct buffer keeps the bytes out of the heap on the way to the digest
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            while (channel.read(buffer) >= 0)
+            {
+                buffer.flip();
+                sha256.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    public static MessageDigest newSha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.yearup.data.images;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.events.ProductChangedEvent;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Width-bounded variants of the product images in {@link ImageStore}, generated on first request
+ * and kept in the thumbnails directory under the images root.
+ * A variant is named after the SHA-256 of its source image and the width, so replacing an image
+ * never serves an old thumbnail and products sharing an image share its thumbnails.
+ * Resizing runs on a small bounded pool; concurrent requests for the same missing variant wait
+ * for a single resize instead of each starting one.
+ * With images.thumbnails.eager=true the variants of a product's image are generated in the
+ * background as soon as the product is created or updated.
+ */
+@Component
+public class ThumbnailService
+{
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailService.class);
+
+    static final String DIRECTORY = "thumbnails";
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final ImageStore imageStore;
+    private final List<Integer> widths;
+    private final boolean eager;
+    private final Path directory;
+    private final ThreadPoolExecutor executor;
+
+    // variant file name -> the resize producing it
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ThumbnailService(ImageStore imageStore,
+                            @Value("${images.thumbnails.widths:160,320,640}") List<Integer> widths,
+                            @Value("${images.thumbnails.eager:false}") boolean eager)
+    {
+        this.imageStore = imageStore;
+        this.widths = List.copyOf(widths);
+        this.eager = eager;
+        this.directory = imageStore.getRoot().resolve(DIRECTORY);
+
+        // resizing is CPU bound and decodes whole images, so it gets a few threads and a short queue
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                                               runnable -> {
+                                                   Thread thread = new Thread(runnable, "thumbnail-worker");
+                                                   thread.setDaemon(true);
+                                                   return thread;
+                                               });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public List<Integer> getWidths()
+    {
+        return widths;
+    }
+
+    /**
+     * Finds or starts the variant of an image at a width.
+     *
+     * @param name  An image file name such as "smartphone.jpg".
+     * @param width One of {@link #getWidths()}.
+     * @return completes with the variant, which keeps the image size if the image is not wider than the width;
+     *         null if there is no such image.
+     * @throws IllegalArgumentException   if the width is not one of the configured widths.
+     * @throws RejectedExecutionException if the resize queue is full.
+     */
+    public CompletableFuture<Path> thumbnail(String name, int width) throws IOException
+    {
+        if (!widths.contains(width))
+        {
+            throw new IllegalArgumentException("Unsupported thumbnail width " + width);
+        }
+        Path source = imageStore.find(name);
+        if (source == null)
+        {
+            return null;
+        }
+
+        String variant = imageStore.sha256(source) + "-" + width + "." + formatOf(name);
+        Path target = directory.resolve(variant);
+        if (Files.isRegularFile(target))
+        {
+            return CompletableFuture.completedFuture(target);
+        }
+
+        CompletableFuture<Path> resize = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(variant, resize);
+        if (running != null)
+        {
+            return running;
+        }
+        try
+        {
+            executor.execute(() -> {
+                try
+                {
+                    resize.complete(resize(source, target, width, formatOf(name)));
+                }
+                catch (Throwable e)
+                {
+                    resize.completeExceptionally(e);
+                }
+                finally
+                {
+                    inFlight.remove(variant, resize);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            inFlight.remove(variant, resize);
+            resize.completeExceptionally(e);
+            throw e;
+        }
+        return resize;
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        if (!eager || event.isDeleted() || event.getProduct().getImageUrl() == null)
+        {
+            return;
+        }
+        String name = event.getProduct().getImageUrl();
+        for (int width : widths)
+        {
+            try
+            {
+                thumbnail(name, width);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                // eager generation is only a head start, the first request still generates the variant
+                logger.debug("Skipped eager thumbnail {} at {}px", name, width, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private Path resize(Path source, Path target, int width, String format) throws IOException
+    {
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null)
+        {
+            throw new IllegalArgumentException("Not a readable image: " + source.getFileName());
+        }
+
+        // halving first keeps bilinear filtering from skipping pixels on large reductions;
+        // images that are already narrow are only re-encoded, so the variant file exists next time
+        BufferedImage scaled = image;
+        int imageType = format.equals("png") ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        do
+        {
+            int nextWidth = Math.min(scaled.getWidth(), Math.max(width, scaled.getWidth() / 2));
+            int nextHeight = Math.max(1, (int) Math.round((double) image.getHeight() * nextWidth / image.getWidth()));
+            BufferedImage next = new BufferedImage(nextWidth, nextHeight, imageType);
+            Graphics2D graphics = next.createGraphics();
+            try
+            {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(scaled, 0, 0, nextWidth, nextHeight, null);
+            }
+            finally
+            {
+                graphics.dispose();
+            }
+            scaled = next;
+        }
+        while (scaled.getWidth() > width);
+
+        // written next to the target and moved into place, so readers never see a partial file
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "resize", ".tmp");
+        try
+        {
+            if (!ImageIO.write(scaled, format, temp.toFile()))
+            {
+                throw new IOException("No image writer for " + format);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+        return target;
+    }
+
+    // variants keep transparency as png, everything else becomes jpg
+    private static String formatOf(String name)
+    {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".png") || lower.endsWith(".gif") ? "png" : "jpg";
+    }
+}
@@ -0,0 +1,123 @@
+package org.yearup.data.importing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a line based feed one line at a time, so a feed of any size is never held in memory.
+ * Blank lines are skipped; subclasses turn every other line into a row, or skip it by returning null.
+ *
+ * @param <T> The row type.
+ */
+public abstract class FeedReader<T> implements Iterator<T>
+{
+    private final BufferedReader reader;
+    private int lineNumber;
+    private T next;
+
+    protected FeedReader(Reader reader)
+    {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (next == null)
+        {
+            String text;
+            try
+            {
+                text = reader.readLine();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            if (text == null)
+            {
+                return false;
+            }
+            lineNumber++;
+            if (!text.isBlank())
+            {
+                next = parse(lineNumber, text);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        T row = next;
+        next = null;
+        return row;
+    }
+
+    /**
+     * @return the row for one non-blank line, or null to skip the line.
+     */
+    protected abstract T parse(int line, String text);
+
+    /**
+     * Splits one CSV line. Fields may be quoted with "" as an escaped quote, but can not span lines.
+     */
+    static List<String> splitCsv(String text)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (quoted)
+            {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                }
+                else if (c == '"')
+                {
+                    quoted = false;
+                }
+                else
+                {
+                    field.append(c);
+                }
+            }
+            else if (c == '"')
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    // "category_id", "categoryId" and "CategoryID" all name the same column
+    static String columnKey(String header)
+    {
+        return header.replace("_", "").trim().toLowerCase();
+    }
+}
@@ -0,0 +1,64 @@
+package org.yearup.data.importing;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Reads a supplier feed: CSV with a header line holding the columns product_id, price and stock,
+ * in any order and next to any other columns, which are ignored.
+ */
+public class PriceStockFeedReader extends FeedReader<PriceStockRow>
+{
+    private int productIdColumn = -1;
+    private int priceColumn = -1;
+    private int stockColumn = -1;
+
+    public PriceStockFeedReader(Reader reader)
+    {
+        super(reader);
+    }
+
+    @Override
+    protected PriceStockRow parse(int line, String text)
+    {
+        List<String> fields = splitCsv(text);
+        if (productIdColumn < 0)
+        {
+            for (int i = 0; i < fields.size(); i++)
+            {
+                switch (columnKey(fields.get(i)))
+                {
+                    case "productid": productIdColumn = i; break;
+                    case "price": priceColumn = i; break;
+                    case "stock": stockColumn = i; break;
+                    default: break;
+                }
+            }
+            if (productIdColumn < 0 || priceColumn < 0 || stockColumn < 0)
+            {
+                throw new IllegalArgumentException("The feed header needs the columns product_id, price and stock.");
+            }
+            return null;
+        }
+        int last = Math.max(productIdColumn, Math.max(priceColumn, stockColumn));
+        if (fields.size() <= last)
+        {
+            return PriceStockRow.error(line, "missing columns");
+        }
+        try
+        {
+            BigDecimal price = new BigDecimal(fields.get(priceColumn).trim());
+            int stock = Integer.parseInt(fields.get(stockColumn).trim());
+            if (price.signum() < 0 || stock < 0)
+            {
+                return PriceStockRow.error(line, "price and stock must be zero or more");
+            }
+            return PriceStockRow.of(line, Integer.parseInt(fields.get(productIdColumn).trim()), price, stock);
+        }
+        catch (NumberFormatException e)
+        {
+            return PriceStockRow.error(line, "invalid number in product_id, price or stock");
+        }
+    }
+}
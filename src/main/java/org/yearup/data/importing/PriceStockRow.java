@@ -0,0 +1,64 @@
+package org.yearup.data.importing;
+
+import java.math.BigDecimal;
+
+/**
+ * One line of a supplier price and stock feed, or the reason it could not be read.
+ */
+public class PriceStockRow
+{
+    private final int line;
+    private final int productId;
+    private final BigDecimal price;
+    private final int stock;
+    private final String error;
+
+    private PriceStockRow(int line, int productId, BigDecimal price, int stock, String error)
+    {
+        this.line = line;
+        this.productId = productId;
+        this.price = price;
+        this.stock = stock;
+        this.error = error;
+    }
+
+    public static PriceStockRow of(int line, int productId, BigDecimal price, int stock)
+    {
+        return new PriceStockRow(line, productId, price, stock, null);
+    }
+
+    public static PriceStockRow error(int line, String error)
+    {
+        return new PriceStockRow(line, 0, null, 0, error);
+    }
+
+    public int getLine()
+    {
+        return line;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public BigDecimal getPrice()
+    {
+        return price;
+    }
+
+    public int getStock()
+    {
+        return stock;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public boolean isError()
+    {
+        return error != null;
+    }
+}
@@ -0,0 +1,50 @@
+package org.yearup.data.importing;
+
+import org.yearup.models.Product;
+
+/**
+ * One line of an import feed: either the product it describes or the reason it could not be read.
+ */
+public class ProductRow
+{
+    private final int line;
+    private final Product product;
+    private final String error;
+
+    private ProductRow(int line, Product product, String error)
+    {
+        this.line = line;
+        this.product = product;
+        this.error = error;
+    }
+
+    public static ProductRow of(int line, Product product)
+    {
+        return new ProductRow(line, product, null);
+    }
+
+    public static ProductRow error(int line, String error)
+    {
+        return new ProductRow(line, null, error);
+    }
+
+    public int getLine()
+    {
+        return line;
+    }
+
+    public Product getProduct()
+    {
+        return product;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public boolean isError()
+    {
+        return error != null;
+    }
+}
@@ -0,0 +1,113 @@
+package org.yearup.data.importing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.yearup.models.Product;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a product import feed one line at a time.
+ * NDJSON lines are product objects in the same shape POST /products accepts.
+ * CSV needs a header line naming the columns, in snake_case or camelCase:
+ * name, price and category_id are required; description, color, stock, featured and image_url are optional.
+ * A line that can not be read becomes an error row and reading goes on.
+ */
+public abstract class ProductRowReader extends FeedReader<ProductRow>
+{
+    protected ProductRowReader(Reader reader)
+    {
+        super(reader);
+    }
+
+    public static ProductRowReader ndjson(Reader reader, ObjectMapper objectMapper)
+    {
+        return new ProductRowReader(reader)
+        {
+            @Override
+            protected ProductRow parse(int line, String text)
+            {
+                try
+                {
+                    return ProductRow.of(line, objectMapper.readValue(text, Product.class));
+                }
+                catch (JsonProcessingException e)
+                {
+                    return ProductRow.error(line, "invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+        };
+    }
+
+    public static ProductRowReader csv(Reader reader)
+    {
+        return new CsvReader(reader);
+    }
+
+    private static final class CsvReader extends ProductRowReader
+    {
+        private static final List<String> REQUIRED = List.of("name", "price", "categoryid");
+
+        // normalized column name -> position, read from the header line
+        private Map<String, Integer> columns;
+
+        private CsvReader(Reader reader)
+        {
+            super(reader);
+        }
+
+        @Override
+        protected ProductRow parse(int line, String text)
+        {
+            List<String> fields = splitCsv(text);
+            if (columns == null)
+            {
+                columns = new HashMap<>();
+                for (int i = 0; i < fields.size(); i++)
+                {
+                    columns.put(columnKey(fields.get(i)), i);
+                }
+                if (!columns.keySet().containsAll(REQUIRED))
+                {
+                    throw new IllegalArgumentException("The CSV header needs the columns name, price and category_id.");
+                }
+                return null;
+            }
+            String price = field(fields, "price");
+            String categoryId = field(fields, "categoryid");
+            if (price == null || price.isBlank() || categoryId == null || categoryId.isBlank())
+            {
+                return ProductRow.error(line, "price and category_id are required");
+            }
+            try
+            {
+                Product product = new Product();
+                product.setName(field(fields, "name"));
+                product.setPrice(new BigDecimal(price.trim()));
+                product.setCategoryId(Integer.parseInt(categoryId.trim()));
+                product.setDescription(field(fields, "description"));
+                product.setColor(field(fields, "color"));
+                String stock = field(fields, "stock");
+                product.setStock(stock == null || stock.isBlank() ? 0 : Integer.parseInt(stock.trim()));
+                String featured = field(fields, "featured");
+                product.setFeatured("true".equalsIgnoreCase(featured) || "1".equals(featured));
+                product.setImageUrl(field(fields, "imageurl"));
+                return ProductRow.of(line, product);
+            }
+            catch (NumberFormatException e)
+            {
+                return ProductRow.error(line, "invalid number in price, category_id or stock");
+            }
+        }
+
+        private String field(List<String> fields, String column)
+        {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? null : fields.get(index);
+        }
+    }
+}
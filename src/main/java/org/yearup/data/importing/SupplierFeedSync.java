@@ -0,0 +1,84 @@
+package org.yearup.data.importing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.interfaces.ProductDao;
+import org.yearup.models.SyncReport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * Applies the nightly supplier price and stock feed from a local file.
+ * The file is read line by line while it is applied, see {@link ProductDao#syncPriceAndStock}.
+ * Runs on the supplier.feed.cron schedule, and on demand through POST /products/sync.
+ * Without a supplier.feed.path the job does nothing.
+ */
+@Component
+public class SupplierFeedSync
+{
+    private static final Logger logger = LoggerFactory.getLogger(SupplierFeedSync.class);
+
+    private final ProductDao productDao;
+    private final String feedPath;
+
+    @Autowired
+    public SupplierFeedSync(ProductDao productDao, @Value("${supplier.feed.path:}") String feedPath)
+    {
+        this.productDao = productDao;
+        this.feedPath = feedPath;
+    }
+
+    public boolean isConfigured()
+    {
+        return !feedPath.isBlank();
+    }
+
+    /**
+     * Apply the feed file as it is now.
+     *
+     * @return The changed, unchanged and unknown counts.
+     * @throws NoSuchFileException if no feed is configured or the file does not exist.
+     */
+    public synchronized SyncReport sync() throws IOException
+    {
+        if (!isConfigured())
+        {
+            throw new NoSuchFileException("supplier.feed.path is not set");
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(feedPath), StandardCharsets.UTF_8))
+        {
+            return productDao.syncPriceAndStock(new PriceStockFeedReader(reader));
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+    @Scheduled(cron = "${supplier.feed.cron:0 30 2 * * *}")
+    public void scheduledSync()
+    {
+        if (!isConfigured())
+        {
+            return;
+        }
+        try
+        {
+            sync();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            logger.error("Error syncing supplier feed {}", feedPath, e);
+        }
+    }
+}
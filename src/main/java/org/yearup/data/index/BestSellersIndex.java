@@ -0,0 +1,296 @@
+package org.yearup.data.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.events.CartItemAddedEvent;
+import org.yearup.data.events.OrderPlacedEvent;
+import org.yearup.data.interfaces.OrderDao;
+import org.yearup.models.Product;
+import org.yearup.models.order.OrderLineItem;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live best seller ranking per category.
+ * Every product has a popularity score: {@value #ORDER_WEIGHT} points per unit ordered and
+ * {@value #CART_WEIGHT} per cart addition. Scores are LongAdders, so concurrent checkouts and cart
+ * additions never wait for each other; each category keeps a min-heap of its {@value #TOP_K} highest
+ * scores, which a score increase only has to compare against the smallest of.
+ * Units ordered are totalled from order_line_items once at startup; cart additions are counted
+ * from startup on.
+ */
+@Component
+public class BestSellersIndex implements ProductIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger(BestSellersIndex.class);
+
+    public static final int TOP_K = 20;
+    static final int ORDER_WEIGHT = 5;
+    static final int CART_WEIGHT = 1;
+
+    private final OrderDao orderDao;
+
+    // product_id -> score; entries are only added or removed, never replaced
+    private final Map<Integer, LongAdder> scores = new ConcurrentHashMap<>();
+    // product_id -> category_id, from the catalog
+    private final Map<Integer, Integer> categories = new ConcurrentHashMap<>();
+    private final Map<Integer, CategoryTop> tops = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    private boolean salesLoaded;
+
+    @Autowired
+    public BestSellersIndex(OrderDao orderDao)
+    {
+        this.orderDao = orderDao;
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<Product> products)
+    {
+        if (!salesLoaded)
+        {
+            // an order placed while the totals are read may be counted twice, which a ranking tolerates
+            try
+            {
+                orderDao.getUnitsSoldByProduct().forEach((productId, units) -> score(productId).add(units * ORDER_WEIGHT));
+                salesLoaded = true;
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Error loading units sold, ranking by activity since startup", e);
+            }
+        }
+        categories.clear();
+        for (Product product : products)
+        {
+            categories.put(product.getProductId(), product.getCategoryId());
+        }
+        tops.clear();
+        categories.forEach((productId, categoryId) -> {
+            LongAdder score = scores.get(productId);
+            if (score != null)
+            {
+                top(categoryId).offer(productId, score.sum());
+            }
+        });
+        ready = true;
+    }
+
+    @Override
+    public synchronized void productSaved(Product product)
+    {
+        Integer previous = categories.put(product.getProductId(), product.getCategoryId());
+        if (previous != null && previous != product.getCategoryId())
+        {
+            recompute(previous);
+            recompute(product.getCategoryId());
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(int productId)
+    {
+        Integer categoryId = categories.remove(productId);
+        scores.remove(productId);
+        if (categoryId != null)
+        {
+            recompute(categoryId);
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    @EventListener
+    public void onOrderPlaced(OrderPlacedEvent event)
+    {
+        for (OrderLineItem line : event.getLines())
+        {
+            add(line.getProductId(), (long) line.getQuantity() * ORDER_WEIGHT);
+        }
+    }
+
+    @EventListener
+    public void onCartItemAdded(CartItemAddedEvent event)
+    {
+        add(event.getProductId(), CART_WEIGHT);
+    }
+
+    /**
+     * @param categoryId A category ID.
+     * @param limit      The maximum number of products.
+     * @return the IDs of the category's most popular products, most popular first.
+     */
+    public int[] top(int categoryId, int limit)
+    {
+        CategoryTop top = tops.get(categoryId);
+        if (top == null)
+        {
+            return new int[0];
+        }
+        int[] ranked = top.ranked;
+        return ranked.length <= limit ? ranked : Arrays.copyOf(ranked, limit);
+    }
+
+    private void add(int productId, long amount)
+    {
+        LongAdder score = score(productId);
+        score.add(amount);
+        Integer categoryId = categories.get(productId);
+        if (categoryId != null)
+        {
+            top(categoryId).offer(productId, score.sum());
+        }
+    }
+
+    private LongAdder score(int productId)
+    {
+        return scores.computeIfAbsent(productId, k -> new LongAdder());
+    }
+
+    private CategoryTop top(int categoryId)
+    {
+        return tops.computeIfAbsent(categoryId, k -> new CategoryTop());
+    }
+
+    // callers hold the monitor, so the catalog does not change underneath
+    private void recompute(int categoryId)
+    {
+        CategoryTop top = new CategoryTop();
+        categories.forEach((productId, category) -> {
+            LongAdder score = scores.get(productId);
+            if (category == categoryId && score != null)
+            {
+                top.offer(productId, score.sum());
+            }
+        });
+        tops.put(categoryId, top);
+    }
+
+    /**
+     * The highest scores of one category in a min-heap of at most {@value #TOP_K} entries.
+     * Offers are serialized per category; readers only see the immutable ranked array.
+     */
+    static final class CategoryTop
+    {
+        private final int[] productIds = new int[TOP_K];
+        private final long[] heapScores = new long[TOP_K];
+        private int size;
+        private volatile int[] ranked = new int[0];
+
+        synchronized void offer(int productId, long score)
+        {
+            int index = indexOf(productId);
+            if (index >= 0)
+            {
+                // a concurrent add may offer an older, lower sum after a newer one
+                if (score <= heapScores[index])
+                {
+                    return;
+                }
+                heapScores[index] = score;
+                siftDown(index);
+            }
+            else if (size < TOP_K)
+            {
+                productIds[size] = productId;
+                heapScores[size] = score;
+                siftUp(size++);
+            }
+            else if (score > heapScores[0])
+            {
+                productIds[0] = productId;
+                heapScores[0] = score;
+                siftDown(0);
+            }
+            else
+            {
+                return;
+            }
+            publish();
+        }
+
+        // the heap is at most TOP_K entries, a scan is cheaper than keeping a position map
+        private int indexOf(int productId)
+        {
+            for (int i = 0; i < size; i++)
+            {
+                if (productIds[i] == productId)
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void publish()
+        {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++)
+            {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> heapScores[a] != heapScores[b]
+                    ? Long.compare(heapScores[b], heapScores[a])
+                    : Integer.compare(productIds[a], productIds[b]));
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++)
+            {
+                result[i] = productIds[order[i]];
+            }
+            ranked = result;
+        }
+
+        private void siftUp(int i)
+        {
+            while (i > 0 && heapScores[(i - 1) / 2] > heapScores[i])
+            {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i)
+        {
+            while (true)
+            {
+                int smallest = i;
+                int left = 2 * i + 1;
+                if (left < size && heapScores[left] < heapScores[smallest])
+                {
+                    smallest = left;
+                }
+                if (left + 1 < size && heapScores[left + 1] < heapScores[smallest])
+                {
+                    smallest = left + 1;
+                }
+                if (smallest == i)
+                {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b)
+        {
+            int id = productIds[a];
+            productIds[a] = productIds[b];
+            productIds[b] = id;
+            long score = heapScores[a];
+            heapScores[a] = heapScores[b];
+            heapScores[b] = score;
+        }
+    }
+}
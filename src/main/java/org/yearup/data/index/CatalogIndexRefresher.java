@@ -0,0 +1,115 @@
+package org.yearup.data.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.events.CategoryChangedEvent;
+import org.yearup.data.events.ProductChangedEvent;
+import org.yearup.data.events.ProductsBulkChangedEvent;
+import org.yearup.data.interfaces.CategoryDao;
+import org.yearup.data.interfaces.ProductDao;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * Loads every {@link ProductIndex} and {@link CategoryIndex} from the database once the
+ * application has started, then forwards product and category writes to them.
+ * All paths are synchronized so a write can not be lost while the initial load is running.
+ */
+@Component
+public class CatalogIndexRefresher
+{
+    private static final Logger logger = LoggerFactory.getLogger(CatalogIndexRefresher.class);
+
+    private final ProductDao productDao;
+    private final CategoryDao categoryDao;
+    private final List<ProductIndex> productIndexes;
+    private final List<CategoryIndex> categoryIndexes;
+    private final boolean enabled;
+
+    @Autowired
+    public CatalogIndexRefresher(ProductDao productDao,
+                                 CategoryDao categoryDao,
+                                 List<ProductIndex> productIndexes,
+                                 List<CategoryIndex> categoryIndexes,
+                                 @Value("${catalog.index.enabled:false}") boolean enabled)
+    {
+        this.productDao = productDao;
+        this.categoryDao = categoryDao;
+        this.productIndexes = productIndexes;
+        this.categoryIndexes = categoryIndexes;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Build every index from the current contents of the categories and products tables.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuildAll()
+    {
+        if (!enabled) {
+            logger.info("Catalog index disabled, product reads go to the database.");
+            return;
+        }
+        try {
+            // categories first, so indexes that cover both see them before the products
+            List<Category> categories = categoryDao.getAllCategories();
+            for (CategoryIndex index : categoryIndexes) {
+                index.rebuildCategories(categories);
+            }
+            List<Product> products = productDao.getAll();
+            for (ProductIndex index : productIndexes) {
+                index.rebuild(products);
+            }
+            logger.info("Built {} catalog indexes over {} products.", productIndexes.size(), products.size());
+        } catch (RuntimeException e) {
+            // the application still works without the indexes, reads fall back to the database
+            logger.error("Error building catalog indexes", e);
+        }
+    }
+
+    /**
+     * Apply a single product write to every index.
+     */
+    @EventListener
+    public synchronized void onProductChanged(ProductChangedEvent event)
+    {
+        for (ProductIndex index : productIndexes) {
+            if (event.isDeleted()) {
+                index.productRemoved(event.getProductId());
+            } else {
+                index.productSaved(event.getProduct());
+            }
+        }
+    }
+
+    /**
+     * Rebuild every index after a bulk write instead of applying its rows one by one.
+     */
+    @EventListener
+    public void onProductsBulkChanged(ProductsBulkChangedEvent event)
+    {
+        rebuildAll();
+    }
+
+    /**
+     * Apply a single category write to every index.
+     */
+    @EventListener
+    public synchronized void onCategoryChanged(CategoryChangedEvent event)
+    {
+        for (CategoryIndex index : categoryIndexes) {
+            if (event.isDeleted()) {
+                index.categoryRemoved(event.getCategoryId());
+            } else {
+                index.categorySaved(event.getCategory());
+            }
+        }
+    }
+}
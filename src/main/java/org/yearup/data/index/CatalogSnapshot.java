@@ -0,0 +1,734 @@
+package org.yearup.data.index;
+
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.paging.PageRequest;
+import org.yearup.models.paging.ProductCursor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Immutable, read-optimized copy of the product catalog.
+ * Products are kept in product_id order and addressed by their position in that order.
+ * Category, color and featured membership are stored as bitmaps over those positions,
+ * and prices as a sorted primitive array, so a filter is a handful of bitmap
+ * intersections plus two binary searches.
+ * Position arrays sorted by price and by name let a keyset page start with a binary search,
+ * so deep pages cost the same as the first one. Names are ordered like MySQL orders them, so a
+ * cursor handed out by the SQL path continues correctly here and the other way round.
+ * A snapshot is never modified; writes produce a new snapshot (copy-on-write) that patches only
+ * the positions the write touches.
+ */
+public final class CatalogSnapshot
+{
+    // MySQL's default collation, utf8mb4_0900_ai_ci, orders names by their Unicode collation weights
+    // ignoring case and accents; keyset cursors from the SQL path stay valid here only in that same order
+    private static final Collator NAME_COLLATOR = nameCollator();
+
+    private static final CatalogSnapshot EMPTY = build(new Product[0]);
+
+    // products ordered by product_id, their ids for binary search, and the collation keys of their names
+    private final Product[] products;
+    private final int[] productIds;
+    private final CollationKey[] nameKeys;
+
+    // prices in cents ascending, and the product position each price belongs to
+    private final long[] sortedPrices;
+    private final int[] priceOrder;
+
+    // positions sorted by name in MySQL's collation order, ties by product_id
+    private final int[] nameOrder;
+
+    private final Map<Integer, BitSet> categories;
+    private final Map<String, BitSet> colors;
+    private final BitSet featured;
+
+    private CatalogSnapshot(Product[] products, int[] productIds, CollationKey[] nameKeys,
+                            long[] sortedPrices, int[] priceOrder, int[] nameOrder,
+                            Map<Integer, BitSet> categories, Map<String, BitSet> colors, BitSet featured)
+    {
+        this.products = products;
+        this.productIds = productIds;
+        this.nameKeys = nameKeys;
+        this.sortedPrices = sortedPrices;
+        this.priceOrder = priceOrder;
+        this.nameOrder = nameOrder;
+        this.categories = categories;
+        this.colors = colors;
+        this.featured = featured;
+    }
+
+    // indexes products that are already in product_id order
+    private static CatalogSnapshot build(Product[] products)
+    {
+        int size = products.length;
+        int[] productIds = new int[size];
+        CollationKey[] nameKeys = new CollationKey[size];
+        Map<Integer, BitSet> categories = new HashMap<>();
+        Map<String, BitSet> colors = new HashMap<>();
+        BitSet featured = new BitSet(size);
+
+        for (int i = 0; i < size; i++)
+        {
+            Product product = products[i];
+            productIds[i] = product.getProductId();
+            nameKeys[i] = nameKey(product.getName());
+            categories.computeIfAbsent(product.getCategoryId(), k -> new BitSet(size)).set(i);
+            if (product.getColor() != null)
+            {
+                colors.computeIfAbsent(colorKey(product.getColor()), k -> new BitSet(size)).set(i);
+            }
+            if (product.isFeatured())
+            {
+                featured.set(i);
+            }
+        }
+
+        // sort positions by price (ties by product_id, since positions are already in id order)
+        long[] cents = new long[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++)
+        {
+            cents[i] = toCents(products[i].getPrice(), RoundingMode.HALF_UP);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> cents[i]));
+
+        long[] sortedPrices = new long[size];
+        int[] priceOrder = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            priceOrder[i] = order[i];
+            sortedPrices[i] = cents[order[i]];
+        }
+
+        Arrays.sort(order, (a, b) -> {
+            int byName = compareNames(nameKeys[a], nameKeys[b]);
+            return byName != 0 ? byName : Integer.compare(a, b);
+        });
+        int[] nameOrder = Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+
+        return new CatalogSnapshot(products, productIds, nameKeys, sortedPrices, priceOrder, nameOrder,
+                                   categories, colors, featured);
+    }
+
+    /**
+     * Builds a snapshot over the given products. The products are copied so later
+     * changes to the caller's objects do not leak into the index.
+     */
+    public static CatalogSnapshot of(Collection<Product> products)
+    {
+        Product[] copies = products.stream()
+                                   .map(Product::new)
+                                   .sorted(Comparator.comparingInt(Product::getProductId))
+                                   .toArray(Product[]::new);
+        return build(copies);
+    }
+
+    public static CatalogSnapshot empty()
+    {
+        return EMPTY;
+    }
+
+    /**
+     * Patches the sorted arrays and bitmaps at the product's position instead of rebuilding them,
+     * so a single write costs array copies rather than sorts.
+     *
+     * @return a new snapshot with the product inserted, or replaced if its ID already exists.
+     */
+    public CatalogSnapshot with(Product product)
+    {
+        int found = Arrays.binarySearch(productIds, product.getProductId());
+        Patch patch = new Patch(this);
+        if (found >= 0)
+        {
+            patch.remove(found, false);
+            patch.add(found, new Product(product), false);
+        }
+        else
+        {
+            patch.add(-found - 1, new Product(product), true);
+        }
+        return patch.snapshot();
+    }
+
+    /**
+     * @return a new snapshot without the product, or this snapshot if it was not present.
+     */
+    public CatalogSnapshot without(int productId)
+    {
+        int position = Arrays.binarySearch(productIds, productId);
+        if (position < 0)
+        {
+            return this;
+        }
+        Patch patch = new Patch(this);
+        patch.remove(position, true);
+        return patch.snapshot();
+    }
+
+    /**
+     * The parts of a snapshot being derived from another one. Arrays and bitmaps are never changed
+     * in place, only replaced, so the untouched ones are shared with the original snapshot.
+     */
+    private static final class Patch
+    {
+        private Product[] products;
+        private int[] productIds;
+        private CollationKey[] nameKeys;
+        private long[] sortedPrices;
+        private int[] priceOrder;
+        private int[] nameOrder;
+        private final Map<Integer, BitSet> categories;
+        private final Map<String, BitSet> colors;
+        private BitSet featured;
+
+        private Patch(CatalogSnapshot snapshot)
+        {
+            products = snapshot.products;
+            productIds = snapshot.productIds;
+            nameKeys = snapshot.nameKeys;
+            sortedPrices = snapshot.sortedPrices;
+            priceOrder = snapshot.priceOrder;
+            nameOrder = snapshot.nameOrder;
+            categories = new HashMap<>(snapshot.categories);
+            colors = new HashMap<>(snapshot.colors);
+            featured = snapshot.featured;
+        }
+
+        // drops the product at the position; shift closes the gap, otherwise the position is refilled by add
+        private void remove(int position, boolean shift)
+        {
+            Product product = products[position];
+            int id = productIds[position];
+            long cents = toCents(product.getPrice(), RoundingMode.HALF_UP);
+            CollationKey nameKey = nameKeys[position];
+            int[] byPrice = priceOrder;
+            int[] byName = nameOrder;
+            int[] ids = productIds;
+            CollationKey[] keys = nameKeys;
+            int priceIndex = firstIndex(byPrice.length, i -> comparePrice(sortedPrices[i], ids[byPrice[i]], cents, id), true);
+            int nameIndex = firstIndex(byName.length, i -> compareName(keys[byName[i]], ids[byName[i]], nameKey, id), true);
+
+            sortedPrices = removeIndex(sortedPrices, priceIndex);
+            priceOrder = removeIndex(priceOrder, priceIndex, shift ? position : -1);
+            nameOrder = removeIndex(nameOrder, nameIndex, shift ? position : -1);
+
+            if (shift)
+            {
+                products = removeIndex(products, position);
+                productIds = removeIndex(productIds, position, -1);
+                nameKeys = removeIndex(nameKeys, position);
+                categories.replaceAll((category, bits) -> removeBit(bits, position));
+                colors.replaceAll((color, bits) -> removeBit(bits, position));
+                featured = removeBit(featured, position);
+            }
+            else
+            {
+                categories.computeIfPresent(product.getCategoryId(), (category, bits) -> cleared(bits, position));
+                if (product.getColor() != null)
+                {
+                    colors.computeIfPresent(colorKey(product.getColor()), (color, bits) -> cleared(bits, position));
+                }
+                featured = cleared(featured, position);
+            }
+            categories.values().removeIf(BitSet::isEmpty);
+            colors.values().removeIf(BitSet::isEmpty);
+        }
+
+        // puts the product at the position; shift opens a gap there, otherwise remove emptied it
+        private void add(int position, Product product, boolean shift)
+        {
+            int id = product.getProductId();
+            long cents = toCents(product.getPrice(), RoundingMode.HALF_UP);
+            CollationKey nameKey = nameKey(product.getName());
+            // searched before the positions move, so every entry still points at its own product
+            int[] byPrice = priceOrder;
+            int[] byName = nameOrder;
+            int[] ids = productIds;
+            CollationKey[] keys = nameKeys;
+            int priceIndex = firstIndex(byPrice.length, i -> comparePrice(sortedPrices[i], ids[byPrice[i]], cents, id), false);
+            int nameIndex = firstIndex(byName.length, i -> compareName(keys[byName[i]], ids[byName[i]], nameKey, id), false);
+
+            sortedPrices = insertIndex(sortedPrices, priceIndex, cents);
+            priceOrder = insertIndex(priceOrder, priceIndex, position, shift ? position : -1);
+            nameOrder = insertIndex(nameOrder, nameIndex, position, shift ? position : -1);
+
+            if (shift)
+            {
+                products = insertIndex(products, position, product);
+                productIds = insertIndex(productIds, position, id, -1);
+                nameKeys = insertIndex(nameKeys, position, nameKey);
+                categories.replaceAll((category, bits) -> insertBit(bits, position));
+                colors.replaceAll((color, bits) -> insertBit(bits, position));
+                featured = insertBit(featured, position);
+            }
+            else
+            {
+                products = products.clone();
+                products[position] = product;
+                nameKeys = nameKeys.clone();
+                nameKeys[position] = nameKey;
+            }
+
+            categories.compute(product.getCategoryId(), (category, bits) -> set(bits, position));
+            if (product.getColor() != null)
+            {
+                colors.compute(colorKey(product.getColor()), (color, bits) -> set(bits, position));
+            }
+            if (product.isFeatured())
+            {
+                featured = set(featured, position);
+            }
+        }
+
+        private CatalogSnapshot snapshot()
+        {
+            return new CatalogSnapshot(products, productIds, nameKeys, sortedPrices, priceOrder, nameOrder,
+                                       categories, colors, featured);
+        }
+    }
+
+    public int size()
+    {
+        return products.length;
+    }
+
+    /**
+     * @return the product at the given position (product_id order).
+     */
+    public Product productAt(int position)
+    {
+        return products[position];
+    }
+
+    /**
+     * @return the position of the product in product_id order, or -1 if it is not in the snapshot.
+     */
+    public int positionOf(int productId)
+    {
+        int position = Arrays.binarySearch(productIds, productId);
+        return position >= 0 ? position : -1;
+    }
+
+    public Product getById(int productId)
+    {
+        int position = positionOf(productId);
+        return position >= 0 ? products[position] : null;
+    }
+
+    /**
+     * @return every product in product_id order.
+     */
+    public List<Product> products()
+    {
+        return Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    /**
+     * @return a copy of the bitmap of featured products.
+     */
+    public BitSet featured()
+    {
+        return (BitSet) featured.clone();
+    }
+
+    /**
+     * Resolves the filter to a bitmap of matching product positions.
+     * The returned bitmap is a fresh copy and may be modified by the caller.
+     */
+    public BitSet match(ProductFilter filter)
+    {
+        BitSet result = new BitSet(products.length);
+        result.set(0, products.length);
+
+        if (!filter.getCategoryIds().isEmpty())
+        {
+            BitSet inCategories = new BitSet(products.length);
+            for (Integer categoryId : filter.getCategoryIds())
+            {
+                BitSet bits = categories.get(categoryId);
+                if (bits != null)
+                {
+                    inCategories.or(bits);
+                }
+            }
+            result.and(inCategories);
+        }
+
+        if (!filter.getColors().isEmpty())
+        {
+            BitSet inColors = new BitSet(products.length);
+            for (String color : filter.getColors())
+            {
+                BitSet bits = colors.get(colorKey(color));
+                if (bits != null)
+                {
+                    inColors.or(bits);
+                }
+            }
+            result.and(inColors);
+        }
+
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null)
+        {
+            result.and(priceRange(filter.getMinPrice(), filter.getMaxPrice()));
+        }
+        return result;
+    }
+
+    /**
+     * @return the matching products in product_id order.
+     */
+    public List<Product> search(ProductFilter filter)
+    {
+        return toProducts(match(filter));
+    }
+
+    /**
+     * Counts the matching products per color, category and price bucket in one pass over the bitmap.
+     */
+    public ProductFacets facets(BitSet matches)
+    {
+        ProductFacets facets = new ProductFacets();
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1))
+        {
+            facets.add(products[i]);
+        }
+        return facets;
+    }
+
+    /**
+     * @return the products at the set positions of the bitmap, in product_id order.
+     */
+    public List<Product> toProducts(BitSet positions)
+    {
+        List<Product> result = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1))
+        {
+            result.add(products[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Orders the matching products and returns the rows of one keyset page.
+     * For a paged request one extra row is returned so the caller can tell whether a next page exists.
+     *
+     * @param matches Bitmap of matching positions, as returned by {@link #match(ProductFilter)}.
+     * @param page    The sort order, limit and cursor.
+     * @return at most limit + 1 products in page order.
+     */
+    public List<Product> page(BitSet matches, PageRequest page)
+    {
+        int wanted = page.isPaged() ? page.getLimit() + 1 : Integer.MAX_VALUE;
+        ProductCursor after = page.getAfter();
+
+        switch (page.getSort())
+        {
+            case PRICE_ASC:
+            {
+                int start = after == null ? 0 : firstIndex(priceOrder.length, priceCursor(after), false);
+                return collect(matches, priceOrder, start, 1, wanted);
+            }
+            case PRICE_DESC:
+            {
+                // walk the ascending order backwards, starting just below the cursor
+                int start = after == null ? priceOrder.length - 1 : firstIndex(priceOrder.length, priceCursor(after), true) - 1;
+                return collect(matches, priceOrder, start, -1, wanted);
+            }
+            case NAME:
+            {
+                int start = after == null ? 0 : firstIndex(nameOrder.length, nameCursor(after), false);
+                return collect(matches, nameOrder, start, 1, wanted);
+            }
+            default:
+            {
+                int start = after == null ? 0 : firstIndex(productIds.length,
+                        i -> Integer.compare(productIds[i], after.getProductId()), false);
+                List<Product> rows = new ArrayList<>();
+                for (int i = matches.nextSetBit(start); i >= 0 && rows.size() < wanted; i = matches.nextSetBit(i + 1))
+                {
+                    rows.add(products[i]);
+                }
+                return rows;
+            }
+        }
+    }
+
+    private List<Product> collect(BitSet matches, int[] order, int start, int step, int wanted)
+    {
+        List<Product> rows = new ArrayList<>();
+        for (int i = start; i >= 0 && i < order.length && rows.size() < wanted; i += step)
+        {
+            if (matches.get(order[i]))
+            {
+                rows.add(products[order[i]]);
+            }
+        }
+        return rows;
+    }
+
+    // compares the i-th entry of priceOrder with the cursor
+    private IntUnaryOperator priceCursor(ProductCursor after)
+    {
+        long cents = toCents(after.getPrice(), RoundingMode.HALF_UP);
+        return i -> {
+            int byPrice = Long.compare(sortedPrices[i], cents);
+            return byPrice != 0 ? byPrice : Integer.compare(productIds[priceOrder[i]], after.getProductId());
+        };
+    }
+
+    // compares the i-th entry of nameOrder with the cursor
+    private IntUnaryOperator nameCursor(ProductCursor after)
+    {
+        CollationKey cursorKey = nameKey(after.getName());
+        return i -> compareName(nameKeys[nameOrder[i]], productIds[nameOrder[i]], cursorKey, after.getProductId());
+    }
+
+    private static int comparePrice(long cents, int productId, long otherCents, int otherProductId)
+    {
+        int byPrice = Long.compare(cents, otherCents);
+        return byPrice != 0 ? byPrice : Integer.compare(productId, otherProductId);
+    }
+
+    private static int compareName(CollationKey name, int productId, CollationKey otherName, int otherProductId)
+    {
+        int byName = compareNames(name, otherName);
+        return byName != 0 ? byName : Integer.compare(productId, otherProductId);
+    }
+
+    // MySQL sorts NULL names first
+    private static int compareNames(CollationKey name, CollationKey otherName)
+    {
+        if (name == null || otherName == null)
+        {
+            return name == null ? (otherName == null ? 0 : -1) : 1;
+        }
+        return name.compareTo(otherName);
+    }
+
+    private static CollationKey nameKey(String name)
+    {
+        return name == null ? null : NAME_COLLATOR.getCollationKey(name);
+    }
+
+    // primary strength compares base letters only, like the accent- and case-insensitive ai_ci collations
+    private static Collator nameCollator()
+    {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+        return collator;
+    }
+
+    /**
+     * Binary search over a sorted sequence described by a comparison against the cursor.
+     * @return the first index comparing greater than the cursor, or greater-or-equal when inclusive.
+     */
+    private static int firstIndex(int length, IntUnaryOperator compareToCursor, boolean inclusive)
+    {
+        int low = 0;
+        int high = length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            int cmp = compareToCursor.applyAsInt(mid);
+            if (cmp < 0 || (cmp == 0 && !inclusive))
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // copy of the bits with position set
+    private static BitSet set(BitSet bits, int position)
+    {
+        BitSet next = bits == null ? new BitSet() : (BitSet) bits.clone();
+        next.set(position);
+        return next;
+    }
+
+    // the bits with position cleared, the same instance when it was not set
+    private static BitSet cleared(BitSet bits, int position)
+    {
+        if (!bits.get(position))
+        {
+            return bits;
+        }
+        BitSet next = (BitSet) bits.clone();
+        next.clear(position);
+        return next;
+    }
+
+    // the bits with a clear bit opened at position and every bit from there moved up one
+    private static BitSet insertBit(BitSet bits, int position)
+    {
+        long[] words = bits.toLongArray();
+        int word = position >>> 6;
+        if (word >= words.length)
+        {
+            // nothing at or above the position to move
+            return bits;
+        }
+        long[] next = Arrays.copyOf(words, words.length + 1);
+        long below = (1L << (position & 63)) - 1;
+        next[word] = (words[word] & below) | ((words[word] & ~below) << 1);
+        for (int i = word + 1; i <= words.length; i++)
+        {
+            next[i] = (i < words.length ? words[i] << 1 : 0) | (words[i - 1] >>> 63);
+        }
+        return BitSet.valueOf(next);
+    }
+
+    // the bits without the bit at position, every bit above it moved down one
+    private static BitSet removeBit(BitSet bits, int position)
+    {
+        long[] words = bits.toLongArray();
+        int word = position >>> 6;
+        if (word >= words.length)
+        {
+            return bits;
+        }
+        long[] next = words.clone();
+        long below = (1L << (position & 63)) - 1;
+        next[word] = (words[word] & below) | ((words[word] >>> 1) & ~below);
+        for (int i = word; i < words.length; i++)
+        {
+            if (i > word)
+            {
+                next[i] = words[i] >>> 1;
+            }
+            if (i + 1 < words.length)
+            {
+                next[i] |= words[i + 1] << 63;
+            }
+        }
+        return BitSet.valueOf(next);
+    }
+
+    // copy of the order with value inserted at index; positions from opened up move up one unless opened is -1
+    private static int[] insertIndex(int[] order, int index, int value, int opened)
+    {
+        int[] next = new int[order.length + 1];
+        for (int i = 0, j = 0; i < next.length; i++)
+        {
+            if (i == index)
+            {
+                next[i] = value;
+                continue;
+            }
+            int position = order[j++];
+            next[i] = opened >= 0 && position >= opened ? position + 1 : position;
+        }
+        return next;
+    }
+
+    // copy of the order without the entry at index; positions above removed move down one unless removed is -1
+    private static int[] removeIndex(int[] order, int index, int removed)
+    {
+        int[] next = new int[order.length - 1];
+        for (int i = 0, j = 0; i < order.length; i++)
+        {
+            if (i == index)
+            {
+                continue;
+            }
+            int position = order[i];
+            next[j++] = removed >= 0 && position > removed ? position - 1 : position;
+        }
+        return next;
+    }
+
+    private static long[] insertIndex(long[] values, int index, long value)
+    {
+        long[] next = new long[values.length + 1];
+        System.arraycopy(values, 0, next, 0, index);
+        next[index] = value;
+        System.arraycopy(values, index, next, index + 1, values.length - index);
+        return next;
+    }
+
+    private static long[] removeIndex(long[] values, int index)
+    {
+        long[] next = new long[values.length - 1];
+        System.arraycopy(values, 0, next, 0, index);
+        System.arraycopy(values, index + 1, next, index, values.length - index - 1);
+        return next;
+    }
+
+    private static <T> T[] insertIndex(T[] values, int index, T value)
+    {
+        T[] next = Arrays.copyOf(values, values.length + 1);
+        System.arraycopy(values, index, next, index + 1, values.length - index);
+        next[index] = value;
+        return next;
+    }
+
+    private static <T> T[] removeIndex(T[] values, int index)
+    {
+        T[] next = Arrays.copyOf(values, values.length - 1);
+        System.arraycopy(values, index + 1, next, index, values.length - index - 1);
+        return next;
+    }
+
+    private BitSet priceRange(BigDecimal minPrice, BigDecimal maxPrice)
+    {
+        // the first price >= min and the first price > max bound the matching run
+        int from = minPrice == null ? 0 : firstIndexAbove(toCents(minPrice, RoundingMode.CEILING) - 1);
+        int to = maxPrice == null ? sortedPrices.length : firstIndexAbove(toCents(maxPrice, RoundingMode.FLOOR));
+
+        BitSet bits = new BitSet(products.length);
+        for (int i = from; i < to; i++)
+        {
+            bits.set(priceOrder[i]);
+        }
+        return bits;
+    }
+
+    // index of the first sorted price strictly greater than the given value
+    private int firstIndexAbove(long cents)
+    {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= cents)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static long toCents(BigDecimal price, RoundingMode roundingMode)
+    {
+        if (price == null)
+        {
+            return 0;
+        }
+        return price.movePointRight(2).setScale(0, roundingMode).longValue();
+    }
+
+    // MySQL compares colors case-insensitively, so the index does too
+    static String colorKey(String color)
+    {
+        return color.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,33 @@
+/**
+ * This interface defines the contract for in-memory structures that also cover categories.
+ * Implementations are loaded once from the database and then kept current from category writes.
+ */
+package org.yearup.data.index;
+
+import org.yearup.models.Category;
+
+import java.util.Collection;
+
+public interface CategoryIndex {
+
+    /**
+     * Replace every category in the index.
+     *
+     * @param categories Every category currently in the catalog.
+     */
+    void rebuildCategories(Collection<Category> categories);
+
+    /**
+     * Apply an inserted or updated category to the index.
+     *
+     * @param category The category as it is now stored.
+     */
+    void categorySaved(Category category);
+
+    /**
+     * Remove a deleted category from the index.
+     *
+     * @param categoryId The ID of the deleted category.
+     */
+    void categoryRemoved(int categoryId);
+}
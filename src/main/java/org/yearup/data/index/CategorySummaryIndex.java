@@ -0,0 +1,208 @@
+package org.yearup.data.index;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Product count, featured count and price range of every category, kept as running aggregates.
+ * A product write subtracts the product's previous values from its old category and adds the new
+ * ones, so the numbers never need a rescan; prices are kept as a sorted multiset per category so
+ * the minimum and maximum survive deletes. After every write an immutable list is republished,
+ * so a read is a single volatile load.
+ */
+@Component
+public class CategorySummaryIndex implements ProductIndex, CategoryIndex
+{
+    // category_id -> category, sorted so the published list is in category ID order
+    private final TreeMap<Integer, Category> categories = new TreeMap<>();
+    private final Map<Integer, Aggregate> aggregates = new HashMap<>();
+    // product_id -> what the product currently contributes
+    private final Map<Integer, Contribution> contributions = new HashMap<>();
+
+    private boolean categoriesLoaded;
+    // null until both categories and products have been loaded
+    private volatile List<CategorySummary> summaries;
+
+    private static final class Contribution
+    {
+        private final int categoryId;
+        private final BigDecimal price;
+        private final boolean featured;
+
+        private Contribution(Product product)
+        {
+            this.categoryId = product.getCategoryId();
+            this.price = product.getPrice();
+            this.featured = product.isFeatured();
+        }
+    }
+
+    private static final class Aggregate
+    {
+        private int products;
+        private int featured;
+        // price -> number of products at that price
+        private final TreeMap<BigDecimal, Integer> prices = new TreeMap<>();
+
+        private void add(Contribution contribution)
+        {
+            products++;
+            if (contribution.featured)
+            {
+                featured++;
+            }
+            if (contribution.price != null)
+            {
+                prices.merge(contribution.price, 1, Integer::sum);
+            }
+        }
+
+        private void subtract(Contribution contribution)
+        {
+            products--;
+            if (contribution.featured)
+            {
+                featured--;
+            }
+            if (contribution.price != null)
+            {
+                prices.computeIfPresent(contribution.price, (price, count) -> count == 1 ? null : count - 1);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rebuildCategories(Collection<Category> all)
+    {
+        categories.clear();
+        for (Category category : all)
+        {
+            categories.put(category.getCategoryId(), category);
+        }
+        categoriesLoaded = true;
+        if (summaries != null)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void categorySaved(Category category)
+    {
+        categories.put(category.getCategoryId(), category);
+        if (summaries != null)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void categoryRemoved(int categoryId)
+    {
+        if (categories.remove(categoryId) != null && summaries != null)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<Product> products)
+    {
+        aggregates.clear();
+        contributions.clear();
+        for (Product product : products)
+        {
+            add(product);
+        }
+        if (categoriesLoaded)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void productSaved(Product product)
+    {
+        remove(product.getProductId());
+        add(product);
+        if (summaries != null)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(int productId)
+    {
+        if (remove(productId) && summaries != null)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return summaries != null;
+    }
+
+    /**
+     * @return a summary of every category in category ID order; empty if the index has not been built yet.
+     */
+    public List<CategorySummary> summaries()
+    {
+        List<CategorySummary> current = summaries;
+        return current == null ? List.of() : current;
+    }
+
+    // callers hold the monitor
+    private void add(Product product)
+    {
+        Contribution contribution = new Contribution(product);
+        contributions.put(product.getProductId(), contribution);
+        aggregates.computeIfAbsent(contribution.categoryId, k -> new Aggregate()).add(contribution);
+    }
+
+    // callers hold the monitor
+    private boolean remove(int productId)
+    {
+        Contribution contribution = contributions.remove(productId);
+        if (contribution == null)
+        {
+            return false;
+        }
+        Aggregate aggregate = aggregates.get(contribution.categoryId);
+        aggregate.subtract(contribution);
+        if (aggregate.products == 0)
+        {
+            aggregates.remove(contribution.categoryId);
+        }
+        return true;
+    }
+
+    // callers hold the monitor; one pass over the categories, not the products
+    private void publish()
+    {
+        List<CategorySummary> list = new ArrayList<>(categories.size());
+        for (Category category : categories.values())
+        {
+            Aggregate aggregate = aggregates.get(category.getCategoryId());
+            if (aggregate == null)
+            {
+                list.add(new CategorySummary(category.getCategoryId(), category.getName(), 0, 0, null, null));
+                continue;
+            }
+            boolean priced = !aggregate.prices.isEmpty();
+            list.add(new CategorySummary(category.getCategoryId(), category.getName(),
+                                         aggregate.products, aggregate.featured,
+                                         priced ? aggregate.prices.firstKey() : null,
+                                         priced ? aggregate.prices.lastKey() : null));
+        }
+        summaries = Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,235 @@
+package org.yearup.data.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.yearup.data.events.OrderPlacedEvent;
+import org.yearup.data.interfaces.OrderDao;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * "Frequently bought together": for every product, the {@value #TOP_K} products that appear in the
+ * most orders together with it.
+ * The co-purchase counts are built from all order lines at startup, splitting the orders over the
+ * common ForkJoinPool and merging the partial counts, and are then kept current from
+ * {@link OrderPlacedEvent}s. Each product's top list is recomputed only when one of its counts changes,
+ * so a lookup is a single map read of a precomputed array.
+ */
+@Component
+public class CoPurchaseIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger(CoPurchaseIndex.class);
+
+    public static final int TOP_K = 20;
+
+    // orders per fork/join leaf; below this splitting costs more than it saves
+    private static final int LEAF_ORDERS = 1024;
+
+    private final OrderDao orderDao;
+    private final boolean enabled;
+
+    // product_id -> product_id of each product bought with it -> number of orders with both; guarded by this
+    private Map<Integer, IntCounts> counts;
+    // orders placed while a build runs; replayed after it unless the scan already counted them
+    private final List<OrderPlacedEvent> pending = new ArrayList<>();
+
+    // product_id -> top product IDs, most often bought together first; null until the first build
+    private volatile Map<Integer, int[]> related;
+
+    @Autowired
+    public CoPurchaseIndex(OrderDao orderDao, @Value("${catalog.index.enabled:false}") boolean enabled)
+    {
+        this.orderDao = orderDao;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Count every pair of products bought together in the order_line_items table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        synchronized (this)
+        {
+            // from here on new orders wait in pending until the new counts are installed
+            counts = null;
+            pending.clear();
+        }
+        try
+        {
+            List<int[]> baskets = new ArrayList<>();
+            // order IDs are not committed in order, so a lower ID than the last one scanned may still be missing
+            BitSet scannedOrderIds = new BitSet();
+            orderDao.forEachOrderBasket((productIds, orderId) -> {
+                // a single product has nothing to be bought together with
+                if (productIds.length > 1)
+                {
+                    baskets.add(productIds);
+                }
+                scannedOrderIds.set(orderId);
+            });
+            Map<Integer, IntCounts> built = ForkJoinPool.commonPool()
+                                                        .invoke(new CountPairs(baskets, 0, baskets.size()));
+            install(built, scannedOrderIds);
+            logger.info("Built co-purchase counts for {} products from {} orders.", built.size(), baskets.size());
+        }
+        catch (RuntimeException e)
+        {
+            // recommendations are optional, the endpoint reports them as unavailable
+            logger.error("Error building co-purchase counts", e);
+        }
+    }
+
+    // the counts are computed outside the monitor, so checkouts are not held up by the scan
+    synchronized void install(Map<Integer, IntCounts> built, BitSet scannedOrderIds)
+    {
+        counts = built;
+        Map<Integer, int[]> lists = new ConcurrentHashMap<>(Math.max(16, built.size() * 2));
+        built.forEach((productId, partners) -> lists.put(productId, partners.top(TOP_K)));
+        related = lists;
+        for (OrderPlacedEvent event : pending)
+        {
+            if (!scannedOrderIds.get(event.getOrderId()))
+            {
+                count(event.getProductIds());
+            }
+        }
+        pending.clear();
+    }
+
+    @EventListener
+    public synchronized void onOrderPlaced(OrderPlacedEvent event)
+    {
+        if (counts == null)
+        {
+            if (enabled)
+            {
+                pending.add(event);
+            }
+            return;
+        }
+        count(event.getProductIds());
+    }
+
+    public boolean isReady()
+    {
+        return related != null;
+    }
+
+    /**
+     * @param productId A product ID.
+     * @return the IDs of the products most often bought with it, most often first;
+     *         empty if it was never ordered with anything or the index has not been built yet.
+     */
+    public int[] related(int productId)
+    {
+        Map<Integer, int[]> current = related;
+        if (current == null)
+        {
+            return new int[0];
+        }
+        int[] top = current.get(productId);
+        return top == null ? new int[0] : top;
+    }
+
+    // callers hold the monitor
+    private void count(int[] productIds)
+    {
+        if (productIds.length < 2)
+        {
+            return;
+        }
+        addPairs(counts, productIds);
+        for (int productId : productIds)
+        {
+            related.put(productId, counts.get(productId).top(TOP_K));
+        }
+    }
+
+    private static void addPairs(Map<Integer, IntCounts> counts, int[] productIds)
+    {
+        for (int a : productIds)
+        {
+            IntCounts partners = counts.computeIfAbsent(a, k -> new IntCounts());
+            for (int b : productIds)
+            {
+                if (a != b)
+                {
+                    partners.add(b, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the pairs of a range of orders, forking until the range is small and merging the halves.
+     */
+    static final class CountPairs extends RecursiveTask<Map<Integer, IntCounts>>
+    {
+        private final List<int[]> baskets;
+        private final int from;
+        private final int to;
+
+        CountPairs(List<int[]> baskets, int from, int to)
+        {
+            this.baskets = baskets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, IntCounts> compute()
+        {
+            if (to - from <= LEAF_ORDERS)
+            {
+                Map<Integer, IntCounts> counts = new HashMap<>();
+                for (int i = from; i < to; i++)
+                {
+                    addPairs(counts, baskets.get(i));
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            CountPairs left = new CountPairs(baskets, from, middle);
+            left.fork();
+            Map<Integer, IntCounts> right = new CountPairs(baskets, middle, to).compute();
+            return merge(left.join(), right);
+        }
+
+        private static Map<Integer, IntCounts> merge(Map<Integer, IntCounts> a, Map<Integer, IntCounts> b)
+        {
+            // fold the smaller map into the larger one
+            Map<Integer, IntCounts> into = a.size() >= b.size() ? a : b;
+            Map<Integer, IntCounts> from = into == a ? b : a;
+            from.forEach((productId, partners) -> {
+                IntCounts existing = into.get(productId);
+                if (existing == null)
+                {
+                    into.put(productId, partners);
+                }
+                else if (existing.size() >= partners.size())
+                {
+                    existing.addAll(partners);
+                }
+                else
+                {
+                    partners.addAll(existing);
+                    into.put(productId, partners);
+                }
+            });
+            return into;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.yearup.data.index;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.*;
+
+/**
+ * Precomputed lists of featured products, overall and per category, in product ID order.
+ * Writes only touch the sorted map of featured products and then republish immutable lists,
+ * so a read is a single volatile load and never locks or goes to the database.
+ */
+@Component
+public class FeaturedProductsIndex implements ProductIndex
+{
+    // product_id -> featured product; sorted, so the published lists have a stable order
+    private final TreeMap<Integer, Product> featured = new TreeMap<>();
+
+    // null until the first rebuild
+    private volatile Lists lists;
+
+    private static final class Lists
+    {
+        private final List<Product> all;
+        private final Map<Integer, List<Product>> byCategory;
+
+        private Lists(List<Product> all, Map<Integer, List<Product>> byCategory)
+        {
+            this.all = all;
+            this.byCategory = byCategory;
+        }
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<Product> products)
+    {
+        featured.clear();
+        for (Product product : products)
+        {
+            if (product.isFeatured())
+            {
+                featured.put(product.getProductId(), new Product(product));
+            }
+        }
+        publish();
+    }
+
+    @Override
+    public synchronized void productSaved(Product product)
+    {
+        Product previous = product.isFeatured()
+                ? featured.put(product.getProductId(), new Product(product))
+                : featured.remove(product.getProductId());
+        // most writes are to products that neither are nor were featured
+        if (lists != null && (product.isFeatured() || previous != null))
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(int productId)
+    {
+        if (featured.remove(productId) != null && lists != null)
+        {
+            publish();
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return lists != null;
+    }
+
+    /**
+     * @param categoryId A category ID, or null for every category.
+     * @return the featured products in product ID order; empty if the index has not been built yet.
+     */
+    public List<Product> featured(Integer categoryId)
+    {
+        Lists current = lists;
+        if (current == null)
+        {
+            return List.of();
+        }
+        if (categoryId == null)
+        {
+            return current.all;
+        }
+        return current.byCategory.getOrDefault(categoryId, List.of());
+    }
+
+    // callers hold the monitor
+    private void publish()
+    {
+        Map<Integer, List<Product>> byCategory = new HashMap<>();
+        for (Product product : featured.values())
+        {
+            byCategory.computeIfAbsent(product.getCategoryId(), k -> new ArrayList<>()).add(product);
+        }
+        byCategory.replaceAll((categoryId, products) -> List.copyOf(products));
+        lists = new Lists(List.copyOf(featured.values()), Map.copyOf(byCategory));
+    }
+}
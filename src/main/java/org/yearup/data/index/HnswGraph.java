@@ -0,0 +1,555 @@
+package org.yearup.data.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest neighbour search over
+ * unit length vectors, with cosine distance (1 - dot product).
+ * Every node has a random top level; each level links a node to its closest nodes at that level,
+ * and a search descends greedily from the sparse top levels to a bounded best-first search of level 0.
+ * <p>
+ * Nodes are first added and then inserted; inserts may run in parallel, each neighbour list is
+ * replaced under its node's monitor and never changed in place, so searches can run during inserts.
+ * Removed nodes stay in the graph to keep it connected: searches still walk through them but never
+ * return them, so many of them make searches slower; {@link #removed()} tells the owner when to rebuild.
+ */
+final class HnswGraph
+{
+    private static final int MAX_LEVEL = 16;
+
+    private final int dimensions;
+    private final int maxNeighbors;
+    private final int maxNeighbors0;
+    private final int efConstruction;
+    private final double levelFactor;
+
+    // grows under this; readers see a prefix of the nodes, which is always a valid graph
+    private volatile Node[] nodes = new Node[16];
+    private int size;
+    private int removed;
+
+    private final Object entryLock = new Object();
+    private volatile Entry entry;
+
+    private static final class Node
+    {
+        private final int label;
+        private final float[] vector;
+        private final int[][] neighbors;
+        private volatile boolean removed;
+
+        private Node(int label, float[] vector, int level)
+        {
+            this.label = label;
+            this.vector = vector;
+            this.neighbors = new int[level + 1][];
+            Arrays.fill(this.neighbors, new int[0]);
+        }
+
+        private int level()
+        {
+            return neighbors.length - 1;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final int node;
+        private final int level;
+
+        private Entry(int node, int level)
+        {
+            this.node = node;
+            this.level = level;
+        }
+    }
+
+    /**
+     * @param dimensions     The length of every vector.
+     * @param maxNeighbors   Links per node above level 0; level 0 keeps twice as many.
+     * @param efConstruction Candidates considered when linking a new node.
+     */
+    HnswGraph(int dimensions, int maxNeighbors, int efConstruction)
+    {
+        this.dimensions = dimensions;
+        this.maxNeighbors = maxNeighbors;
+        this.maxNeighbors0 = maxNeighbors * 2;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(maxNeighbors);
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of removed nodes still in the graph.
+     */
+    synchronized int removed()
+    {
+        return removed;
+    }
+
+    /**
+     * Reserves a node for a vector; it is not found by searches until {@link #insert} links it.
+     *
+     * @param label  The value searches return for the node, e.g. a product ID.
+     * @param vector A unit length vector, or all zeros.
+     * @return the node ID.
+     */
+    synchronized int add(int label, float[] vector)
+    {
+        if (vector.length != dimensions)
+        {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        int level = (int) Math.min(MAX_LEVEL, -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelFactor);
+        if (size == nodes.length)
+        {
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        nodes[size] = new Node(label, vector, level);
+        return size++;
+    }
+
+    /**
+     * Links an added node into every level up to its own; safe to call for different nodes in parallel.
+     */
+    void insert(int id)
+    {
+        Node node = nodes[id];
+        Entry start;
+        synchronized (entryLock)
+        {
+            start = entry;
+            if (start == null)
+            {
+                entry = new Entry(id, node.level());
+                return;
+            }
+        }
+
+        int current = greedyDescent(node.vector, start, node.level());
+        for (int level = Math.min(node.level(), start.level); level >= 0; level--)
+        {
+            long[] candidates = searchLayer(node.vector, current, efConstruction, level, candidate -> true);
+            int[] selected = selectNeighbors(node.vector, candidates, maxNeighbors, id);
+            synchronized (node)
+            {
+                node.neighbors[level] = selected;
+            }
+            int limit = level == 0 ? maxNeighbors0 : maxNeighbors;
+            for (int neighbor : selected)
+            {
+                connect(neighbor, id, level, limit);
+            }
+            current = idOf(candidates[0]);
+        }
+
+        if (node.level() > start.level)
+        {
+            synchronized (entryLock)
+            {
+                if (node.level() > entry.level)
+                {
+                    entry = new Entry(id, node.level());
+                }
+            }
+        }
+    }
+
+    synchronized void remove(int id)
+    {
+        if (!nodes[id].removed)
+        {
+            nodes[id].removed = true;
+            removed++;
+        }
+    }
+
+    int label(int id)
+    {
+        return nodes[id].label;
+    }
+
+    float[] vector(int id)
+    {
+        return nodes[id].vector;
+    }
+
+    /**
+     * @param query  A unit length vector.
+     * @param k      The maximum number of results.
+     * @param ef     Candidates kept during the search; higher finds more of the true neighbours.
+     * @param accept Filters node IDs, e.g. to leave out the query's own node.
+     * @return the IDs of the closest nodes, closest first; never removed nodes.
+     */
+    int[] search(float[] query, int k, int ef, IntPredicate accept)
+    {
+        Entry start = entry;
+        if (start == null)
+        {
+            return new int[0];
+        }
+        int current = greedyDescent(query, start, 0);
+        // filtered while searching, so removed and rejected nodes do not take the place of results
+        long[] candidates = searchLayer(query, current, Math.max(ef, k), 0,
+                                        id -> !nodes[id].removed && accept.test(id));
+        int[] result = new int[Math.min(k, candidates.length)];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = idOf(candidates[i]);
+        }
+        return result;
+    }
+
+    void write(DataOutputStream out) throws IOException
+    {
+        Node[] snapshot;
+        int count;
+        synchronized (this)
+        {
+            snapshot = nodes;
+            count = size;
+        }
+        Entry start = entry;
+        out.writeInt(dimensions);
+        out.writeInt(maxNeighbors);
+        out.writeInt(efConstruction);
+        out.writeInt(count);
+        out.writeInt(start == null ? -1 : start.node);
+        for (int id = 0; id < count; id++)
+        {
+            Node node = snapshot[id];
+            out.writeInt(node.label);
+            out.writeBoolean(node.removed);
+            out.writeInt(node.level());
+            for (float value : node.vector)
+            {
+                out.writeFloat(value);
+            }
+            for (int level = 0; level <= node.level(); level++)
+            {
+                int[] neighbors = neighbors(node, level);
+                out.writeInt(neighbors.length);
+                for (int neighbor : neighbors)
+                {
+                    out.writeInt(neighbor);
+                }
+            }
+        }
+    }
+
+    static HnswGraph read(DataInputStream in) throws IOException
+    {
+        HnswGraph graph = new HnswGraph(in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        int entryNode = in.readInt();
+        graph.nodes = new Node[Math.max(16, count)];
+        for (int id = 0; id < count; id++)
+        {
+            int label = in.readInt();
+            boolean removed = in.readBoolean();
+            int level = in.readInt();
+            float[] vector = new float[graph.dimensions];
+            for (int i = 0; i < vector.length; i++)
+            {
+                vector[i] = in.readFloat();
+            }
+            Node node = new Node(label, vector, level);
+            node.removed = removed;
+            if (removed)
+            {
+                graph.removed++;
+            }
+            for (int l = 0; l <= level; l++)
+            {
+                int[] neighbors = new int[in.readInt()];
+                for (int i = 0; i < neighbors.length; i++)
+                {
+                    neighbors[i] = in.readInt();
+                }
+                node.neighbors[l] = neighbors;
+            }
+            graph.nodes[id] = node;
+        }
+        graph.size = count;
+        if (entryNode >= 0)
+        {
+            graph.entry = new Entry(entryNode, graph.nodes[entryNode].level());
+        }
+        return graph;
+    }
+
+    // closest node found by walking the levels above the target level one neighbour at a time
+    private int greedyDescent(float[] query, Entry start, int targetLevel)
+    {
+        int current = start.node;
+        float currentDistance = distance(query, nodes[current].vector);
+        for (int level = start.level; level > targetLevel; level--)
+        {
+            boolean improved = true;
+            while (improved)
+            {
+                improved = false;
+                for (int neighbor : neighbors(nodes[current], level))
+                {
+                    float distance = distance(query, nodes[neighbor].vector);
+                    if (distance < currentDistance)
+                    {
+                        current = neighbor;
+                        currentDistance = distance;
+                        improved = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one level. Candidates and results are (distance, node) pairs packed into
+     * longs, so the heaps hold primitives: distances are never negative, and the bits of non-negative
+     * floats sort like the floats.
+     * Nodes that are not accepted are still walked through, they just never become results.
+     *
+     * @return the closest accepted nodes found as packed pairs, closest first.
+     */
+    private long[] searchLayer(float[] query, int start, int ef, int level, IntPredicate accept)
+    {
+        Node[] snapshot = nodes;
+        BitSet visited = new BitSet(snapshot.length);
+        LongHeap candidates = new LongHeap(ef * 2);
+        // a min-heap of negated pairs is a max-heap of the pairs: the worst result is on top
+        LongHeap results = new LongHeap(ef + 1);
+
+        long first = pack(distance(query, snapshot[start].vector), start);
+        visited.set(start);
+        candidates.push(first);
+        if (accept.test(start))
+        {
+            results.push(-first);
+        }
+        while (candidates.size() > 0)
+        {
+            long candidate = candidates.pop();
+            if (results.size() >= ef && candidate > -results.peek())
+            {
+                break;
+            }
+            for (int neighbor : neighbors(snapshot[idOf(candidate)], level))
+            {
+                // linked by an insert that finished after this search took its snapshot
+                if (neighbor >= snapshot.length || snapshot[neighbor] == null || visited.get(neighbor))
+                {
+                    continue;
+                }
+                visited.set(neighbor);
+                long pair = pack(distance(query, snapshot[neighbor].vector), neighbor);
+                if (results.size() < ef || pair < -results.peek())
+                {
+                    candidates.push(pair);
+                    if (accept.test(neighbor))
+                    {
+                        results.push(-pair);
+                        if (results.size() > ef)
+                        {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+
+        long[] sorted = new long[results.size()];
+        for (int i = sorted.length - 1; i >= 0; i--)
+        {
+            sorted[i] = -results.pop();
+        }
+        return sorted;
+    }
+
+    /**
+     * Picks up to count neighbours from candidates sorted closest first, preferring candidates that are
+     * closer to the base than to any neighbour picked so far; such links point in different directions
+     * and keep clusters of near duplicates from taking every slot. Remaining slots take the closest skipped ones.
+     * The node being linked is never its own neighbour.
+     */
+    private int[] selectNeighbors(float[] base, long[] candidates, int count, int exclude)
+    {
+        int[] selected = new int[Math.min(count, candidates.length)];
+        int size = 0;
+        List<Integer> skipped = new ArrayList<>();
+        for (long candidate : candidates)
+        {
+            if (size == selected.length)
+            {
+                break;
+            }
+            int id = idOf(candidate);
+            if (id == exclude)
+            {
+                continue;
+            }
+            float distance = distanceOf(candidate);
+            boolean diverse = true;
+            for (int i = 0; i < size && diverse; i++)
+            {
+                diverse = distance(nodes[id].vector, nodes[selected[i]].vector) >= distance;
+            }
+            if (diverse)
+            {
+                selected[size++] = id;
+            }
+            else
+            {
+                skipped.add(id);
+            }
+        }
+        for (int i = 0; size < selected.length && i < skipped.size(); i++)
+        {
+            selected[size++] = skipped.get(i);
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    private void connect(int id, int newNeighbor, int level, int limit)
+    {
+        Node node = nodes[id];
+        synchronized (node)
+        {
+            int[] current = node.neighbors[level];
+            for (int neighbor : current)
+            {
+                if (neighbor == newNeighbor)
+                {
+                    return;
+                }
+            }
+            if (current.length < limit)
+            {
+                int[] grown = Arrays.copyOf(current, current.length + 1);
+                grown[current.length] = newNeighbor;
+                node.neighbors[level] = grown;
+                return;
+            }
+            long[] candidates = new long[current.length + 1];
+            for (int i = 0; i < current.length; i++)
+            {
+                candidates[i] = pack(distance(node.vector, nodes[current[i]].vector), current[i]);
+            }
+            candidates[current.length] = pack(distance(node.vector, nodes[newNeighbor].vector), newNeighbor);
+            Arrays.sort(candidates);
+            node.neighbors[level] = selectNeighbors(node.vector, candidates, limit, id);
+        }
+    }
+
+    private static int[] neighbors(Node node, int level)
+    {
+        synchronized (node)
+        {
+            return node.neighbors[level];
+        }
+    }
+
+    static float distance(float[] a, float[] b)
+    {
+        float dot = 0;
+        for (int i = 0; i < a.length; i++)
+        {
+            dot += a[i] * b[i];
+        }
+        // rounding can push the dot product of identical vectors just above 1
+        return Math.max(0, 1 - dot);
+    }
+
+    private static long pack(float distance, int id)
+    {
+        return ((long) Float.floatToIntBits(distance) << 32) | id;
+    }
+
+    private static int idOf(long pair)
+    {
+        return (int) pair;
+    }
+
+    private static float distanceOf(long pair)
+    {
+        return Float.intBitsToFloat((int) (pair >>> 32));
+    }
+
+    /**
+     * Binary min-heap of longs.
+     */
+    private static final class LongHeap
+    {
+        private long[] values;
+        private int size;
+
+        private LongHeap(int capacity)
+        {
+            values = new long[Math.max(4, capacity)];
+        }
+
+        private int size()
+        {
+            return size;
+        }
+
+        private long peek()
+        {
+            return values[0];
+        }
+
+        private void push(long value)
+        {
+            if (size == values.length)
+            {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0 && values[(i - 1) / 2] > value)
+            {
+                values[i] = values[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            values[i] = value;
+        }
+
+        private long pop()
+        {
+            long top = values[0];
+            long last = values[--size];
+            int i = 0;
+            while (true)
+            {
+                int child = 2 * i + 1;
+                if (child >= size)
+                {
+                    break;
+                }
+                if (child + 1 < size && values[child + 1] < values[child])
+                {
+                    child++;
+                }
+                if (values[child] >= last)
+                {
+                    break;
+                }
+                values[i] = values[child];
+                i = child;
+            }
+            values[i] = last;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.yearup.data.index;
+
+import java.util.Arrays;
+
+/**
+ * Counts per int key in open addressing arrays, without boxing keys or counts.
+ * Keys must be positive, which all MySQL auto increment IDs are; 0 marks a free slot.
+ * Not thread safe.
+ */
+public final class IntCounts
+{
+    private int[] keys;
+    private int[] counts;
+    private int size;
+
+    public IntCounts()
+    {
+        this(8);
+    }
+
+    public IntCounts(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * Adds to the count of a key, starting from 0 for a new key.
+     *
+     * @return the new count.
+     */
+    public int add(int key, int amount)
+    {
+        if (key <= 0)
+        {
+            throw new IllegalArgumentException("Keys must be positive: " + key);
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == 0)
+        {
+            keys[slot] = key;
+            if (++size * 2 > keys.length)
+            {
+                counts[slot] = amount;
+                grow();
+                return amount;
+            }
+        }
+        return counts[slot] += amount;
+    }
+
+    public void addAll(IntCounts other)
+    {
+        for (int i = 0; i < other.keys.length; i++)
+        {
+            if (other.keys[i] != 0)
+            {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the count of the key, 0 if it was never added.
+     */
+    public int get(int key)
+    {
+        return key <= 0 ? 0 : counts[slotOf(key)];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * The keys with the highest counts, highest first; equal counts are ordered by lower key.
+     * Selects with a heap of k entries, so a key with many counts costs O(size log k).
+     *
+     * @param k The maximum number of keys returned.
+     * @return at most k keys.
+     */
+    public int[] top(int k)
+    {
+        // count in the high half and the inverted key in the low half: one long orders both ways at once
+        long[] heap = new long[Math.min(k, size)];
+        int heapSize = 0;
+        for (int i = 0; i < keys.length && heap.length > 0; i++)
+        {
+            if (keys[i] == 0)
+            {
+                continue;
+            }
+            long entry = ((long) counts[i] << 32) | (Integer.MAX_VALUE - keys[i]);
+            if (heapSize < heap.length)
+            {
+                heap[heapSize] = entry;
+                siftUp(heap, heapSize++);
+            }
+            else if (entry > heap[0])
+            {
+                heap[0] = entry;
+                siftDown(heap, heapSize);
+            }
+        }
+        Arrays.sort(heap, 0, heapSize);
+        int[] top = new int[heapSize];
+        for (int i = 0; i < heapSize; i++)
+        {
+            top[i] = Integer.MAX_VALUE - (int) heap[heapSize - 1 - i];
+        }
+        return top;
+    }
+
+    // keys are looked up in place, so a slot either holds the key or is the free slot it would go to
+    private int slotOf(int key)
+    {
+        int mask = keys.length - 1;
+        // Fibonacci hashing: the top bits of the product spread consecutive IDs over the table
+        int slot = (key * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+        while (keys[slot] != 0 && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow()
+    {
+        int[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new int[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != 0)
+            {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static void siftUp(long[] heap, int i)
+    {
+        while (i > 0 && heap[(i - 1) / 2] > heap[i])
+        {
+            swap(heap, i, (i - 1) / 2);
+            i = (i - 1) / 2;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size)
+    {
+        int i = 0;
+        while (true)
+        {
+            int smallest = i;
+            int left = 2 * i + 1;
+            if (left < size && heap[left] < heap[smallest])
+            {
+                smallest = left;
+            }
+            if (left + 1 < size && heap[left + 1] < heap[smallest])
+            {
+                smallest = left + 1;
+            }
+            if (smallest == i)
+            {
+                return;
+            }
+            swap(heap, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(long[] heap, int a, int b)
+    {
+        long t = heap[a];
+        heap[a] = heap[b];
+        heap[b] = t;
+    }
+}
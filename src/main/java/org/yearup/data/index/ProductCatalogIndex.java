@@ -0,0 +1,56 @@
+package org.yearup.data.index;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.Collection;
+
+/**
+ * Holds the current {@link CatalogSnapshot} used by the product DAO to answer searches in memory.
+ * Writes build a new snapshot and swap it in atomically, so readers never see a half-applied change
+ * and never need to lock.
+ */
+@Component
+public class ProductCatalogIndex implements ProductIndex
+{
+    // null until the first rebuild, readers fall back to the database until then
+    private volatile CatalogSnapshot snapshot;
+
+    @Override
+    public synchronized void rebuild(Collection<Product> products)
+    {
+        snapshot = CatalogSnapshot.of(products);
+    }
+
+    @Override
+    public synchronized void productSaved(Product product)
+    {
+        if (snapshot != null)
+        {
+            snapshot = snapshot.with(product);
+        }
+    }
+
+    @Override
+    public synchronized void productRemoved(int productId)
+    {
+        if (snapshot != null)
+        {
+            snapshot = snapshot.without(productId);
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return snapshot != null;
+    }
+
+    /**
+     * @return the current snapshot, or null if the index has not been built yet.
+     */
+    public CatalogSnapshot snapshot()
+    {
+        return snapshot;
+    }
+}
@@ -0,0 +1,293 @@
+package org.yearup.data.index;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo tolerant lookup over the words of product names.
+ * Distinct name words are kept in a BK-tree keyed by Levenshtein distance, so the words within
+ * one or two edits of a query word are found without comparing against the whole dictionary.
+ * A product matches when every query word is close to one of its name words, and matches are
+ * ranked by the total number of edits.
+ * BK-trees can not delete, so words no product uses any more stay in the tree as dead entries
+ * until they outnumber the live ones and the tree is rebuilt.
+ */
+@Component
+public class ProductFuzzyIndex implements ProductIndex
+{
+    private BkNode root;
+    private int deadWords;
+
+    // name word -> products using it; a word without products is dead
+    private final Map<String, Set<Integer>> wordProducts = new HashMap<>();
+    private final Map<Integer, Product> products = new HashMap<>();
+    private final Map<Integer, Set<String>> productWords = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private static final class BkNode
+    {
+        private final String word;
+        // distance to this node -> child, there are only a few distinct distances
+        private final Map<Integer, BkNode> children = new HashMap<>(4);
+
+        private BkNode(String word)
+        {
+            this.word = word;
+        }
+    }
+
+    @Override
+    public void rebuild(Collection<Product> catalog)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            products.clear();
+            productWords.clear();
+            wordProducts.clear();
+            root = null;
+            deadWords = 0;
+            for (Product product : catalog)
+            {
+                add(product);
+            }
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(product.getProductId());
+            add(product);
+            compactIfNeeded();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productRemoved(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+            compactIfNeeded();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Finds products whose name words are within a small edit distance of every query word.
+     * Words of up to four letters allow one edit, longer words two.
+     *
+     * @param query The query text, e.g. "hedphones".
+     * @param limit The maximum number of products to return.
+     * @return matching products, fewest edits first, ties by name.
+     */
+    public List<Product> search(String query, int limit)
+    {
+        List<String> queryWords = TextTokenizer.tokenize(query);
+        if (queryWords.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            Map<Integer, Integer> distances = null;
+            for (String queryWord : queryWords)
+            {
+                // best distance of this query word per product
+                Map<Integer, Integer> wordDistances = new HashMap<>();
+                Map<String, Integer> similar = new HashMap<>();
+                collect(root, queryWord, maxEdits(queryWord), similar);
+                similar.forEach((word, distance) -> {
+                    for (Integer id : wordProducts.getOrDefault(word, Collections.emptySet()))
+                    {
+                        wordDistances.merge(id, distance, Math::min);
+                    }
+                });
+
+                if (distances == null)
+                {
+                    distances = wordDistances;
+                }
+                else
+                {
+                    Map<Integer, Integer> current = distances;
+                    current.keySet().retainAll(wordDistances.keySet());
+                    wordDistances.forEach((id, distance) -> current.computeIfPresent(id, (k, d) -> d + distance));
+                }
+                if (distances.isEmpty())
+                {
+                    return new ArrayList<>();
+                }
+            }
+
+            Map<Integer, Integer> total = distances;
+            List<Product> matches = new ArrayList<>();
+            total.keySet().stream()
+                 .sorted(Comparator.comparingInt((Integer id) -> total.get(id))
+                                   .thenComparing(id -> products.get(id).getName(), String.CASE_INSENSITIVE_ORDER)
+                                   .thenComparingInt(id -> id))
+                 .limit(limit)
+                 .forEach(id -> matches.add(products.get(id)));
+            return matches;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    static int maxEdits(String word)
+    {
+        return word.length() <= 4 ? 1 : 2;
+    }
+
+    // standard BK-tree search: only children whose edge distance is within d +/- maxEdits can hold matches
+    private void collect(BkNode node, String word, int maxEdits, Map<String, Integer> found)
+    {
+        if (node == null)
+        {
+            return;
+        }
+        int distance = levenshtein(node.word, word);
+        if (distance <= maxEdits && !wordProducts.getOrDefault(node.word, Collections.emptySet()).isEmpty())
+        {
+            found.put(node.word, distance);
+        }
+        for (Map.Entry<Integer, BkNode> child : node.children.entrySet())
+        {
+            if (Math.abs(child.getKey() - distance) <= maxEdits)
+            {
+                collect(child.getValue(), word, maxEdits, found);
+            }
+        }
+    }
+
+    /**
+     * Levenshtein distance computed with a single rolling row.
+     * The BK-tree prunes on the exact distance, so there is no early exit here.
+     */
+    static int levenshtein(String a, String b)
+    {
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+        {
+            row[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++)
+        {
+            int diagonal = row[0];
+            row[0] = i;
+            for (int j = 1; j <= b.length(); j++)
+            {
+                int above = row[j];
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, above + 1), diagonal + cost);
+                diagonal = above;
+            }
+        }
+        return row[b.length()];
+    }
+
+    // callers hold the write lock
+    private void add(Product product)
+    {
+        int id = product.getProductId();
+        Set<String> words = new HashSet<>(TextTokenizer.tokenize(product.getName()));
+        products.put(id, new Product(product));
+        productWords.put(id, words);
+        for (String word : words)
+        {
+            Set<Integer> ids = wordProducts.get(word);
+            if (ids == null)
+            {
+                wordProducts.put(word, ids = new HashSet<>());
+                insertWord(word);
+            }
+            else if (ids.isEmpty())
+            {
+                deadWords--;
+            }
+            ids.add(id);
+        }
+    }
+
+    // callers hold the write lock
+    private void remove(int productId)
+    {
+        products.remove(productId);
+        Set<String> words = productWords.remove(productId);
+        if (words == null)
+        {
+            return;
+        }
+        for (String word : words)
+        {
+            Set<Integer> ids = wordProducts.get(word);
+            ids.remove(productId);
+            if (ids.isEmpty())
+            {
+                deadWords++;
+            }
+        }
+    }
+
+    private void insertWord(String word)
+    {
+        if (root == null)
+        {
+            root = new BkNode(word);
+            return;
+        }
+        BkNode node = root;
+        while (true)
+        {
+            int distance = levenshtein(node.word, word);
+            BkNode child = node.children.get(distance);
+            if (child == null)
+            {
+                node.children.put(distance, new BkNode(word));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private void compactIfNeeded()
+    {
+        if (deadWords > wordProducts.size() / 2)
+        {
+            rebuild(new ArrayList<>(products.values()));
+        }
+    }
+}
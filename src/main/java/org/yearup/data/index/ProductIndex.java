@@ -0,0 +1,39 @@
+/**
+ * This interface defines the contract for in-memory structures built over the product catalog.
+ * Implementations are loaded once from the database and then kept current from product writes,
+ * so that read paths can be answered without a database round trip.
+ */
+package org.yearup.data.index;
+
+import org.yearup.models.Product;
+
+import java.util.Collection;
+
+public interface ProductIndex {
+
+    /**
+     * Replace the whole index with one built from the given products.
+     *
+     * @param products Every product currently in the catalog.
+     */
+    void rebuild(Collection<Product> products);
+
+    /**
+     * Apply an inserted or updated product to the index.
+     *
+     * @param product The product as it is now stored.
+     */
+    void productSaved(Product product);
+
+    /**
+     * Remove a deleted product from the index.
+     *
+     * @param productId The ID of the deleted product.
+     */
+    void productRemoved(int productId);
+
+    /**
+     * @return true once the index has been built and can serve reads.
+     */
+    boolean isReady();
+}
@@ -0,0 +1,570 @@
+package org.yearup.data.index;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.views.ProductViewCounter;
+import org.yearup.models.Category;
+import org.yearup.models.Product;
+import org.yearup.models.Suggestion;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Typeahead index over product and category names.
+ * Every word start of a name is a key in a radix trie, so "shi" completes "Men's Dress Shirt".
+ * Chains of single-child nodes are collapsed into one edge label, so a node exists only where keys
+ * branch or end. Each node caches the best {@value #TOP_K} entries below it, best first, which makes
+ * a lookup a walk down the prefix with no scan of the subtree. Children are kept in parallel sorted
+ * arrays instead of maps to keep the trie small in heap.
+ * Inserts and removals only recompute the cached lists along the affected path, each by merging the
+ * node's own entries with its children's cached lists.
+ * <p>
+ * Categories complete first; products rank by page views, then featured before the rest.
+ * The views are read when a product is indexed and again every catalog.suggest.reweigh-ms,
+ * when only products whose count changed are reinserted.
+ */
+@Component
+public class ProductSuggestIndex implements ProductIndex, CategoryIndex
+{
+    public static final int TOP_K = 10;
+
+    // a category completion narrows the catalog more than any single product does
+    private static final long CATEGORY_WEIGHT = Long.MAX_VALUE;
+
+    private static final char[] NO_FIRSTS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    // product_id -> page views
+    private final IntToLongFunction popularity;
+
+    private final Node root = new Node("");
+
+    // entry key -> entry; products use their product ID, categories their negated category ID
+    private final Map<Integer, Entry> entries = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private static final class Entry
+    {
+        private final int key;
+        private final String text;
+        private final long weight;
+        private final boolean featured;
+        private final List<String> keys;
+
+        private Entry(int key, String text, long weight, boolean featured, List<String> keys)
+        {
+            this.key = key;
+            this.text = text;
+            this.weight = weight;
+            this.featured = featured;
+            this.keys = keys;
+        }
+
+        // most weight first, then featured, then by name; the key makes the order total
+        private boolean ranksBefore(Entry other)
+        {
+            if (weight != other.weight)
+            {
+                return weight > other.weight;
+            }
+            if (featured != other.featured)
+            {
+                return featured;
+            }
+            int byText = String.CASE_INSENSITIVE_ORDER.compare(text, other.text);
+            return byText != 0 ? byText < 0 : key < other.key;
+        }
+    }
+
+    private static final class Node
+    {
+        // the characters on the edge from the parent; empty only for the root
+        private String label;
+        // first character of each child's label, sorted, parallel to children
+        private char[] firsts = NO_FIRSTS;
+        private Node[] children = NO_CHILDREN;
+        // entries with a key ending here, best first
+        private Entry[] terminals = NO_ENTRIES;
+        private Entry[] top = NO_ENTRIES;
+
+        private Node(String label)
+        {
+            this.label = label;
+        }
+
+        private Node child(char first)
+        {
+            int i = Arrays.binarySearch(firsts, first);
+            return i >= 0 ? children[i] : null;
+        }
+
+        private void addChild(Node child)
+        {
+            int insertAt = -Arrays.binarySearch(firsts, child.label.charAt(0)) - 1;
+            char[] nextFirsts = new char[firsts.length + 1];
+            Node[] nextChildren = new Node[children.length + 1];
+            System.arraycopy(firsts, 0, nextFirsts, 0, insertAt);
+            System.arraycopy(children, 0, nextChildren, 0, insertAt);
+            nextFirsts[insertAt] = child.label.charAt(0);
+            nextChildren[insertAt] = child;
+            System.arraycopy(firsts, insertAt, nextFirsts, insertAt + 1, firsts.length - insertAt);
+            System.arraycopy(children, insertAt, nextChildren, insertAt + 1, children.length - insertAt);
+            firsts = nextFirsts;
+            children = nextChildren;
+        }
+
+        // the replacement's label starts with the same character as the child it replaces
+        private void replaceChild(Node child)
+        {
+            children[Arrays.binarySearch(firsts, child.label.charAt(0))] = child;
+        }
+
+        private void removeChild(char first)
+        {
+            int i = Arrays.binarySearch(firsts, first);
+            if (i < 0)
+            {
+                return;
+            }
+            char[] nextFirsts = new char[firsts.length - 1];
+            Node[] nextChildren = new Node[children.length - 1];
+            System.arraycopy(firsts, 0, nextFirsts, 0, i);
+            System.arraycopy(children, 0, nextChildren, 0, i);
+            System.arraycopy(firsts, i + 1, nextFirsts, i, firsts.length - i - 1);
+            System.arraycopy(children, i + 1, nextChildren, i, children.length - i - 1);
+            firsts = nextFirsts;
+            children = nextChildren;
+        }
+
+        private void addTerminal(Entry entry)
+        {
+            int insertAt = 0;
+            while (insertAt < terminals.length && terminals[insertAt].ranksBefore(entry))
+            {
+                insertAt++;
+            }
+            Entry[] next = new Entry[terminals.length + 1];
+            System.arraycopy(terminals, 0, next, 0, insertAt);
+            next[insertAt] = entry;
+            System.arraycopy(terminals, insertAt, next, insertAt + 1, terminals.length - insertAt);
+            terminals = next;
+        }
+
+        private void removeTerminal(Entry entry)
+        {
+            for (int i = 0; i < terminals.length; i++)
+            {
+                if (terminals[i] == entry)
+                {
+                    Entry[] next = new Entry[terminals.length - 1];
+                    System.arraycopy(terminals, 0, next, 0, i);
+                    System.arraycopy(terminals, i + 1, next, i, terminals.length - i - 1);
+                    terminals = next;
+                    return;
+                }
+            }
+        }
+    }
+
+    @Autowired
+    public ProductSuggestIndex(ProductViewCounter viewCounter)
+    {
+        this(viewCounter::views);
+    }
+
+    ProductSuggestIndex(IntToLongFunction popularity)
+    {
+        this.popularity = popularity;
+    }
+
+    @Override
+    public void rebuild(Collection<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            new ArrayList<>(entries.keySet()).stream().filter(key -> key > 0).forEach(this::remove);
+            for (Product product : products)
+            {
+                putProduct(product.getProductId(), product.getName(), product.isFeatured());
+            }
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            putProduct(product.getProductId(), product.getName(), product.isFeatured());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productRemoved(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rebuildCategories(Collection<Category> categories)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            new ArrayList<>(entries.keySet()).stream().filter(key -> key < 0).forEach(this::remove);
+            for (Category category : categories)
+            {
+                put(-category.getCategoryId(), category.getName(), CATEGORY_WEIGHT, false);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void categorySaved(Category category)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            put(-category.getCategoryId(), category.getName(), CATEGORY_WEIGHT, false);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void categoryRemoved(int categoryId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(-categoryId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reinserts the products whose views changed since they were indexed, so rankings follow popularity.
+     */
+    @Scheduled(fixedDelayString = "${catalog.suggest.reweigh-ms:600000}", initialDelayString = "${catalog.suggest.reweigh-ms:600000}")
+    public void reweigh()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            List<Integer> productIds = new ArrayList<>();
+            entries.forEach((key, entry) -> {
+                if (key > 0 && popularity.applyAsLong(key) != entry.weight)
+                {
+                    productIds.add(key);
+                }
+            });
+            for (int productId : productIds)
+            {
+                Entry entry = entries.get(productId);
+                putProduct(productId, entry.text, entry.featured);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * @param prefix The text typed so far.
+     * @param limit  The maximum number of completions, at most {@value #TOP_K}.
+     * @return the best completions whose name has a word starting with the prefix.
+     */
+    public List<Suggestion> suggest(String prefix, int limit)
+    {
+        String key = normalizePrefix(prefix);
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (key.isEmpty())
+        {
+            return suggestions;
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            Node node = find(key);
+            if (node == null)
+            {
+                return suggestions;
+            }
+            for (int i = 0; i < node.top.length && i < limit; i++)
+            {
+                Entry entry = node.top[i];
+                suggestions.add(entry.key > 0
+                        ? new Suggestion(entry.text, Suggestion.PRODUCT, entry.key)
+                        : new Suggestion(entry.text, Suggestion.CATEGORY, -entry.key));
+            }
+            return suggestions;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // callers hold the write lock
+    private void putProduct(int productId, String name, boolean featured)
+    {
+        put(productId, name, popularity.applyAsLong(productId), featured);
+    }
+
+    // callers hold the write lock
+    private void put(int entryKey, String text, long weight, boolean featured)
+    {
+        remove(entryKey);
+        if (text == null)
+        {
+            return;
+        }
+        Entry entry = new Entry(entryKey, text, weight, featured, keysOf(text));
+        entries.put(entryKey, entry);
+        for (String key : entry.keys)
+        {
+            insert(key, entry);
+        }
+    }
+
+    // callers hold the write lock
+    private void remove(int entryKey)
+    {
+        Entry entry = entries.get(entryKey);
+        if (entry == null)
+        {
+            return;
+        }
+        for (String key : entry.keys)
+        {
+            delete(key, entry);
+        }
+        entries.remove(entryKey);
+    }
+
+    // the node whose subtree holds every key starting with the prefix, or null when none does
+    private Node find(String prefix)
+    {
+        Node node = root;
+        int depth = 0;
+        while (depth < prefix.length())
+        {
+            node = node.child(prefix.charAt(depth));
+            if (node == null)
+            {
+                return null;
+            }
+            int matched = Math.min(node.label.length(), prefix.length() - depth);
+            if (!node.label.regionMatches(0, prefix, depth, matched))
+            {
+                return null;
+            }
+            depth += node.label.length();
+        }
+        return node;
+    }
+
+    private void insert(String key, Entry entry)
+    {
+        // every node on the path consumes at least one character of the key
+        Node[] path = new Node[key.length() + 1];
+        int length = 0;
+        path[length++] = root;
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length())
+        {
+            Node child = node.child(key.charAt(depth));
+            if (child == null)
+            {
+                child = new Node(key.substring(depth));
+                node.addChild(child);
+                depth = key.length();
+            }
+            else
+            {
+                int common = commonPrefix(child.label, key, depth);
+                if (common < child.label.length())
+                {
+                    // the key leaves the edge part way along: split it where they part
+                    Node split = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    split.addChild(child);
+                    node.replaceChild(split);
+                    child = split;
+                }
+                depth += common;
+            }
+            path[length++] = child;
+            node = child;
+        }
+        node.addTerminal(entry);
+        for (int i = length - 1; i >= 0; i--)
+        {
+            recomputeTop(path[i]);
+        }
+    }
+
+    private void delete(String key, Entry entry)
+    {
+        Node[] path = new Node[key.length() + 1];
+        int length = 0;
+        path[length++] = root;
+        Node node = root;
+        int depth = 0;
+        while (depth < key.length())
+        {
+            node = node.child(key.charAt(depth));
+            if (node == null || !key.startsWith(node.label, depth))
+            {
+                return;
+            }
+            path[length++] = node;
+            depth += node.label.length();
+        }
+        node.removeTerminal(entry);
+        for (int i = length - 1; i >= 0; i--)
+        {
+            node = path[i];
+            if (i > 0 && node.terminals.length == 0 && node.children.length <= 1)
+            {
+                Node parent = path[i - 1];
+                if (node.children.length == 0)
+                {
+                    parent.removeChild(node.label.charAt(0));
+                }
+                else
+                {
+                    // nothing ends here any more: fold the node into its only child's edge
+                    Node only = node.children[0];
+                    only.label = node.label + only.label;
+                    parent.replaceChild(only);
+                }
+            }
+            else
+            {
+                recomputeTop(node);
+            }
+        }
+    }
+
+    // the best entries of a node: a k-way merge of its terminals and its children's lists, all best first
+    private static void recomputeTop(Node node)
+    {
+        int sources = node.children.length + 1;
+        int[] next = new int[sources];
+        Entry[] top = new Entry[TOP_K];
+        int size = 0;
+        while (size < TOP_K)
+        {
+            Entry best = null;
+            for (int source = 0; source < sources; source++)
+            {
+                Entry[] list = source == 0 ? node.terminals : node.children[source - 1].top;
+                if (next[source] < list.length && (best == null || list[next[source]].ranksBefore(best)))
+                {
+                    best = list[next[source]];
+                }
+            }
+            if (best == null)
+            {
+                break;
+            }
+            top[size++] = best;
+            // an entry under several keys heads every list it is in once it is the best left
+            for (int source = 0; source < sources; source++)
+            {
+                Entry[] list = source == 0 ? node.terminals : node.children[source - 1].top;
+                if (next[source] < list.length && list[next[source]] == best)
+                {
+                    next[source]++;
+                }
+            }
+        }
+        node.top = size == TOP_K ? top : Arrays.copyOf(top, size);
+    }
+
+    private static int commonPrefix(String label, String key, int from)
+    {
+        int max = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(from + i))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    // "Men's Dress Shirt" -> "mens dress shirt", "dress shirt", "shirt"
+    private static List<String> keysOf(String text)
+    {
+        List<String> tokens = TextTokenizer.tokenize(text);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++)
+        {
+            String key = String.join(" ", tokens.subList(i, tokens.size()));
+            if (!keys.contains(key))
+            {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static String normalizePrefix(String prefix)
+    {
+        List<String> tokens = TextTokenizer.tokenize(prefix);
+        if (tokens.isEmpty())
+        {
+            return "";
+        }
+        String key = String.join(" ", tokens);
+        // "mens " should only complete names with another word after "mens"
+        boolean trailingSeparator = !Character.isLetterOrDigit(prefix.charAt(prefix.length() - 1))
+                && prefix.charAt(prefix.length() - 1) != '\'';
+        return trailingSeparator ? key + " " : key;
+    }
+}
@@ -0,0 +1,350 @@
+package org.yearup.data.index;
+
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Positional inverted index over product names and descriptions, ranked with BM25.
+ * Queries are a list of clauses that must all match:
+ * plain terms (headphones), prefixes (head*) and quoted phrases ("dress shirt").
+ * Name terms count {@value #NAME_BOOST} times, so a hit in the name outranks one in the description.
+ * The index is updated in place on every product write; reads share a read lock.
+ */
+@Component
+public class ProductTextIndex implements ProductIndex
+{
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_BOOST = 2;
+
+    // a prefix like "s*" would otherwise score most of the dictionary; the most common terms are kept
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final Pattern CLAUSES = Pattern.compile("\"([^\"]*)\"|(\\S+)");
+
+    // term -> (product_id -> ascending positions); sorted so prefixes are a range scan
+    private final TreeMap<String, Map<Integer, int[]>> postings = new TreeMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private long totalLength;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private static final class Document
+    {
+        private final Product product;
+        private final int nameLength;
+        private final int length;
+        // distinct terms, only read to remove the document; an array rather than the position map's key set
+        private final String[] terms;
+
+        private Document(Product product, int nameLength, int length, String[] terms)
+        {
+            this.product = product;
+            this.nameLength = nameLength;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    @Override
+    public void rebuild(Collection<Product> products)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+            for (Product product : products)
+            {
+                add(product);
+            }
+            ready = true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productSaved(Product product)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(product.getProductId());
+            add(product);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void productRemoved(int productId)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            remove(productId);
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return ready;
+    }
+
+    /**
+     * Runs a query and returns the best matches.
+     *
+     * @param query The query text, e.g. {@code "dress shirt" white} or {@code head*}.
+     * @param limit The maximum number of products to return.
+     * @return matching products, best BM25 score first, ties by product ID.
+     */
+    public List<Product> search(String query, int limit)
+    {
+        List<List<String>> clauses = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        parse(query, clauses, prefixes);
+        if (clauses.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try
+        {
+            Map<Integer, Double> scores = null;
+            for (int i = 0; i < clauses.size(); i++)
+            {
+                Map<Integer, Double> clauseScores = prefixes.get(i)
+                        ? scorePrefix(clauses.get(i).get(0))
+                        : scorePhrase(clauses.get(i));
+                if (scores == null)
+                {
+                    scores = clauseScores;
+                }
+                else
+                {
+                    // every clause must match
+                    Map<Integer, Double> current = scores;
+                    current.keySet().retainAll(clauseScores.keySet());
+                    clauseScores.forEach((id, score) -> current.computeIfPresent(id, (k, s) -> s + score));
+                }
+                if (scores.isEmpty())
+                {
+                    return new ArrayList<>();
+                }
+            }
+            return topProducts(scores, limit);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    // splits the query into phrases and single terms; a trailing * makes a term a prefix
+    private static void parse(String query, List<List<String>> clauses, List<Boolean> prefixes)
+    {
+        if (query == null)
+        {
+            return;
+        }
+        Matcher matcher = CLAUSES.matcher(query);
+        while (matcher.find())
+        {
+            boolean quoted = matcher.group(1) != null;
+            String text = quoted ? matcher.group(1) : matcher.group(2);
+            List<String> tokens = TextTokenizer.tokenize(text);
+            if (tokens.isEmpty())
+            {
+                continue;
+            }
+            boolean prefix = !quoted && tokens.size() == 1 && text.endsWith("*");
+            // an unquoted "t-shirt" tokenizes to two adjacent terms and is treated as a phrase
+            clauses.add(tokens);
+            prefixes.add(prefix);
+        }
+    }
+
+    // scores the MAX_PREFIX_EXPANSIONS expansions found in the most documents, not the first ones alphabetically
+    private Map<Integer, Double> scorePrefix(String prefix)
+    {
+        PriorityQueue<Map<Integer, int[]>> expansions = new PriorityQueue<>(Comparator.comparingInt(Map::size));
+        for (Map<Integer, int[]> docs : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values())
+        {
+            expansions.add(docs);
+            if (expansions.size() > MAX_PREFIX_EXPANSIONS)
+            {
+                expansions.poll();
+            }
+        }
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Map<Integer, int[]> docs : expansions)
+        {
+            docs.forEach((id, positions) -> scores.merge(id, bm25(documents.get(id), positions, docs.size()), Double::sum));
+        }
+        return scores;
+    }
+
+    private Map<Integer, Double> scorePhrase(List<String> terms)
+    {
+        List<Map<Integer, int[]>> termPostings = new ArrayList<>(terms.size());
+        for (String term : terms)
+        {
+            Map<Integer, int[]> docs = postings.get(term);
+            if (docs == null)
+            {
+                return new HashMap<>();
+            }
+            termPostings.add(docs);
+        }
+
+        // drive the intersection from the rarest term
+        Map<Integer, int[]> rarest = termPostings.stream().min(Comparator.comparingInt(Map::size)).get();
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Integer id : rarest.keySet())
+        {
+            if (!containsPhrase(id, termPostings))
+            {
+                continue;
+            }
+            Document document = documents.get(id);
+            double score = 0;
+            for (Map<Integer, int[]> docs : termPostings)
+            {
+                score += bm25(document, docs.get(id), docs.size());
+            }
+            scores.put(id, score);
+        }
+        return scores;
+    }
+
+    private static boolean containsPhrase(int id, List<Map<Integer, int[]>> termPostings)
+    {
+        int[][] positions = new int[termPostings.size()][];
+        for (int i = 0; i < positions.length; i++)
+        {
+            positions[i] = termPostings.get(i).get(id);
+            if (positions[i] == null)
+            {
+                return false;
+            }
+        }
+        for (int start : positions[0])
+        {
+            boolean match = true;
+            for (int i = 1; i < positions.length && match; i++)
+            {
+                match = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (match)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double bm25(Document document, int[] positions, int documentFrequency)
+    {
+        int nameHits = 0;
+        while (nameHits < positions.length && positions[nameHits] < document.nameLength)
+        {
+            nameHits++;
+        }
+        double tf = nameHits * NAME_BOOST + (positions.length - nameHits);
+        double n = documents.size();
+        double idf = Math.log(1 + (n - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        double averageLength = totalLength / n;
+        return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * document.length / averageLength));
+    }
+
+    private List<Product> topProducts(Map<Integer, Double> scores, int limit)
+    {
+        Comparator<Map.Entry<Integer, Double>> better = Map.Entry.<Integer, Double>comparingByValue().reversed()
+                                                                 .thenComparing(Map.Entry.comparingByKey());
+        // bounded heap whose head is the worst entry kept so far
+        PriorityQueue<Map.Entry<Integer, Double>> top = new PriorityQueue<>(better.reversed());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet())
+        {
+            top.offer(entry);
+            if (top.size() > limit)
+            {
+                top.poll();
+            }
+        }
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(top);
+        ranked.sort(better);
+        List<Product> products = new ArrayList<>(ranked.size());
+        for (Map.Entry<Integer, Double> entry : ranked)
+        {
+            products.add(documents.get(entry.getKey()).product);
+        }
+        return products;
+    }
+
+    // callers hold the write lock
+    private void add(Product product)
+    {
+        List<String> nameTokens = TextTokenizer.tokenize(product.getName());
+        List<String> descriptionTokens = TextTokenizer.tokenize(product.getDescription());
+
+        // description positions start one past the name, so a phrase never spans the two fields
+        Map<String, List<Integer>> termPositions = new HashMap<>();
+        for (int i = 0; i < nameTokens.size(); i++)
+        {
+            termPositions.computeIfAbsent(nameTokens.get(i), k -> new ArrayList<>()).add(i);
+        }
+        int offset = nameTokens.size() + 1;
+        for (int i = 0; i < descriptionTokens.size(); i++)
+        {
+            termPositions.computeIfAbsent(descriptionTokens.get(i), k -> new ArrayList<>()).add(offset + i);
+        }
+
+        int id = product.getProductId();
+        termPositions.forEach((term, positions) -> postings
+                .computeIfAbsent(term, k -> new HashMap<>())
+                .put(id, positions.stream().mapToInt(Integer::intValue).toArray()));
+
+        int length = nameTokens.size() * NAME_BOOST + descriptionTokens.size();
+        documents.put(id, new Document(new Product(product), nameTokens.size(), length, termPositions.keySet().toArray(new String[0])));
+        totalLength += length;
+    }
+
+    // callers hold the write lock
+    private void remove(int productId)
+    {
+        Document document = documents.remove(productId);
+        if (document == null)
+        {
+            return;
+        }
+        for (String term : document.terms)
+        {
+            Map<Integer, int[]> docs = postings.get(term);
+            docs.remove(productId);
+            if (docs.isEmpty())
+            {
+                postings.remove(term);
+            }
+        }
+        totalLength -= document.length;
+    }
+}
@@ -0,0 +1,420 @@
+package org.yearup.data.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yearup.models.Product;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * "Similar items" from product text, for products that have no purchase history to recommend from.
+ * Every product becomes a {@value #DIMENSIONS} dimension TF-IDF vector of its name, description,
+ * color and category, with the features hashed into the dimensions instead of kept in a vocabulary,
+ * and the vectors are indexed in an {@link HnswGraph} for approximate cosine nearest neighbours.
+ * <p>
+ * The vectors are computed and inserted in parallel. The built index is written to
+ * catalog.similar.file together with a fingerprint of the indexed product text; when the index
+ * is rebuilt from the same catalog, for example after a restart, the file is loaded instead.
+ * Single product writes are applied to the loaded graph and saved on shutdown. Each write leaves the
+ * product's old node behind as a tombstone; once more than {@value #MAX_REMOVED_PERCENT}% of the nodes
+ * are tombstones, and before saving, the graph is rebuilt from the live vectors without them.
+ */
+@Component
+public class SimilarProductsIndex implements ProductIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger(SimilarProductsIndex.class);
+
+    static final int DIMENSIONS = 256;
+    public static final int MAX_K = 50;
+
+    private static final int FILE_MAGIC = 0x53494d31; // "SIM1"
+    private static final int MAX_NEIGHBORS = 12;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final int EF_SEARCH = 64;
+    private static final int MAX_REMOVED_PERCENT = 20;
+
+    // name words say more about a product than description words
+    private static final float NAME_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float COLOR_WEIGHT = 1.5f;
+    private static final float CATEGORY_WEIGHT = 2f;
+
+    private final Path file;
+
+    // null until the first rebuild; replaced whole by a rebuild, changed in place by single writes under this
+    private volatile State state;
+    private boolean dirty;
+
+    private static final class State
+    {
+        private final HnswGraph graph;
+        private final float[] idf;
+        // product_id -> node of its current vector
+        private final Map<Integer, Integer> nodes;
+        // product_id -> hash of the text it was indexed with
+        private final Map<Integer, Long> hashes;
+        // XOR of the hashes, so it follows single writes without rehashing the catalog
+        private long fingerprint;
+
+        private State(HnswGraph graph, float[] idf, Map<Integer, Integer> nodes, Map<Integer, Long> hashes, long fingerprint)
+        {
+            this.graph = graph;
+            this.idf = idf;
+            this.nodes = nodes;
+            this.hashes = hashes;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    @Autowired
+    public SimilarProductsIndex(@Value("${catalog.similar.file:}") String file)
+    {
+        this.file = file.isBlank() ? null : Path.of(file);
+    }
+
+    @Override
+    public synchronized void rebuild(Collection<Product> products)
+    {
+        Map<Integer, Long> hashes = new ConcurrentHashMap<>();
+        long fingerprint = 0;
+        for (Product product : products)
+        {
+            long hash = hash(product);
+            hashes.put(product.getProductId(), hash);
+            fingerprint ^= hash;
+        }
+
+        State loaded = load(fingerprint);
+        if (loaded != null)
+        {
+            state = loaded;
+            dirty = false;
+            logger.info("Loaded similar products index of {} products from {}.", loaded.nodes.size(), file);
+            return;
+        }
+
+        List<Product> list = new ArrayList<>(products);
+        float[] idf = idf(list);
+        float[][] vectors = new float[list.size()][];
+        IntStream.range(0, list.size()).parallel().forEach(i -> vectors[i] = vectorize(list.get(i), idf));
+
+        HnswGraph graph = new HnswGraph(DIMENSIONS, MAX_NEIGHBORS, EF_CONSTRUCTION);
+        Map<Integer, Integer> nodes = new ConcurrentHashMap<>();
+        for (int i = 0; i < list.size(); i++)
+        {
+            nodes.put(list.get(i).getProductId(), graph.add(list.get(i).getProductId(), vectors[i]));
+        }
+        nodes.values().parallelStream().forEach(graph::insert);
+
+        state = new State(graph, idf, nodes, hashes, fingerprint);
+        dirty = true;
+        save();
+    }
+
+    @Override
+    public synchronized void productSaved(Product product)
+    {
+        State current = state;
+        if (current == null)
+        {
+            return;
+        }
+        long hash = hash(product);
+        Long previous = current.hashes.put(product.getProductId(), hash);
+        if (previous != null && previous == hash)
+        {
+            // price or stock changes do not move the product
+            return;
+        }
+        // the IDF weights stay those of the last rebuild, one product barely changes them
+        int node = current.graph.add(product.getProductId(), vectorize(product, current.idf));
+        current.graph.insert(node);
+        Integer old = current.nodes.put(product.getProductId(), node);
+        if (old != null)
+        {
+            current.graph.remove(old);
+        }
+        current.fingerprint ^= (previous == null ? 0 : previous) ^ hash;
+        dirty = true;
+        compactIfNeeded();
+    }
+
+    @Override
+    public synchronized void productRemoved(int productId)
+    {
+        State current = state;
+        if (current == null)
+        {
+            return;
+        }
+        Integer node = current.nodes.remove(productId);
+        Long hash = current.hashes.remove(productId);
+        if (node != null)
+        {
+            current.graph.remove(node);
+            current.fingerprint ^= hash;
+            dirty = true;
+            compactIfNeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady()
+    {
+        return state != null;
+    }
+
+    /**
+     * @param productId A product ID.
+     * @param k         The maximum number of similar products.
+     * @return the IDs of the products with the most similar text, most similar first;
+     *         null if the product is not in the index.
+     */
+    public int[] similar(int productId, int k)
+    {
+        State current = state;
+        if (current == null)
+        {
+            return null;
+        }
+        Integer node = current.nodes.get(productId);
+        if (node == null)
+        {
+            return null;
+        }
+        int[] nodes = current.graph.search(current.graph.vector(node), k, Math.max(EF_SEARCH, k * 2),
+                                           candidate -> candidate != node);
+        int[] productIds = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            productIds[i] = current.graph.label(nodes[i]);
+        }
+        return productIds;
+    }
+
+    /**
+     * Writes the index to catalog.similar.file if it changed since it was last written or loaded.
+     */
+    @PreDestroy
+    public synchronized void save()
+    {
+        if (file == null || state == null || !dirty)
+        {
+            return;
+        }
+        // a saved graph is reused as is, so it must not carry tombstones into the next start
+        if (state.graph.removed() > 0)
+        {
+            state = compact(state);
+        }
+        State current = state;
+        try
+        {
+            Path directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "similar", ".tmp");
+            try
+            {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp))))
+                {
+                    out.writeInt(FILE_MAGIC);
+                    out.writeLong(current.fingerprint);
+                    out.writeInt(current.idf.length);
+                    for (float weight : current.idf)
+                    {
+                        out.writeFloat(weight);
+                    }
+                    out.writeInt(current.nodes.size());
+                    for (Map.Entry<Integer, Integer> entry : current.nodes.entrySet())
+                    {
+                        out.writeInt(entry.getKey());
+                        out.writeInt(entry.getValue());
+                        out.writeLong(current.hashes.get(entry.getKey()));
+                    }
+                    current.graph.write(out);
+                }
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            finally
+            {
+                Files.deleteIfExists(temp);
+            }
+            dirty = false;
+        }
+        catch (IOException e)
+        {
+            // the index still works, the next start just builds it again
+            logger.error("Error saving similar products index to {}", file, e);
+        }
+    }
+
+    private void compactIfNeeded()
+    {
+        HnswGraph graph = state.graph;
+        if (graph.removed() * 100L > (long) graph.size() * MAX_REMOVED_PERCENT)
+        {
+            state = compact(state);
+        }
+    }
+
+    // a new graph of the live nodes only; searches still running on the old state finish there
+    private static State compact(State current)
+    {
+        HnswGraph graph = new HnswGraph(DIMENSIONS, MAX_NEIGHBORS, EF_CONSTRUCTION);
+        Map<Integer, Integer> nodes = new ConcurrentHashMap<>();
+        current.nodes.forEach((productId, node) -> nodes.put(productId, graph.add(productId, current.graph.vector(node))));
+        nodes.values().parallelStream().forEach(graph::insert);
+        logger.info("Compacted similar products index to {} products, dropped {} removed nodes.",
+                    nodes.size(), current.graph.removed());
+        return new State(graph, current.idf, nodes, new ConcurrentHashMap<>(current.hashes), current.fingerprint);
+    }
+
+    // the saved index, if there is one and it was built from exactly these products
+    private State load(long fingerprint)
+    {
+        if (file == null)
+        {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            if (in.readInt() != FILE_MAGIC || in.readLong() != fingerprint)
+            {
+                return null;
+            }
+            float[] idf = new float[in.readInt()];
+            for (int i = 0; i < idf.length; i++)
+            {
+                idf[i] = in.readFloat();
+            }
+            int count = in.readInt();
+            Map<Integer, Integer> nodes = new ConcurrentHashMap<>();
+            Map<Integer, Long> hashes = new ConcurrentHashMap<>();
+            for (int i = 0; i < count; i++)
+            {
+                int productId = in.readInt();
+                nodes.put(productId, in.readInt());
+                hashes.put(productId, in.readLong());
+            }
+            HnswGraph graph = HnswGraph.read(in);
+            if (graph.removed() > 0)
+            {
+                // written before tombstones were compacted away on save
+                return null;
+            }
+            return new State(graph, idf, nodes, hashes, fingerprint);
+        }
+        catch (NoSuchFileException e)
+        {
+            return null;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            logger.warn("Ignoring unreadable similar products index {}", file, e);
+            return null;
+        }
+    }
+
+    // inverse document frequency per dimension: features in few products weigh more than common ones
+    private static float[] idf(List<Product> products)
+    {
+        int[] documentFrequency = new int[DIMENSIONS];
+        for (Product product : products)
+        {
+            BitSet present = new BitSet(DIMENSIONS);
+            forEachFeature(product, (feature, weight) -> present.set(bucket(feature)));
+            present.stream().forEach(bucket -> documentFrequency[bucket]++);
+        }
+        float[] idf = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++)
+        {
+            idf[i] = (float) (Math.log((products.size() + 1.0) / (documentFrequency[i] + 1.0)) + 1);
+        }
+        return idf;
+    }
+
+    static float[] vectorize(Product product, float[] idf)
+    {
+        float[] vector = new float[DIMENSIONS];
+        forEachFeature(product, (feature, weight) -> {
+            int hash = mix(feature.hashCode());
+            // a hash bit picks the sign, so colliding features tend to cancel instead of adding up
+            vector[hash & (DIMENSIONS - 1)] += (hash < 0 ? -weight : weight);
+        });
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++)
+        {
+            vector[i] *= idf[i];
+            norm += vector[i] * vector[i];
+        }
+        if (norm > 0)
+        {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < DIMENSIONS; i++)
+            {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private interface FeatureConsumer
+    {
+        void accept(String feature, float weight);
+    }
+
+    // prefixes keep e.g. the color "black" and the word "black" in a name apart
+    private static void forEachFeature(Product product, FeatureConsumer consumer)
+    {
+        for (String term : TextTokenizer.tokenize(product.getName()))
+        {
+            consumer.accept("t:" + term, NAME_WEIGHT);
+        }
+        for (String term : TextTokenizer.tokenize(product.getDescription()))
+        {
+            consumer.accept("t:" + term, DESCRIPTION_WEIGHT);
+        }
+        if (product.getColor() != null && !product.getColor().isBlank())
+        {
+            consumer.accept("color:" + product.getColor().trim().toLowerCase(Locale.ROOT), COLOR_WEIGHT);
+        }
+        consumer.accept("category:" + product.getCategoryId(), CATEGORY_WEIGHT);
+    }
+
+    private static int bucket(String feature)
+    {
+        return mix(feature.hashCode()) & (DIMENSIONS - 1);
+    }
+
+    private static int mix(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    // 64-bit FNV-1a over the indexed fields
+    private static long hash(Product product)
+    {
+        String text = product.getProductId() + "\u0000" + product.getName() + "\u0000" + product.getDescription()
+                      + "\u0000" + product.getColor() + "\u0000" + product.getCategoryId();
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8))
+        {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
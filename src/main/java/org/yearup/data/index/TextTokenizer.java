@@ -0,0 +1,41 @@
+package org.yearup.data.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Splits product text into lower case search terms.
+ * Apostrophes are dropped rather than split on, so "Men's" becomes "mens".
+ */
+public final class TextTokenizer
+{
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextTokenizer()
+    {
+    }
+
+    /**
+     * @param text The text to split, may be null.
+     * @return the terms of the text in order, without empty terms.
+     */
+    public static List<String> tokenize(String text)
+    {
+        List<String> tokens = new ArrayList<>();
+        if (text == null)
+        {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace("'", "").replace("’", "");
+        for (String token : SEPARATORS.split(normalized))
+        {
+            if (!token.isEmpty())
+            {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
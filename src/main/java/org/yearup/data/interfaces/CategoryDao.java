@@ -8,6 +8,7 @@
 package org.yearup.data.interfaces;
 
 import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
 
 import java.util.List;
 
@@ -60,5 +61,13 @@ public interface CategoryDao {
 
     boolean categoryExist(String name);
 
+    /**
+     * Retrieve every category with its product count, featured product count and price range,
+     * aggregated in one query.
+     *
+     * @return A summary per category, in category ID order, including categories without products.
+     */
+    List<CategorySummary> getSummaries();
+
 
 }
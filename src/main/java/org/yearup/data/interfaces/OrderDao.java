@@ -8,6 +8,9 @@ import org.yearup.models.cart.ShoppingCartItem;
 import org.yearup.models.order.Order;
 import org.yearup.models.order.OrderLineItem;
 
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
 public interface OrderDao {
 
     /**
@@ -50,4 +53,19 @@ public interface OrderDao {
 
     void insertOrderLineItem(Order order, ShoppingCart cart);
 
+    /**
+     * Read the products of every order, one order at a time and in order ID order, without
+     * holding all order lines in memory.
+     *
+     * @param consumer Called with the distinct product IDs of each order and the order ID.
+     */
+    void forEachOrderBasket(ObjIntConsumer<int[]> consumer);
+
+    /**
+     * Total the quantities ordered per product over all orders.
+     *
+     * @return product ID -> units ordered, for every product that was ever ordered.
+     */
+    Map<Integer, Long> getUnitsSoldByProduct();
+
 }
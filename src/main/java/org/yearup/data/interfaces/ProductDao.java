@@ -6,10 +6,23 @@
  */
 package org.yearup.data.interfaces;
 
+import org.yearup.data.importing.PriceStockRow;
+import org.yearup.data.importing.ProductRow;
+import org.yearup.models.ImportReport;
 import org.yearup.models.Product;
+import org.yearup.models.ProductBatch;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.SyncReport;
+import org.yearup.models.paging.PageRequest;
+import org.yearup.models.paging.ProductPage;
+import org.yearup.models.paging.ProductSort;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface ProductDao {
 
@@ -24,6 +37,48 @@ public interface ProductDao {
      */
     List<Product> search(Integer categoryId, BigDecimal minPrice, BigDecimal maxPrice, String color);
 
+    /**
+     * Search for products matching a filter that may hold several categories and colors.
+     *
+     * @param filter The categories, colors and price range to filter by.
+     * @return A list of products that match the given criteria, in product ID order.
+     */
+    List<Product> search(ProductFilter filter);
+
+    /**
+     * Search for one keyset page of products matching a filter.
+     *
+     * @param filter The categories, colors and price range to filter by.
+     * @param page   The sort order, page size and the cursor returned with the previous page.
+     * @return The products of the page and the cursor of the next page, if there is one.
+     */
+    ProductPage search(ProductFilter filter, PageRequest page);
+
+    /**
+     * Hand every product matching a filter to an action as it is read, without collecting a list.
+     * Meant for responses that are written out row by row, so memory does not grow with the result.
+     *
+     * @param filter The categories, colors and price range to filter by.
+     * @param sort   The order in which the products are handed over.
+     * @param action Called once per matching product.
+     */
+    void forEachMatch(ProductFilter filter, ProductSort sort, Consumer<Product> action);
+
+    /**
+     * Count the products matching a filter per color, per category and per price bucket.
+     *
+     * @param filter The categories, colors and price range to filter by.
+     * @return The facet counts over every matching product, not just one page.
+     */
+    ProductFacets facets(ProductFilter filter);
+
+    /**
+     * Retrieve every product in the catalog.
+     *
+     * @return A list of all products, in product ID order.
+     */
+    List<Product> getAll();
+
     /**
      * List all products that belong to a specific category.
      *
@@ -32,6 +87,15 @@ public interface ProductDao {
      */
     List<Product> listByCategoryId(int categoryId);
 
+    /**
+     * List one keyset page of the products that belong to a specific category.
+     *
+     * @param categoryId The ID of the category to filter by.
+     * @param page       The sort order, page size and the cursor returned with the previous page.
+     * @return The products of the page and the cursor of the next page, if there is one.
+     */
+    ProductPage listByCategoryId(int categoryId, PageRequest page);
+
     /**
      * Retrieve a product by its unique ID.
      *
@@ -40,6 +104,14 @@ public interface ProductDao {
      */
     Product getById(int productId);
 
+    /**
+     * Retrieve several products at once instead of one query per product.
+     *
+     * @param productIds The IDs of the products to retrieve; a repeated ID is returned once.
+     * @return The products found, in the order of the IDs, and the IDs no product has.
+     */
+    ProductBatch getByIds(Collection<Integer> productIds);
+
     /**
      * Create a new product and insert it into the database.
      *
@@ -56,6 +128,15 @@ public interface ProductDao {
      */
     void update(int productId, Product product);
 
+    /**
+     * Point a product at a new image, leaving its other columns as they are.
+     *
+     * @param productId The ID of the product.
+     * @param imageUrl  The new image URL.
+     * @return The updated product, or null if there is no such product.
+     */
+    Product updateImageUrl(int productId, String imageUrl);
+
     /**
      * Delete a product from the database by its ID.
      *
@@ -64,4 +145,21 @@ public interface ProductDao {
     void delete(int productId);
 
     boolean productExist(String name, int categoryId);
+
+    /**
+     * Insert many products at once, skipping products that already exist with the same name and category.
+     * Rows that can not be inserted are reported and do not stop the rest of the import.
+     *
+     * @param rows The rows of an import feed, read one at a time.
+     * @return How many rows were inserted, skipped as duplicates or rejected, and why.
+     */
+    ImportReport importProducts(Iterator<ProductRow> rows);
+
+    /**
+     * Apply a supplier feed of prices and stock levels, writing only the products whose price or stock changed.
+     *
+     * @param rows The rows of the feed, read one at a time.
+     * @return How many products changed, were already current or are unknown.
+     */
+    SyncReport syncPriceAndStock(Iterator<PriceStockRow> rows);
 }
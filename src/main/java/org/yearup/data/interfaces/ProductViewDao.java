@@ -0,0 +1,26 @@
+/**
+ * This interface defines the contract for persisting how often each product page was viewed.
+ * Views are counted in memory and written in batches, so implementations add to the stored
+ * totals rather than replacing them.
+ */
+
+package org.yearup.data.interfaces;
+
+import java.util.Map;
+
+public interface ProductViewDao {
+
+    /**
+     * Retrieve the stored view total of every product that has one.
+     *
+     * @return product ID -> views.
+     */
+    Map<Integer, Long> getViews();
+
+    /**
+     * Add view counts to the stored totals in one batch, creating totals that do not exist yet.
+     *
+     * @param views product ID -> views to add.
+     */
+    void addViews(Map<Integer, Long> views);
+}
@@ -7,8 +7,12 @@
 package org.yearup.data.interfaces;
 
 import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
 import org.yearup.models.User;
+import org.yearup.models.cart.CartItemChange;
 import org.yearup.models.cart.ShoppingCart;
+import org.yearup.models.cart.ShoppingCartItem;
 
 
 public interface ShoppingCartDao {
@@ -49,6 +53,60 @@ public interface ShoppingCartDao {
      */
     void update(User user, int productId, int quantity); // Update quantity of a product
 
+    /**
+     * Atomically add a quantity of a product to the user's cart, creating the line if needed.
+     * Concurrent additions of the same product all count.
+     *
+     * @param user The user whose cart is changed.
+     * @param productId The ID of the product to add.
+     * @param quantity The quantity to add, at least 1.
+     * @return The cart line with its new quantity, or null if the product does not exist.
+     * @throws IllegalArgumentException if the quantity is less than 1.
+     */
+    ShoppingCartItem addItem(User user, int productId, int quantity);
+
+    /**
+     * Atomically set the quantity of a product in the user's cart, creating the line if needed.
+     *
+     * @param user The user whose cart is changed.
+     * @param productId The ID of the product.
+     * @param quantity The new quantity, at least 1.
+     * @return The cart line with its new quantity, or null if the product does not exist.
+     * @throws IllegalArgumentException if the quantity is less than 1.
+     */
+    ShoppingCartItem setItem(User user, int productId, int quantity);
+
+    /**
+     * Remove a single product from the user's cart.
+     *
+     * @param user The user whose cart is changed.
+     * @param productId The ID of the product to remove.
+     * @return true if the product was in the cart.
+     */
+    boolean removeItem(User user, int productId);
+
+    /**
+     * Add many products to the user's cart at once, all or nothing.
+     * Quantities of a product listed more than once are summed.
+     *
+     * @param user The user whose cart is changed.
+     * @param items The products and the quantities to add, each at least 1.
+     * @return The cart after the change.
+     * @throws IllegalArgumentException if a quantity is less than 1 or a product does not exist.
+     */
+    ShoppingCart addItems(User user, List<CartItemChange> items);
+
+    /**
+     * Set the quantities of many products in the user's cart at once, all or nothing.
+     * A quantity of 0 removes the product; for a product listed more than once the last quantity wins.
+     *
+     * @param user The user whose cart is changed.
+     * @param items The products and their new quantities, each at least 0.
+     * @return The cart after the change.
+     * @throws IllegalArgumentException if a quantity is negative or a product does not exist.
+     */
+    ShoppingCart setItems(User user, List<CartItemChange> items);
+
     /**
      * Clear all products from the shopping cart of a specific user.
      *
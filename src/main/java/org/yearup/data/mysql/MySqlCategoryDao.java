@@ -2,9 +2,13 @@ package org.yearup.data.mysql;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.yearup.data.events.CategoryChangedEvent;
 import org.yearup.data.interfaces.CategoryDao;
 import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
 
 import javax.sql.DataSource;
 import java.sql.*;
@@ -30,6 +34,18 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
         super(dataSource);
     }
 
+    /**
+     * Constructor for MySqlCategoryDao that announces every write.
+     *
+     * @param dataSource     The DataSource used to obtain database connections.
+     * @param eventPublisher Publishes a CategoryChangedEvent after every write.
+     */
+    @Autowired
+    public MySqlCategoryDao(DataSource dataSource, ApplicationEventPublisher eventPublisher)
+    {
+        super(dataSource, eventPublisher);
+    }
+
     /**
      * Retrieves all categories from the database.
      *
@@ -54,8 +70,8 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
                         results.getString(3) //description
                 );
                 category.add(cat);
-                logger.debug("Added Category: {}", cat);
             }
+            logger.debug("Loaded {} categories", category.size());
         } catch (SQLException e) {
             // Wrap and rethrow any SQL exceptions
             logger.error("Error retrieving categories", e);
@@ -159,6 +175,9 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
                     category.setCategoryId(generatedKeys.getInt(1));
                 }
             }
+            publish(CategoryChangedEvent.saved(new Category(category.getCategoryId(),
+                                                            category.getName(),
+                                                            category.getDescription())));
         }
         catch (SQLException e) {
             logger.error("Error inserting category", e);
@@ -192,6 +211,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
                 // Wrap and rethrow any SQL exceptions
                 throw new SQLException("Update failed, no rows affected.");
             }
+            publish(CategoryChangedEvent.saved(new Category(categoryId, category.getName(), category.getDescription())));
         } catch (SQLException e) {
             logger.error("Error updating category with ID: {}", categoryId, e);
             // Wrap and rethrow any SQL exceptions
@@ -218,6 +238,7 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
             if (rowsAffected == 0) {
                 throw new SQLException("Delete failed, no rows affected.");
             }
+            publish(CategoryChangedEvent.deleted(categoryId));
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting category with ID: " + categoryId, e);
         }
@@ -232,6 +253,34 @@ public class MySqlCategoryDao extends MySqlDaoBase implements CategoryDao
         return getByName(name) != null;
     }
 
+    /**
+     * Retrieves every category with its product numbers, rolled up by one GROUP BY.
+     *
+     * @return A list of CategorySummary objects in category ID order.
+     */
+    @Override
+    public List<CategorySummary> getSummaries() {
+        List<CategorySummary> summaries = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.selectCategorySummaries());
+             ResultSet row = stmt.executeQuery()) {
+            while (row.next()) {
+                summaries.add(new CategorySummary(
+                        row.getInt("category_id"),
+                        row.getString("name"),
+                        row.getInt("product_count"),
+                        row.getInt("featured_count"),
+                        row.getBigDecimal("min_price"),
+                        row.getBigDecimal("max_price")
+                ));
+            }
+        } catch (SQLException e) {
+            logger.error("Error retrieving category summaries", e);
+            throw new RuntimeException("Error retrieving category summaries", e);
+        }
+        return summaries;
+    }
+
 
     /**
      * Utility method to map a single ResultSet row to a Category object.
@@ -1,5 +1,7 @@
 package org.yearup.data.mysql;
 
+import org.springframework.context.ApplicationEventPublisher;
+
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -12,14 +14,28 @@ public abstract class MySqlDaoBase
     // DataSource instance that is used to obtain database connections
     private DataSource dataSource;
 
+    // optional, publishes change events to in-memory indexes and caches
+    private ApplicationEventPublisher eventPublisher;
+
 
     /**
      * Constructor to initialize the MySqlDaoBase with a DataSource.
      * @param dataSource The DataSource used to obtain database connections.
      */
     public MySqlDaoBase(DataSource dataSource)
+    {
+        this(dataSource, null);
+    }
+
+    /**
+     * Constructor to initialize the MySqlDaoBase with a DataSource and an event publisher.
+     * @param dataSource     The DataSource used to obtain database connections.
+     * @param eventPublisher Publishes change events after writes, may be null.
+     */
+    public MySqlDaoBase(DataSource dataSource, ApplicationEventPublisher eventPublisher)
     {
         this.dataSource = dataSource;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -32,4 +48,16 @@ public abstract class MySqlDaoBase
         // Get and return the connection from the DataSource
         return dataSource.getConnection();
     }
+
+    /**
+     * Publishes a change event after a successful write, if an event publisher is configured.
+     * @param event The event to publish.
+     */
+    protected void publish(Object event)
+    {
+        if (eventPublisher != null)
+        {
+            eventPublisher.publishEvent(event);
+        }
+    }
 }
@@ -2,7 +2,10 @@ package org.yearup.data.mysql;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.yearup.data.events.OrderPlacedEvent;
 import org.yearup.data.interfaces.OrderDao;
 import org.yearup.models.Product;
 import org.yearup.models.Profile;
@@ -15,6 +18,12 @@ import org.yearup.models.order.OrderLineItem;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
 
 /**
  * Data Access Object (DAO) for managing Order-related operations in a MySQL database.
@@ -25,6 +34,9 @@ public class MySqlOrderDao extends MySqlDaoBase implements OrderDao {
 
     private static final Logger logger = LoggerFactory.getLogger(MySqlOrderDao.class);
 
+    // makes Connector/J stream the order lines row by row over a forward-only, read-only statement
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
     /**
      * Constructor for MySqlOrderDao.
      *
@@ -34,6 +46,17 @@ public class MySqlOrderDao extends MySqlDaoBase implements OrderDao {
         super(dataSource);
     }
 
+    /**
+     * Constructor for MySqlOrderDao that publishes an {@link OrderPlacedEvent} for every order.
+     *
+     * @param dataSource     The DataSource used to obtain database connections.
+     * @param eventPublisher Publishes the events, may be null.
+     */
+    @Autowired
+    public MySqlOrderDao(DataSource dataSource, ApplicationEventPublisher eventPublisher) {
+        super(dataSource, eventPublisher);
+    }
+
 
     /**
      * Creates a new order in the database.
@@ -148,13 +171,15 @@ public class MySqlOrderDao extends MySqlDaoBase implements OrderDao {
     }
 
     /**
-     * Create and save order line items for each product in the shopping cart.
+     * Create and save order line items for each product in the shopping cart,
+     * then publish an {@link OrderPlacedEvent} with all of them.
      *
      * @param order The created Order object.
      * @param cart  The ShoppingCart object containing items the user wants to purchase.
      */
     @Override
     public void insertOrderLineItem(Order order, ShoppingCart cart) {
+        List<OrderLineItem> lines = new ArrayList<>();
         // Loop through the cart and insert order line items for each item in the cart
         for (ShoppingCartItem cartItem : cart.getItems().values()) {
             Product product = cartItem.getProduct();
@@ -165,9 +190,66 @@ public class MySqlOrderDao extends MySqlDaoBase implements OrderDao {
             orderLineItem.setSalesPrice(product.getPrice());
             orderLineItem.setQuantity(cartItem.getQuantity());
             orderLineItem.setDiscount(cartItem.getDiscountPercent().precision());
-            creatOrderLineItem(order, orderLineItem, product, cartItem);
+            lines.add(creatOrderLineItem(order, orderLineItem, product, cartItem));
+        }
+        if (!lines.isEmpty()) {
+            publish(new OrderPlacedEvent(order.getOrderId(), lines));
         }
     }
+
+    @Override
+    public void forEachOrderBasket(ObjIntConsumer<int[]> consumer) {
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.selectOrderBaskets(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet row = stmt.executeQuery()) {
+                int orderId = 0;
+                int[] basket = new int[8];
+                int size = 0;
+                while (row.next()) {
+                    // rows arrive grouped by order, so a new order ID closes the previous basket
+                    if (row.getInt("order_id") != orderId) {
+                        if (size > 0) {
+                            consumer.accept(distinct(basket, size), orderId);
+                        }
+                        orderId = row.getInt("order_id");
+                        size = 0;
+                    }
+                    if (size == basket.length) {
+                        basket = Arrays.copyOf(basket, size * 2);
+                    }
+                    basket[size++] = row.getInt("product_id");
+                }
+                if (size > 0) {
+                    consumer.accept(distinct(basket, size), orderId);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Error reading order line items", e);
+            throw new RuntimeException("Error reading order line items", e);
+        }
+    }
+
+    @Override
+    public Map<Integer, Long> getUnitsSoldByProduct() {
+        Map<Integer, Long> units = new HashMap<>();
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.selectUnitsSoldByProduct());
+             ResultSet row = stmt.executeQuery()) {
+            while (row.next()) {
+                units.put(row.getInt("product_id"), row.getLong("units"));
+            }
+        } catch (SQLException e) {
+            logger.error("Error totalling units sold", e);
+            throw new RuntimeException("Error totalling units sold", e);
+        }
+        return units;
+    }
+
+    private static int[] distinct(int[] basket, int size) {
+        return Arrays.stream(basket, 0, size).distinct().toArray();
+    }
 }
 
 
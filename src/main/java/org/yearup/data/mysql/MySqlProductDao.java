@@ -2,15 +2,42 @@ package org.yearup.data.mysql;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.yearup.data.events.ProductChangedEvent;
+import org.yearup.data.events.ProductsBulkChangedEvent;
+import org.yearup.data.importing.PriceStockRow;
+import org.yearup.data.importing.ProductRow;
+import org.yearup.data.index.CatalogSnapshot;
+import org.yearup.data.index.ProductCatalogIndex;
 import org.yearup.models.Product;
 import org.yearup.data.interfaces.ProductDao;
+import org.yearup.models.ImportReport;
+import org.yearup.models.ProductBatch;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.SyncReport;
+import org.yearup.models.paging.PageRequest;
+import org.yearup.models.paging.ProductCursor;
+import org.yearup.models.paging.ProductPage;
+import org.yearup.models.paging.ProductSort;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Data Access Object (DAO) for managing Product-related operations in a MySQL database.
@@ -20,6 +47,19 @@ import java.util.List;
 public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
     private static final Logger logger = LoggerFactory.getLogger(MySqlProductDao.class);
 
+    // Connector/J streams a forward-only, read-only result row by row only for this fetch size,
+    // any other value reads the whole result before the first row is handed over
+    private static final int STREAM_FETCH_SIZE = Integer.MIN_VALUE;
+
+    // IDs per IN (...) list, keeps statements well below max_allowed_packet and the placeholder limit
+    private static final int IDS_PER_QUERY = 500;
+
+    // rows per JDBC batch and per transaction during a bulk import
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+
+    // optional, without it every read goes to MySQL
+    private final ProductCatalogIndex catalogIndex;
+
     /**
      * Constructor for MySqlProductDao.
      * Initializes the DAO with the given DataSource for database connections.
@@ -27,7 +67,22 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
      */
     public MySqlProductDao(DataSource dataSource)
     {
-        super(dataSource);
+        this(dataSource, null, null);
+    }
+
+    /**
+     * Constructor for MySqlProductDao backed by the in-memory catalog index.
+     * @param dataSource     The DataSource used to obtain database connections.
+     * @param eventPublisher Publishes a ProductChangedEvent after every write.
+     * @param catalogIndex   Serves searches from memory once it has been built.
+     */
+    @Autowired
+    public MySqlProductDao(DataSource dataSource,
+                           ApplicationEventPublisher eventPublisher,
+                           ProductCatalogIndex catalogIndex)
+    {
+        super(dataSource, eventPublisher);
+        this.catalogIndex = catalogIndex;
     }
 
     /**
@@ -43,27 +98,64 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
                                 BigDecimal minPrice,
                                 BigDecimal maxPrice,
                                 String color) {
+        return search(new ProductFilter(
+                categoryId == null ? null : List.of(categoryId),
+                minPrice,
+                maxPrice,
+                color == null ? null : List.of(color)));
+    }
+
+    /**
+     * Searches for products matching any of the filter's categories and colors within its price range.
+     * @param filter The search criteria.
+     * @return A list of products matching the filter, in product ID order.
+     */
+    @Override
+    public List<Product> search(ProductFilter filter) {
+        return search(filter, PageRequest.unpaged()).getItems();
+    }
+
+    /**
+     * Searches for one keyset page of products matching the filter.
+     * Answered from the catalog index when it is available, otherwise from MySQL.
+     * @param filter The search criteria.
+     * @param page The sort order, page size and cursor.
+     * @return The matching products of the page and the cursor of the next page.
+     */
+    @Override
+    public ProductPage search(ProductFilter filter, PageRequest page) {
+        if (catalogIndex != null && catalogIndex.isReady()) {
+            CatalogSnapshot snapshot = catalogIndex.snapshot();
+            return ProductPage.of(snapshot.page(snapshot.match(filter), page), page);
+        }
+
         // Declare an empty List to store the results
         List<Product> products = new ArrayList<>();
+        String sql = Queries.selectProductsByFilter(filter.getCategoryIds().size(),
+                                                    filter.getColors().size(),
+                                                    filter.getMinPrice() != null,
+                                                    filter.getMaxPrice() != null,
+                                                    page.getSort(),
+                                                    page.getAfter() != null,
+                                                    page.isPaged());
 
         // Establish a connection to the database
-        try (Connection connection = getConnection()) {
-            // Prepare the SQL statement
-            PreparedStatement stmt = connection.prepareStatement(Queries.selectProductsByFilter());
-            // Set the parameters to process the query
-            stmt.setObject(1, categoryId == null ? -1 : categoryId); // categoryId
-            stmt.setObject(2, categoryId == null ? -1 : categoryId); // categoryId (again)
-            stmt.setObject(3, minPrice == null ? new BigDecimal("-1") : minPrice); // minPrice
-            stmt.setObject(4, minPrice == null ? new BigDecimal("-1") : minPrice); // minPrice (again)
-            stmt.setObject(5, maxPrice == null ? new BigDecimal("-1") : maxPrice); // maxPrice
-            stmt.setObject(6, maxPrice == null ? new BigDecimal("-1") : maxPrice); // maxPrice (again)
-            stmt.setObject(7, color == null ? "" : color); // color
-            stmt.setObject(8, color == null ? "" : color); // color (again)
-            ResultSet row = stmt.executeQuery(); // Execute the query
-            // Map each row to a Product object and add it to the list
-            while (row.next()) {
-                Product product = mapRow(row);
-                products.add(product);
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            // Set the parameters in the same order the predicates were added
+            int index = setFilterParams(stmt, filter);
+            if (page.getAfter() != null) {
+                index = setCursorParams(stmt, index, page.getAfter());
+            }
+            if (page.isPaged()) {
+                // one extra row tells us whether there is a next page
+                stmt.setInt(index, page.getLimit() + 1);
+            }
+            try (ResultSet row = stmt.executeQuery()) {
+                // Map each row to a Product object and add it to the list
+                while (row.next()) {
+                    products.add(mapRow(row));
+                }
             }
             logger.debug("Found {} products based on filters.", products.size());
         }
@@ -71,36 +163,166 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
             // Throw a runtime exception if an SQL error occurs
             throw new RuntimeException("Error occurred filtering searching",e);
         }
-        return products; // Return the list of matching products
+        return ProductPage.of(products, page); // Return the page of matching products
     }
 
     /**
-     * Retrieves all products from a specific category by category ID.
-     * @param categoryId The category ID to filter products.
-     * @return A list of products in the specified category.
+     * Hands every product matching the filter to the action while the rows are being read.
+     * From the catalog index the products are the shared snapshot instances, so nothing is copied;
+     * from MySQL the rows are streamed over a forward-only, read-only statement and each row is
+     * dropped once the action returns.
+     * @param filter The search criteria.
+     * @param sort The order in which the products are handed over.
+     * @param action Called once per matching product.
      */
     @Override
-    public List<Product> listByCategoryId(int categoryId) {
-        // Declare an empty List to store the results
-        List<Product> products = new ArrayList<>();
-        // Establish a connection to the database
-        try (Connection connection = getConnection()) {
-            // Prepare the SQL statement and set the parameter to process the query
-            PreparedStatement stmt = connection.prepareStatement(Queries.selectProductsByCatId());
-            stmt.setInt(1, categoryId);
+    public void forEachMatch(ProductFilter filter, ProductSort sort, Consumer<Product> action) {
+        if (catalogIndex != null && catalogIndex.isReady()) {
+            CatalogSnapshot snapshot = catalogIndex.snapshot();
+            snapshot.page(snapshot.match(filter), new PageRequest(sort, null, null)).forEach(action);
+            return;
+        }
 
-            // Execute the query and map each row to a Product object
-            ResultSet row = stmt.executeQuery();
+        String sql = Queries.selectProductsByFilter(filter.getCategoryIds().size(),
+                                                    filter.getColors().size(),
+                                                    filter.getMinPrice() != null,
+                                                    filter.getMaxPrice() != null,
+                                                    sort,
+                                                    false,
+                                                    false);
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            setFilterParams(stmt, filter);
+            try (ResultSet row = stmt.executeQuery()) {
+                while (row.next()) {
+                    action.accept(mapRow(row));
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Error occurred streaming products", e);
+        }
+    }
+
+    /**
+     * Counts the products matching the filter per color, category and price bucket.
+     * Uses one pass over the catalog index bitmap, or one query over the matching rows.
+     * @param filter The search criteria.
+     * @return The facet counts of every matching product.
+     */
+    @Override
+    public ProductFacets facets(ProductFilter filter) {
+        if (catalogIndex != null && catalogIndex.isReady()) {
+            CatalogSnapshot snapshot = catalogIndex.snapshot();
+            return snapshot.facets(snapshot.match(filter));
+        }
+
+        ProductFacets facets = new ProductFacets();
+        String sql = Queries.selectProductFacetsByFilter(filter.getCategoryIds().size(),
+                                                         filter.getColors().size(),
+                                                         filter.getMinPrice() != null,
+                                                         filter.getMaxPrice() != null);
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            setFilterParams(stmt, filter);
+            try (ResultSet row = stmt.executeQuery()) {
+                while (row.next()) {
+                    facets.add(row.getInt("category_id"), row.getString("color"), row.getBigDecimal("price"));
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Error occurred counting product facets", e);
+        }
+        return facets;
+    }
+
+    /**
+     * Helper method to set the filter parameters in the order Queries adds the predicates.
+     * @return The index of the next unset parameter.
+     */
+    private int setFilterParams(PreparedStatement stmt, ProductFilter filter) throws SQLException {
+        int index = 1;
+        for (Integer categoryId : filter.getCategoryIds()) {
+            stmt.setInt(index++, categoryId);
+        }
+        if (filter.getMinPrice() != null) {
+            stmt.setBigDecimal(index++, filter.getMinPrice());
+        }
+        if (filter.getMaxPrice() != null) {
+            stmt.setBigDecimal(index++, filter.getMaxPrice());
+        }
+        for (String color : filter.getColors()) {
+            stmt.setString(index++, color);
+        }
+        return index;
+    }
+
+    /**
+     * Helper method to set the keyset parameters of a cursor, see Queries.keysetPredicate.
+     * @return The index of the next unset parameter.
+     */
+    private int setCursorParams(PreparedStatement stmt, int index, ProductCursor after) throws SQLException {
+        switch (after.getSort()) {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                stmt.setBigDecimal(index++, after.getPrice());
+                stmt.setBigDecimal(index++, after.getPrice());
+                break;
+            case NAME:
+                stmt.setString(index++, after.getName());
+                stmt.setString(index++, after.getName());
+                break;
+            default:
+                break;
+        }
+        stmt.setInt(index++, after.getProductId());
+        return index;
+    }
+
+    /**
+     * Retrieves every product from the database, bypassing the catalog index.
+     * @return A list of all products in product ID order.
+     */
+    @Override
+    public List<Product> getAll() {
+        List<Product> products = new ArrayList<>();
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.selectProducts());
+             ResultSet row = stmt.executeQuery()) {
             while (row.next()) {
-                Product product = mapRow(row);
-                products.add(product);
+                products.add(mapRow(row));
             }
         }
         catch (SQLException e) {
-            // Handle SQL exceptions by throwing a RuntimeException
-            throw new RuntimeException("Error occurred receiving product by category Id: " + categoryId,e);
+            throw new RuntimeException("Error occurred retrieving all products", e);
         }
-        return products; // Return the list of products in the specified category
+        return products;
+    }
+
+    /**
+     * Retrieves all products from a specific category by category ID.
+     * @param categoryId The category ID to filter products.
+     * @return A list of products in the specified category.
+     */
+    @Override
+    public List<Product> listByCategoryId(int categoryId) {
+        return listByCategoryId(categoryId, PageRequest.unpaged()).getItems();
+    }
+
+    /**
+     * Retrieves one keyset page of the products in a specific category.
+     * @param categoryId The category ID to filter products.
+     * @param page The sort order, page size and cursor.
+     * @return The products of the page and the cursor of the next page.
+     */
+    @Override
+    public ProductPage listByCategoryId(int categoryId, PageRequest page) {
+        ProductFilter filter = new ProductFilter();
+        filter.setCategoryIds(List.of(categoryId));
+        return search(filter, page);
     }
 
     /**
@@ -129,6 +351,62 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
         return null; // Return null if the product is not found
     }
 
+    /**
+     * Retrieves several products with one IN (...) query per {@value #IDS_PER_QUERY} IDs,
+     * all on one connection, or straight from the catalog index when it is available.
+     *
+     * @param productIds The product IDs to look up.
+     * @return The products found in the order of the IDs, and the IDs that were not found.
+     */
+    @Override
+    public ProductBatch getByIds(Collection<Integer> productIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(productIds));
+        ids.remove(null);
+        Map<Integer, Product> found = new HashMap<>();
+
+        if (catalogIndex != null && catalogIndex.isReady()) {
+            CatalogSnapshot snapshot = catalogIndex.snapshot();
+            for (Integer id : ids) {
+                Product product = snapshot.getById(id);
+                if (product != null) {
+                    found.put(id, product);
+                }
+            }
+        }
+        else if (!ids.isEmpty()) {
+            try (Connection connection = getConnection()) {
+                for (int from = 0; from < ids.size(); from += IDS_PER_QUERY) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IDS_PER_QUERY, ids.size()));
+                    try (PreparedStatement stmt = connection.prepareStatement(Queries.selectProductsByIds(chunk.size()))) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            stmt.setInt(i + 1, chunk.get(i));
+                        }
+                        try (ResultSet row = stmt.executeQuery()) {
+                            while (row.next()) {
+                                Product product = mapRow(row);
+                                found.put(product.getProductId(), product);
+                            }
+                        }
+                    }
+                }
+            }
+            catch (SQLException e) {
+                throw new RuntimeException("Error occurred receiving products by product Ids", e);
+            }
+        }
+
+        // MySQL returns IN (...) rows in index order, put them back in the order they were asked for
+        ProductBatch batch = new ProductBatch();
+        for (Integer id : ids) {
+            Product product = found.get(id);
+            if (product != null) {
+                batch.getProducts().add(product);
+            } else {
+                batch.getMissingIds().add(id);
+            }
+        }
+        return batch;
+    }
 
     /**
      * Creates a new product in the database.
@@ -159,7 +437,11 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
                     int orderId = generatedKeys.getInt(1);
 
                     // get the newly inserted category
-                    return getById(orderId);
+                    Product created = getById(orderId);
+                    if (created != null) {
+                        publish(ProductChangedEvent.saved(created));
+                    }
+                    return created;
                 }
             }
         }
@@ -189,11 +471,50 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
             // Set the product ID to update
             stmt.setInt(9, productId);
 
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                Product saved = new Product(product);
+                saved.setProductId(productId);
+                publish(ProductChangedEvent.saved(saved));
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Error updating the product.", e);
         }
     }
+    /**
+     * Sets only the image_url column, so writes to the other columns in the meantime are not overwritten,
+     * then reads the row back on the same connection for the change event.
+     *
+     * @param productId The ID of the product.
+     * @param imageUrl The new image URL.
+     * @return The updated product, or null if there is no such product.
+     */
+    @Override
+    public Product updateImageUrl(int productId, String imageUrl) {
+        try (Connection connection = getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement(Queries.updateProductImageUrl())) {
+                stmt.setString(1, imageUrl);
+                stmt.setInt(2, productId);
+                if (stmt.executeUpdate() == 0) {
+                    return null;
+                }
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(Queries.selectProductByProdId())) {
+                stmt.setInt(1, productId);
+                try (ResultSet row = stmt.executeQuery()) {
+                    if (!row.next()) {
+                        // deleted right after the update
+                        return null;
+                    }
+                    Product saved = mapRow(row);
+                    publish(ProductChangedEvent.saved(saved));
+                    return saved;
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error updating the product image.", e);
+        }
+    }
+
     /**
      * Helper method to set the parameters for the PreparedStatement.
      */
@@ -222,7 +543,9 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
             // Prepare the SQL statement and set the parameter to process the query
             PreparedStatement stmt = connection.prepareStatement(Queries.dropProductById());
             stmt.setInt(1, productId);
-            stmt.executeUpdate();
+            if (stmt.executeUpdate() > 0) {
+                publish(ProductChangedEvent.deleted(productId));
+            }
         }
         catch (SQLException e) {
             throw new RuntimeException(e);
@@ -246,6 +569,246 @@ public class MySqlProductDao extends MySqlDaoBase implements ProductDao {
         return false;
     }
 
+    /**
+     * Imports products in chunks of {@value #IMPORT_CHUNK_SIZE}, each chunk one JDBC batch in its own
+     * transaction; DatabaseConfig turns on rewriteBatchedStatements, so a batch travels as one
+     * multi-row INSERT. The existing name and category pairs and the category IDs are loaded once
+     * up front, so duplicates and unknown categories are caught in memory without a query per row.
+     * If a batch still fails, that chunk is rolled back and retried row by row to find the bad rows.
+     * Called inside a transaction, e.g. by a test, the chunks join it behind savepoints and nothing is
+     * committed. One bulk event is published at the end instead of an event per product.
+     *
+     * @param rows The rows of an import feed.
+     * @return The counts and the row errors of the import.
+     */
+    @Override
+    public ImportReport importProducts(Iterator<ProductRow> rows) {
+        ImportReport report = new ImportReport();
+        try (Connection connection = getConnection()) {
+            Set<String> existing = new HashSet<>();
+            try (PreparedStatement stmt = connection.prepareStatement(Queries.selectProductKeys());
+                 ResultSet row = stmt.executeQuery()) {
+                while (row.next()) {
+                    existing.add(importKey(row.getString("name"), row.getInt("category_id")));
+                }
+            }
+            Set<Integer> categoryIds = new HashSet<>();
+            try (PreparedStatement stmt = connection.prepareStatement(Queries.selectCategoryIds());
+                 ResultSet row = stmt.executeQuery()) {
+                while (row.next()) {
+                    categoryIds.add(row.getInt("category_id"));
+                }
+            }
+
+            // only an import that starts its own transactions commits them
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(Queries.insertProductBatch())) {
+                List<ProductRow> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                while (rows.hasNext()) {
+                    ProductRow row = rows.next();
+                    report.setRows(report.getRows() + 1);
+                    String error = row.isError() ? row.getError() : validate(row.getProduct(), categoryIds);
+                    if (error != null) {
+                        report.fail(row.getLine(), error);
+                        continue;
+                    }
+                    // the name comparison follows MySQL's case insensitive collation
+                    if (!existing.add(importKey(row.getProduct().getName(), row.getProduct().getCategoryId()))) {
+                        report.setDuplicates(report.getDuplicates() + 1);
+                        continue;
+                    }
+                    chunk.add(row);
+                    if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                        insertChunk(connection, insert, chunk, existing, autoCommit, report);
+                        chunk.clear();
+                    }
+                }
+                insertChunk(connection, insert, chunk, existing, autoCommit, report);
+            } finally {
+                if (autoCommit) {
+                    // a chunk cut short by an error must not be committed by turning autocommit back on
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Error occurred importing products", e);
+        }
+        finally {
+            // rows committed by earlier chunks stay, even if a later one failed hard
+            if (report.getInserted() > 0) {
+                publish(new ProductsBulkChangedEvent(report.getInserted()));
+            }
+        }
+        logger.info("Imported {} of {} product rows, {} duplicates, {} failed.",
+                report.getInserted(), report.getRows(), report.getDuplicates(), report.getFailed());
+        return report;
+    }
+
+    // existing already holds the keys of the chunk; a row that fails gives its key back for later rows
+    private void insertChunk(Connection connection, PreparedStatement insert, List<ProductRow> chunk,
+                             Set<String> existing, boolean ownTransaction, ImportReport report) throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Savepoint savepoint = ownTransaction ? null : connection.setSavepoint();
+        try {
+            for (ProductRow row : chunk) {
+                setProductParams(insert, row.getProduct());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            endChunk(connection, savepoint);
+            report.setInserted(report.getInserted() + chunk.size());
+        }
+        catch (SQLException e) {
+            insert.clearBatch();
+            if (savepoint == null) {
+                connection.rollback();
+            }
+            else {
+                connection.rollback(savepoint);
+            }
+            // a failed statement does not abort a MySQL transaction, so the good rows can still go in together
+            for (ProductRow row : chunk) {
+                try {
+                    setProductParams(insert, row.getProduct());
+                    insert.executeUpdate();
+                    report.setInserted(report.getInserted() + 1);
+                }
+                catch (SQLException rowError) {
+                    existing.remove(importKey(row.getProduct().getName(), row.getProduct().getCategoryId()));
+                    report.fail(row.getLine(), rowError.getMessage());
+                }
+            }
+            endChunk(connection, savepoint);
+        }
+    }
+
+    // commits a chunk in its own transaction, or keeps it in the caller's and drops the savepoint
+    private static void endChunk(Connection connection, Savepoint savepoint) throws SQLException {
+        if (savepoint == null) {
+            connection.commit();
+        }
+        else {
+            connection.releaseSavepoint(savepoint);
+        }
+    }
+
+    /**
+     * Applies a price and stock feed. The current price and stock of every product are loaded once as a
+     * 64-bit fingerprint per product; a feed row whose fingerprint matches is counted as unchanged and
+     * never reaches MySQL. Changed rows are written as two-column UPDATEs in JDBC batches of
+     * {@value #IMPORT_CHUNK_SIZE}, one transaction per batch, or inside the caller's transaction when
+     * there is one.
+     *
+     * @param rows The rows of the feed.
+     * @return The changed, unchanged and unknown counts of the feed.
+     */
+    @Override
+    public SyncReport syncPriceAndStock(Iterator<PriceStockRow> rows) {
+        SyncReport report = new SyncReport();
+        try (Connection connection = getConnection()) {
+            Map<Integer, Long> fingerprints = new HashMap<>();
+            try (PreparedStatement stmt = connection.prepareStatement(Queries.selectProductPricesAndStock());
+                 ResultSet row = stmt.executeQuery()) {
+                while (row.next()) {
+                    fingerprints.put(row.getInt("product_id"), fingerprint(row.getBigDecimal("price"), row.getInt("stock")));
+                }
+            }
+
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement(Queries.updateProductPriceAndStock())) {
+                int batched = 0;
+                while (rows.hasNext()) {
+                    PriceStockRow row = rows.next();
+                    report.setRows(report.getRows() + 1);
+                    if (row.isError()) {
+                        report.fail(row.getLine(), row.getError());
+                        continue;
+                    }
+                    Long current = fingerprints.get(row.getProductId());
+                    if (current == null) {
+                        report.setUnknown(report.getUnknown() + 1);
+                        continue;
+                    }
+                    long incoming = fingerprint(row.getPrice(), row.getStock());
+                    if (current == incoming) {
+                        report.setUnchanged(report.getUnchanged() + 1);
+                        continue;
+                    }
+                    // a later row for the same product is compared against this one
+                    fingerprints.put(row.getProductId(), incoming);
+                    update.setBigDecimal(1, row.getPrice());
+                    update.setInt(2, row.getStock());
+                    update.setInt(3, row.getProductId());
+                    update.addBatch();
+                    if (++batched == IMPORT_CHUNK_SIZE) {
+                        update.executeBatch();
+                        if (autoCommit) {
+                            connection.commit();
+                        }
+                        report.setChanged(report.getChanged() + batched);
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    update.executeBatch();
+                    if (autoCommit) {
+                        connection.commit();
+                    }
+                    report.setChanged(report.getChanged() + batched);
+                }
+            } finally {
+                // only a transaction this method started is rolled back; the caller's is left to the caller
+                if (autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException("Error occurred syncing product prices and stock", e);
+        }
+        finally {
+            if (report.getChanged() > 0) {
+                publish(new ProductsBulkChangedEvent(report.getChanged()));
+            }
+        }
+        logger.info("Synced {} feed rows: {} changed, {} unchanged, {} unknown, {} failed.",
+                report.getRows(), report.getChanged(), report.getUnchanged(), report.getUnknown(), report.getFailed());
+        return report;
+    }
+
+    // mixes the price in cents and the stock into 64 bits; a false "unchanged" needs a 64-bit collision
+    static long fingerprint(BigDecimal price, int stock) {
+        long cents = price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        long h = cents * 0x9E3779B97F4A7C15L + stock;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static String validate(Product product, Set<Integer> categoryIds) {
+        if (product.getName() == null || product.getName().isBlank()) {
+            return "name is required";
+        }
+        if (product.getPrice() == null || product.getPrice().signum() < 0) {
+            return "price must be zero or more";
+        }
+        if (!categoryIds.contains(product.getCategoryId())) {
+            return "unknown category_id " + product.getCategoryId();
+        }
+        return null;
+    }
+
+    private static String importKey(String name, int categoryId) {
+        return categoryId + ":" + name.trim().toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Maps a ResultSet row to a Product object.
      *
@@ -0,0 +1,67 @@
+package org.yearup.data.mysql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.yearup.data.interfaces.ProductViewDao;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * DAO implementation for the product_views table.
+ */
+@Component
+public class MySqlProductViewDao extends MySqlDaoBase implements ProductViewDao {
+
+    private static final Logger logger = LoggerFactory.getLogger(MySqlProductViewDao.class);
+
+    public MySqlProductViewDao(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    public Map<Integer, Long> getViews() {
+        Map<Integer, Long> views = new HashMap<>();
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.selectProductViews());
+             ResultSet row = stmt.executeQuery()) {
+            while (row.next()) {
+                views.put(row.getInt("product_id"), row.getLong("views"));
+            }
+        } catch (SQLException e) {
+            logger.error("Error reading product views", e);
+            throw new RuntimeException("Error reading product views", e);
+        }
+        return views;
+    }
+
+    /**
+     * Adds the counts with one batched upsert; with rewriteBatchedStatements (see DatabaseConfig)
+     * the driver sends the whole batch as a single multi-row INSERT. Counts for IDs that no longer
+     * have a product are ignored rather than failing the batch.
+     */
+    @Override
+    public void addViews(Map<Integer, Long> views) {
+        if (views.isEmpty()) {
+            return;
+        }
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.upsertProductViews())) {
+            for (Map.Entry<Integer, Long> entry : views.entrySet()) {
+                stmt.setInt(1, entry.getKey());
+                stmt.setLong(2, entry.getValue());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            logger.error("Error writing product views", e);
+            throw new RuntimeException("Error writing product views", e);
+        }
+    }
+}
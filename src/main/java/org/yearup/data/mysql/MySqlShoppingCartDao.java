@@ -1,11 +1,16 @@
 package org.yearup.data.mysql;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.events.CartItemAddedEvent;
+import org.yearup.data.interfaces.ProductDao;
 import org.yearup.data.interfaces.ShoppingCartDao;
 import org.yearup.models.Product;
 import org.yearup.models.User;
+import org.yearup.models.cart.CartItemChange;
 import org.yearup.models.cart.ShoppingCart;
 import org.yearup.models.cart.ShoppingCartItem;
 
@@ -15,6 +20,13 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * DAO implementation for managing shopping cart data in a MySQL database.
@@ -22,12 +34,39 @@ import java.sql.SQLException;
 @Component
 public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDao {
 
+    // ER_NO_REFERENCED_ROW_2: a foreign key points at a row that does not exist
+    private static final int NO_REFERENCED_ROW = 1452;
+
+    // looks up the products of changed cart lines
+    private final ProductDao productDao;
+
     /**
      * Constructor for MySqlShoppingCartDao.
      * @param dataSource The DataSource to be used for database connections.
      */
     public MySqlShoppingCartDao(DataSource dataSource) {
-        super(dataSource);
+        this(dataSource, null);
+    }
+
+    /**
+     * Constructor for MySqlShoppingCartDao that publishes a {@link CartItemAddedEvent} for every added product.
+     * @param dataSource     The DataSource to be used for database connections.
+     * @param eventPublisher Publishes the events, may be null.
+     */
+    public MySqlShoppingCartDao(DataSource dataSource, ApplicationEventPublisher eventPublisher) {
+        this(dataSource, eventPublisher, new MySqlProductDao(dataSource));
+    }
+
+    /**
+     * Constructor for MySqlShoppingCartDao that returns changed cart lines with their products.
+     * @param dataSource     The DataSource to be used for database connections.
+     * @param eventPublisher Publishes the events, may be null.
+     * @param productDao     Looks up products, from the in-memory catalog when it is available.
+     */
+    @Autowired
+    public MySqlShoppingCartDao(DataSource dataSource, ApplicationEventPublisher eventPublisher, ProductDao productDao) {
+        super(dataSource, eventPublisher);
+        this.productDao = productDao;
     }
 
     /**
@@ -38,10 +77,17 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
      */
     @Override
     public ShoppingCart getByUserId(User user) {
-        ShoppingCart cart = new ShoppingCart();
+        try (Connection connection = getConnection()) {
+            return getByUserId(connection, user);
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a RuntimeException
+            throw new RuntimeException("Error retrieving shopping cart for user ID " + e);
+        }
+    }
 
-        try (Connection connection = getConnection();
-             PreparedStatement stmt = connection.prepareStatement(Queries.selectCartByUserId())) {
+    private ShoppingCart getByUserId(Connection connection, User user) throws SQLException {
+        ShoppingCart cart = new ShoppingCart();
+        try (PreparedStatement stmt = connection.prepareStatement(Queries.selectCartByUserId())) {
             // Set the userId in the query
             stmt.setInt(1, user.getId());
 
@@ -51,9 +97,6 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
                     cart.add(item);
                 }
             }
-        } catch (SQLException e) {
-            // Handle SQL exceptions by throwing a RuntimeException
-            throw new RuntimeException("Error retrieving shopping cart for user ID " + e);
         }
         return cart;
     }
@@ -77,6 +120,7 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
 
     /**
      * Adds a product to the user's shopping cart. If the product already exists, increments the quantity.
+     * Publishes a {@link CartItemAddedEvent} afterwards.
      *
      * @param user  The ID of the user.
      * @param productId The ID of the product to be added.
@@ -84,42 +128,275 @@ public class MySqlShoppingCartDao extends MySqlDaoBase implements ShoppingCartDa
     @Override
     public void post(User user, int productId)
     {
-        // SQL query to check if the product is already in the cart
-        String checkSql = Queries.selectQuantity();
+        if (addItem(user, productId, 1) == null) {
+            throw new RuntimeException("Error inserting product, no product with ID " + productId);
+        }
+    }
+
+    /**
+     * Adds a quantity of a product with one INSERT ... ON DUPLICATE KEY UPDATE, so concurrent
+     * additions can not overwrite each other. The updated quantity comes back with the statement's
+     * OK packet, so the line is known without reading it again. An unknown product is reported by the
+     * foreign key, so the product is only looked up for the returned line, from the in-memory catalog
+     * when it is available.
+     * Publishes a {@link CartItemAddedEvent} afterwards.
+     *
+     * @param user      The user whose cart is changed.
+     * @param productId The ID of the product to add.
+     * @param quantity  The quantity to add, at least 1.
+     * @return The cart line with its new quantity, or null if the product does not exist.
+     */
+    @Override
+    public ShoppingCartItem addItem(User user, int productId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("quantity must be at least 1");
+        }
+        int newQuantity = quantity;
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.upsertAddCartItem(), Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setInt(1, user.getId());
+            stmt.setInt(2, productId);
+            stmt.setInt(3, quantity);
+            // 1 row: a new line holding the quantity, 2 rows: an existing line was increased
+            if (stmt.executeUpdate() == 2) {
+                try (ResultSet keys = stmt.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("Updated quantity missing from the result");
+                    }
+                    newQuantity = keys.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            if (isUnknownProduct(e)) {
+                return null;
+            }
+            throw new RuntimeException("Error adding product " + productId + " to cart", e);
+        }
+        publish(new CartItemAddedEvent(user.getId(), productId));
+        return cartLine(productId, newQuantity);
+    }
 
+    /**
+     * Sets the quantity of a product with one INSERT ... ON DUPLICATE KEY UPDATE. As with
+     * {@link #addItem}, an unknown product is reported by the foreign key.
+     *
+     * @param user      The user whose cart is changed.
+     * @param productId The ID of the product.
+     * @param quantity  The new quantity, at least 1.
+     * @return The cart line with its new quantity, or null if the product does not exist.
+     */
+    @Override
+    public ShoppingCartItem setItem(User user, int productId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("quantity must be at least 1");
+        }
         try (Connection connection = getConnection();
-             PreparedStatement stmt = connection.prepareStatement(checkSql)) {
+             PreparedStatement stmt = connection.prepareStatement(Queries.upsertSetCartItem())) {
             stmt.setInt(1, user.getId());
             stmt.setInt(2, productId);
+            stmt.setInt(3, quantity);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            if (isUnknownProduct(e)) {
+                return null;
+            }
+            throw new RuntimeException("Error setting quantity of product " + productId + " in cart", e);
+        }
+        return cartLine(productId, quantity);
+    }
 
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    // If the product is already in the cart, update the quantity
-                    int value = rs.getInt("quantity");
-                    int updateQuantity = value + 1;  // Increment the quantity by 1 (or any desired value)
-
-                    try (PreparedStatement updateStmt = connection.prepareStatement(Queries.updateShoppingCart())) {
-                        updateStmt.setInt(1, updateQuantity);
-                        updateStmt.setInt(2, user.getId());
-                        updateStmt.setInt(3, productId);
-                        updateStmt.executeUpdate();
+    /**
+     * Removes one product from the user's shopping cart.
+     *
+     * @param user      The user whose cart is changed.
+     * @param productId The ID of the product to remove.
+     * @return true if the product was in the cart.
+     */
+    @Override
+    public boolean removeItem(User user, int productId) {
+        try (Connection connection = getConnection();
+             PreparedStatement stmt = connection.prepareStatement(Queries.dropShoppingCartItem())) {
+            stmt.setInt(1, user.getId());
+            stmt.setInt(2, productId);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error removing product " + productId + " from cart", e);
+        }
+    }
+
+    /**
+     * Adds many products as one JDBC batch of upserts in one transaction on one connection, then reads
+     * the cart back within that transaction. With rewriteBatchedStatements (see DatabaseConfig) the
+     * batch travels as a single multi-row INSERT. The products are checked up front, from the
+     * in-memory catalog when it is available, so an unknown ID fails the request before any write.
+     * Publishes a {@link CartItemAddedEvent} per product after the commit.
+     *
+     * @param user  The user whose cart is changed.
+     * @param items The products and the quantities to add.
+     * @return The cart after the change.
+     */
+    @Override
+    public ShoppingCart addItems(User user, List<CartItemChange> items) {
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (CartItemChange item : items) {
+            if (item.getQuantity() < 1) {
+                throw new IllegalArgumentException("quantity must be at least 1");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        requireProducts(quantities);
+
+        ShoppingCart cart = applyBatch(user, quantities, Queries.upsertAddCartItems());
+        for (Integer productId : quantities.keySet()) {
+            publish(new CartItemAddedEvent(user.getId(), productId));
+        }
+        return cart;
+    }
+
+    /**
+     * Sets many quantities as one JDBC batch of upserts in one transaction on one connection, then
+     * reads the cart back within that transaction. Products set to 0 are removed by a second batch of
+     * deletes in the same transaction, only sent when there are any.
+     *
+     * @param user  The user whose cart is changed.
+     * @param items The products and their new quantities.
+     * @return The cart after the change.
+     */
+    @Override
+    public ShoppingCart setItems(User user, List<CartItemChange> items) {
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (CartItemChange item : items) {
+            if (item.getQuantity() < 0) {
+                throw new IllegalArgumentException("quantity can not be negative");
+            }
+            quantities.put(item.getProductId(), item.getQuantity());
+        }
+        Map<Integer, Integer> upserts = new TreeMap<>(quantities);
+        upserts.values().removeIf(quantity -> quantity == 0);
+        requireProducts(upserts);
+
+        return applyBatch(user, quantities, Queries.upsertSetCartItem());
+    }
+
+    // quantities are in product_id order, so concurrent batches for one cart lock its rows in the same order
+    private ShoppingCart applyBatch(User user, Map<Integer, Integer> quantities, String upsertSql) {
+        try (Connection connection = getConnection()) {
+            // inside a caller's transaction a failed batch is undone to a savepoint, not with the caller's work
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            Savepoint savepoint = autoCommit ? null : connection.setSavepoint();
+            try (PreparedStatement upsert = connection.prepareStatement(upsertSql);
+                 PreparedStatement remove = connection.prepareStatement(Queries.dropShoppingCartItem())) {
+                boolean removals = false;
+                for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+                    if (entry.getValue() == 0) {
+                        remove.setInt(1, user.getId());
+                        remove.setInt(2, entry.getKey());
+                        remove.addBatch();
+                        removals = true;
+                    } else {
+                        upsert.setInt(1, user.getId());
+                        upsert.setInt(2, entry.getKey());
+                        upsert.setInt(3, entry.getValue());
+                        upsert.addBatch();
                     }
+                }
+                upsert.executeBatch();
+                if (removals) {
+                    remove.executeBatch();
+                }
+                ShoppingCart cart = getByUserId(connection, user);
+                if (savepoint == null) {
+                    connection.commit();
+                } else {
+                    connection.releaseSavepoint(savepoint);
+                }
+                return cart;
+            } catch (SQLException | RuntimeException e) {
+                if (savepoint == null) {
+                    connection.rollback();
                 } else {
-                    // If the product is not in the cart, insert new record
-                    try (PreparedStatement insertStmt = connection.prepareStatement(Queries.insertShoppingCart())) {
-                        insertStmt.setInt(1, user.getId());
-                        insertStmt.setInt(2, productId);
-                        insertStmt.setInt(3, 1);  // 1 is quantity default
-                        insertStmt.executeUpdate();
+                    connection.rollback(savepoint);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Error changing " + quantities.size() + " products in cart", e);
+        }
+    }
+
+    /**
+     * Replaces the whole contents of several carts in one transaction on one connection: one JDBC
+     * batch deletes the carts' lines and one batch inserts their current lines.
+     * Used to write back carts that were changed in memory.
+     *
+     * @param carts user ID -> every line the user's cart holds now; an empty list empties the cart.
+     */
+    public void replaceCarts(Map<Integer, List<CartItemChange>> carts) {
+        if (carts.isEmpty()) {
+            return;
+        }
+        try (Connection connection = getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            Savepoint savepoint = autoCommit ? null : connection.setSavepoint();
+            try (PreparedStatement clear = connection.prepareStatement(Queries.dropShoppingCart());
+                 PreparedStatement insert = connection.prepareStatement(Queries.insertShoppingCartLines())) {
+                for (Map.Entry<Integer, List<CartItemChange>> cart : carts.entrySet()) {
+                    clear.setInt(1, cart.getKey());
+                    clear.addBatch();
+                    for (CartItemChange line : cart.getValue()) {
+                        insert.setInt(1, cart.getKey());
+                        insert.setInt(2, line.getProductId());
+                        insert.setInt(3, line.getQuantity());
+                        insert.addBatch();
                     }
                 }
+                clear.executeBatch();
+                insert.executeBatch();
+                if (savepoint == null) {
+                    connection.commit();
+                } else {
+                    connection.releaseSavepoint(savepoint);
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (savepoint == null) {
+                    connection.rollback();
+                } else {
+                    connection.rollback(savepoint);
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
         } catch (SQLException e) {
-            // Handle SQL exceptions by throwing a RuntimeException
-            throw new RuntimeException("Error inserting product",e);
+            throw new RuntimeException("Error writing " + carts.size() + " shopping carts", e);
         }
     }
 
+    private void requireProducts(Map<Integer, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        List<Integer> missing = productDao.getByIds(new ArrayList<>(quantities.keySet())).getMissingIds();
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Unknown product IDs: " + missing);
+        }
+    }
+
+    // served from the in-memory catalog once it is built, so a cart change stays one database statement
+    private ShoppingCartItem cartLine(int productId, int quantity) {
+        List<Product> found = productDao.getByIds(List.of(productId)).getProducts();
+        return found.isEmpty() ? null : new ShoppingCartItem(new Product(found.get(0)), quantity, BigDecimal.ZERO);
+    }
+
+    // the user is the logged-in one, so a missing parent row can only be the product
+    private static boolean isUnknownProduct(SQLException e) {
+        return e instanceof SQLIntegrityConstraintViolationException && e.getErrorCode() == NO_REFERENCED_ROW;
+    }
+
 
     /**
      * Updates the quantity of a product in the shopping cart.
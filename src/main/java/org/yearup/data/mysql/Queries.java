@@ -1,5 +1,9 @@
 package org.yearup.data.mysql;
 
+import org.yearup.models.paging.ProductSort;
+
+import java.util.Collections;
+
 public class Queries {
 
     /**
@@ -37,27 +41,113 @@ public class Queries {
     {
         return "DELETE FROM categories WHERE category_Id = ?";
     }
+    public static String selectCategorySummaries() {
+        return """
+            SELECT
+                c.category_id,
+                c.name,
+                COUNT(p.product_id) AS product_count,
+                COALESCE(SUM(p.featured), 0) AS featured_count,
+                MIN(p.price) AS min_price,
+                MAX(p.price) AS max_price
+            FROM categories c
+            LEFT JOIN products p ON p.category_id = c.category_id
+            GROUP BY c.category_id, c.name
+            ORDER BY c.category_id
+            """;
+    }
 
     /**
      * Product query statements
      */
-    public static String selectProductsByFilter() {
-        return """
-          SELECT * FROM products
-          WHERE (category_id = ? OR ? = -1)
-          AND (price >= ? OR ? = -1)
-          AND (price <= ? OR ? = -1)
-          AND (color = ? OR ? = '');
-          """;
-    }
-    public static String selectProductsByCatId()
+    public static String selectProducts()
     {
-        return "SELECT * FROM products WHERE category_id = ? ";
+        return "SELECT * FROM products ORDER BY product_id";
+    }
+    public static String selectProductsByFilter(int categoryCount,
+                                                int colorCount,
+                                                boolean hasMinPrice,
+                                                boolean hasMaxPrice,
+                                                ProductSort sort,
+                                                boolean hasCursor,
+                                                boolean hasLimit) {
+        StringBuilder sql = new StringBuilder("SELECT * FROM products");
+        appendFilter(sql, categoryCount, colorCount, hasMinPrice, hasMaxPrice);
+        if (hasCursor) {
+            sql.append(" AND ").append(keysetPredicate(sort));
+        }
+        sql.append(" ORDER BY ").append(orderBy(sort));
+        if (hasLimit) {
+            sql.append(" LIMIT ?");
+        }
+        return sql.toString();
+    }
+
+    public static String selectProductFacetsByFilter(int categoryCount,
+                                                     int colorCount,
+                                                     boolean hasMinPrice,
+                                                     boolean hasMaxPrice) {
+        StringBuilder sql = new StringBuilder("SELECT category_id, color, price FROM products");
+        appendFilter(sql, categoryCount, colorCount, hasMinPrice, hasMaxPrice);
+        return sql.toString();
+    }
+    private static void appendFilter(StringBuilder sql,
+                                     int categoryCount,
+                                     int colorCount,
+                                     boolean hasMinPrice,
+                                     boolean hasMaxPrice) {
+        // only the filters that are present become predicates, so MySQL can use its indexes
+        sql.append(" WHERE 1 = 1");
+        if (categoryCount > 0) {
+            sql.append(" AND category_id IN (").append(placeholders(categoryCount)).append(")");
+        }
+        if (hasMinPrice) {
+            sql.append(" AND price >= ?");
+        }
+        if (hasMaxPrice) {
+            sql.append(" AND price <= ?");
+        }
+        if (colorCount > 0) {
+            sql.append(" AND color IN (").append(placeholders(colorCount)).append(")");
+        }
+    }
+
+    /**
+     * Rows strictly after the cursor in the given order.
+     * Parameters: the sort key twice (except for product_id order), then the product ID.
+     */
+    public static String keysetPredicate(ProductSort sort) {
+        switch (sort) {
+            case PRICE_ASC:
+                return "(price > ? OR (price = ? AND product_id > ?))";
+            case PRICE_DESC:
+                return "(price < ? OR (price = ? AND product_id < ?))";
+            case NAME:
+                return "(name > ? OR (name = ? AND product_id > ?))";
+            default:
+                return "product_id > ?";
+        }
+    }
+    public static String orderBy(ProductSort sort) {
+        switch (sort) {
+            case PRICE_ASC:
+                return "price, product_id";
+            case PRICE_DESC:
+                return "price DESC, product_id DESC";
+            case NAME:
+                return "name, product_id";
+            default:
+                return "product_id";
+        }
     }
     public static String selectProductByProdId()
     {
         return "SELECT * FROM products WHERE product_id = ?";
     }
+    public static String selectProductsByIds(int count)
+    {
+        return "SELECT * FROM products WHERE product_id IN (" + placeholders(count) + ")";
+    }
     public static String insertProduct() {
         return """
           INSERT INTO 
@@ -73,6 +163,31 @@ public class Queries {
                (?, ?, ?, ?, ?, ?, ?, ?);
           """;
     }
+    // no trailing semicolon, so rewriteBatchedStatements can fold a batch into one multi-row INSERT
+    public static String insertProductBatch() {
+        return "INSERT INTO products(name, price, category_id, description, color, image_url, stock, featured) "
+               + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+    public static String selectProductKeys()
+    {
+        return "SELECT name, category_id FROM products";
+    }
+    public static String selectProductPricesAndStock()
+    {
+        return "SELECT product_id, price, stock FROM products";
+    }
+    public static String updateProductPriceAndStock()
+    {
+        return "UPDATE products SET price = ?, stock = ? WHERE product_id = ?";
+    }
+    public static String updateProductImageUrl()
+    {
+        return "UPDATE products SET image_url = ? WHERE product_id = ?";
+    }
+    public static String selectCategoryIds()
+    {
+        return "SELECT category_id FROM categories";
+    }
     public static String updateProductByProdId() {
          return """
             UPDATE products
@@ -119,12 +234,6 @@ public class Queries {
                 shopping_cart.user_id = ?;
             """;
     }
-    public static String selectQuantity() {
-        return """
-                SELECT quantity FROM shopping_cart 
-                WHERE user_id = ? AND product_id = ?
-                """;
-    }
     public static String updateShoppingCart() {
         return """
                 UPDATE shopping_cart 
@@ -132,13 +241,40 @@ public class Queries {
                 WHERE user_id = ? AND product_id = ?
                 """;
     }
-    public static String insertShoppingCart(){
-        return "INSERT INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?)";
-    }
     public static String dropShoppingCart()
     {
         return "DELETE FROM shopping_cart WHERE user_id = ?";
     }
+    // LAST_INSERT_ID(expr) hands the updated quantity back in the OK packet, as the generated key
+    public static String upsertAddCartItem() {
+        return """
+                INSERT INTO shopping_cart (user_id, product_id, quantity)
+                VALUES (?, ?, ?)
+                ON DUPLICATE KEY UPDATE quantity = LAST_INSERT_ID(quantity + VALUES(quantity))
+                """;
+    }
+    public static String upsertSetCartItem() {
+        return """
+                INSERT INTO shopping_cart (user_id, product_id, quantity)
+                VALUES (?, ?, ?)
+                ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)
+                """;
+    }
+    public static String dropShoppingCartItem()
+    {
+        return "DELETE FROM shopping_cart WHERE user_id = ? AND product_id = ?";
+    }
+    // IGNORE skips lines of products deleted since they were put in a cart instead of failing the batch
+    public static String insertShoppingCartLines() {
+        return "INSERT IGNORE INTO shopping_cart (user_id, product_id, quantity) VALUES (?, ?, ?)";
+    }
+    // no LAST_INSERT_ID and no trailing semicolon, so rewriteBatchedStatements can fold a batch into one INSERT
+    public static String upsertAddCartItems() {
+        return """
+                INSERT INTO shopping_cart (user_id, product_id, quantity)
+                VALUES (?, ?, ?)
+                ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity)""";
+    }
 
     /**
      * Profile query statements
@@ -208,6 +344,35 @@ public class Queries {
                 VALUES (?, ?, ?, ?, ?);
                 """;
     }
+    public static String selectOrderBaskets(){
+        return """
+                SELECT order_id, product_id
+                FROM order_line_items
+                ORDER BY order_id
+                """;
+    }
+    public static String selectUnitsSoldByProduct(){
+        return """
+                SELECT product_id, SUM(quantity) AS units
+                FROM order_line_items
+                GROUP BY product_id
+                """;
+    }
+
+    /**
+     * Product view query statements
+     */
+    public static String selectProductViews(){
+        return "SELECT product_id, views FROM product_views";
+    }
+    public static String upsertProductViews(){
+        return """
+                INSERT IGNORE INTO
+                    product_views (product_id, views)
+                VALUES (?, ?)
+                ON DUPLICATE KEY UPDATE views = views + VALUES(views)
+                """;
+    }
 
     /**
      * User query statements
@@ -229,4 +394,12 @@ public class Queries {
     public static String selectUsersByName(){
         return "SELECT * FROM users WHERE username = ?";
     }
+
+    /**
+     * Builds a comma separated list of JDBC placeholders, e.g. "?, ?, ?".
+     */
+    public static String placeholders(int count)
+    {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
 }
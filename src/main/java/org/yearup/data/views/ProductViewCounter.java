@@ -0,0 +1,175 @@
+package org.yearup.data.views;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yearup.data.events.ProductChangedEvent;
+import org.yearup.data.interfaces.ProductViewDao;
+import org.yearup.models.ProductViews;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts product page views in memory and writes them to product_views in batches.
+ * A view is one LongAdder increment, so concurrent requests for a popular product do not contend
+ * on a row lock or on each other; every products.views.flush-ms the views counted since the last
+ * flush are added to the stored totals with one batched upsert, and once more on shutdown.
+ * Views counted after the last successful flush are lost if the process dies, which view counts tolerate.
+ */
+@Component
+public class ProductViewCounter
+{
+    private static final Logger logger = LoggerFactory.getLogger(ProductViewCounter.class);
+
+    private final ProductViewDao productViewDao;
+
+    // product_id -> counter; entries are only added or removed, never replaced
+    private final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+
+    private static final class Counter
+    {
+        // the total stored when the application started
+        private volatile long stored;
+        // views since the application started
+        private final LongAdder counted = new LongAdder();
+        // the part of counted that has been written; only touched by the synchronized flush
+        private long flushed;
+
+        private long views()
+        {
+            return stored + counted.sum();
+        }
+    }
+
+    @Autowired
+    public ProductViewCounter(ProductViewDao productViewDao)
+    {
+        this.productViewDao = productViewDao;
+    }
+
+    /**
+     * Loads the stored totals, so rankings include the views of earlier runs.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load()
+    {
+        try
+        {
+            productViewDao.getViews().forEach((productId, views) -> counter(productId).stored = views);
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Error loading product views, counting from zero", e);
+        }
+    }
+
+    /**
+     * Counts a view of a product the caller has just read, so it is known to exist.
+     * @param productId The ID of the viewed product.
+     */
+    public void viewed(int productId)
+    {
+        counter(productId).counted.increment();
+    }
+
+    /**
+     * Counts a view of a product the caller did not read, as for a 304, only if the product already has a counter.
+     * Counters exist only for products with stored views or a counted read, and go away with the product,
+     * so an ID that never existed or was deleted gets no counter.
+     * @param productId The ID of the viewed product.
+     */
+    public void revisited(int productId)
+    {
+        Counter counter = counters.get(productId);
+        if (counter != null)
+        {
+            counter.counted.increment();
+        }
+    }
+
+    /**
+     * @param productId A product ID.
+     * @return the stored views of the product plus the views not written yet.
+     */
+    public long views(int productId)
+    {
+        Counter counter = counters.get(productId);
+        return counter == null ? 0 : counter.views();
+    }
+
+    /**
+     * @param limit The maximum number of products.
+     * @return the most viewed products, most views first, ties by product ID.
+     */
+    public List<ProductViews> mostViewed(int limit)
+    {
+        PriorityQueue<ProductViews> top = new PriorityQueue<>(Comparator.comparingLong(ProductViews::getViews)
+                                                                        .thenComparing(ProductViews::getProductId, Comparator.reverseOrder()));
+        counters.forEach((productId, counter) -> {
+            top.add(new ProductViews(productId, counter.views()));
+            if (top.size() > limit)
+            {
+                top.poll();
+            }
+        });
+        List<ProductViews> result = new ArrayList<>(top);
+        result.sort(top.comparator().reversed());
+        return result;
+    }
+
+    /**
+     * Adds the views counted since the last flush to the stored totals.
+     * If the write fails the views stay pending and are retried with the next flush.
+     */
+    @Scheduled(fixedDelayString = "${products.views.flush-ms:5000}", initialDelayString = "${products.views.flush-ms:5000}")
+    @PreDestroy
+    public synchronized void flush()
+    {
+        Map<Integer, Long> deltas = new HashMap<>();
+        Map<Counter, Long> sums = new HashMap<>();
+        counters.forEach((productId, counter) -> {
+            // increments after this read are simply left for the next flush
+            long sum = counter.counted.sum();
+            if (sum > counter.flushed)
+            {
+                deltas.put(productId, sum - counter.flushed);
+                sums.put(counter, sum);
+            }
+        });
+        if (deltas.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            productViewDao.addViews(deltas);
+            sums.forEach((counter, sum) -> counter.flushed = sum);
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Error writing {} product view counts, retrying with the next flush", deltas.size(), e);
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event)
+    {
+        // product_views rows cascade with the product, and the upsert skips IDs without a product
+        if (event.isDeleted())
+        {
+            counters.remove(event.getProductId());
+        }
+    }
+
+    private Counter counter(int productId)
+    {
+        return counters.computeIfAbsent(productId, k -> new Counter());
+    }
+}
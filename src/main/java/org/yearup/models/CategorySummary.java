@@ -0,0 +1,92 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+
+public class CategorySummary
+{
+    /**
+     * A category with the numbers a navigation menu shows next to it.
+     * The prices are null when the category has no products.
+     */
+    private int categoryId;
+    private String name;
+    private int productCount;
+    private int featuredCount;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    public CategorySummary()
+    {
+    }
+
+    public CategorySummary(int categoryId, String name, int productCount, int featuredCount,
+                           BigDecimal minPrice, BigDecimal maxPrice)
+    {
+        this.categoryId = categoryId;
+        this.name = name;
+        this.productCount = productCount;
+        this.featuredCount = featuredCount;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public int getCategoryId()
+    {
+        return categoryId;
+    }
+
+    public void setCategoryId(int categoryId)
+    {
+        this.categoryId = categoryId;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public int getProductCount()
+    {
+        return productCount;
+    }
+
+    public void setProductCount(int productCount)
+    {
+        this.productCount = productCount;
+    }
+
+    public int getFeaturedCount()
+    {
+        return featuredCount;
+    }
+
+    public void setFeaturedCount(int featuredCount)
+    {
+        this.featuredCount = featuredCount;
+    }
+
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice)
+    {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice)
+    {
+        this.maxPrice = maxPrice;
+    }
+}
@@ -0,0 +1,117 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImportReport
+{
+    /**
+     * Outcome of a bulk import: how many rows were read, inserted, skipped as duplicates or rejected,
+     * and why the first {@value #MAX_ERRORS} rejected rows failed.
+     */
+    public static final int MAX_ERRORS = 1000;
+
+    private int rows;
+    private int inserted;
+    private int duplicates;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>();
+
+    public static class RowError
+    {
+        private int line;
+        private String message;
+
+        public RowError()
+        {
+        }
+
+        public RowError(int line, String message)
+        {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine()
+        {
+            return line;
+        }
+
+        public void setLine(int line)
+        {
+            this.line = line;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        public void setMessage(String message)
+        {
+            this.message = message;
+        }
+    }
+
+    /**
+     * Counts a rejected row; the message is only kept for the first {@value #MAX_ERRORS} of them.
+     */
+    public void fail(int line, String message)
+    {
+        failed++;
+        if (errors.size() < MAX_ERRORS)
+        {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    public void setRows(int rows)
+    {
+        this.rows = rows;
+    }
+
+    public int getInserted()
+    {
+        return inserted;
+    }
+
+    public void setInserted(int inserted)
+    {
+        this.inserted = inserted;
+    }
+
+    public int getDuplicates()
+    {
+        return duplicates;
+    }
+
+    public void setDuplicates(int duplicates)
+    {
+        this.duplicates = duplicates;
+    }
+
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed(int failed)
+    {
+        this.failed = failed;
+    }
+
+    public List<RowError> getErrors()
+    {
+        return errors;
+    }
+
+    public void setErrors(List<RowError> errors)
+    {
+        this.errors = errors;
+    }
+}
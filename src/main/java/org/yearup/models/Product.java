@@ -35,6 +35,12 @@ public class Product
         this.imageUrl = imageUrl;
     }
 
+    public Product(Product other)
+    {
+        this(other.productId, other.name, other.price, other.categoryId, other.description,
+             other.color, other.stock, other.isFeatured, other.imageUrl);
+    }
+
     public int getProductId()
     {
         return productId;
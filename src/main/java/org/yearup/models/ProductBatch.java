@@ -0,0 +1,44 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductBatch
+{
+    /**
+     * The products found for a list of IDs, in the order the IDs were asked for,
+     * together with the IDs that matched no product.
+     */
+    private List<Product> products = new ArrayList<>();
+    private List<Integer> missingIds = new ArrayList<>();
+
+    public ProductBatch()
+    {
+    }
+
+    public ProductBatch(List<Product> products, List<Integer> missingIds)
+    {
+        this.products = products;
+        this.missingIds = missingIds;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public List<Integer> getMissingIds()
+    {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Integer> missingIds)
+    {
+        this.missingIds = missingIds;
+    }
+}
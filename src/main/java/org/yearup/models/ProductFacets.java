@@ -0,0 +1,108 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ProductFacets
+{
+    /**
+     * Upper bounds of the price buckets; the last bucket is open ended.
+     */
+    private static final BigDecimal[] PRICE_BOUNDS = {
+            new BigDecimal("25"), new BigDecimal("50"), new BigDecimal("100"),
+            new BigDecimal("250"), new BigDecimal("500"), new BigDecimal("1000")
+    };
+
+    /**
+     * Number of matching products per color, per category ID and per price bucket.
+     */
+    private Map<String, Integer> colors = new TreeMap<>();
+    private Map<Integer, Integer> categories = new TreeMap<>();
+    private List<PriceBucket> prices = new ArrayList<>();
+
+    public ProductFacets()
+    {
+        BigDecimal min = BigDecimal.ZERO;
+        for (BigDecimal max : PRICE_BOUNDS)
+        {
+            prices.add(new PriceBucket(min, max));
+            min = max;
+        }
+        prices.add(new PriceBucket(min, null));
+    }
+
+    /**
+     * Counts one matching product in every facet.
+     * @param categoryId The product's category ID.
+     * @param color      The product's color, may be null.
+     * @param price      The product's price.
+     */
+    public void add(int categoryId, String color, BigDecimal price)
+    {
+        categories.merge(categoryId, 1, Integer::sum);
+        if (color != null)
+        {
+            colors.merge(color, 1, Integer::sum);
+        }
+        int bucket = 0;
+        while (bucket < PRICE_BOUNDS.length && price != null && price.compareTo(PRICE_BOUNDS[bucket]) >= 0)
+        {
+            bucket++;
+        }
+        prices.get(bucket).count++;
+    }
+
+    public void add(Product product)
+    {
+        add(product.getCategoryId(), product.getColor(), product.getPrice());
+    }
+
+    public Map<String, Integer> getColors()
+    {
+        return colors;
+    }
+
+    public Map<Integer, Integer> getCategories()
+    {
+        return categories;
+    }
+
+    public List<PriceBucket> getPrices()
+    {
+        return prices;
+    }
+
+    /**
+     * A price range from min (inclusive) to max (exclusive, null when open ended).
+     */
+    public static class PriceBucket
+    {
+        private final BigDecimal min;
+        private final BigDecimal max;
+        private int count;
+
+        public PriceBucket(BigDecimal min, BigDecimal max)
+        {
+            this.min = min;
+            this.max = max;
+        }
+
+        public BigDecimal getMin()
+        {
+            return min;
+        }
+
+        public BigDecimal getMax()
+        {
+            return max;
+        }
+
+        public int getCount()
+        {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package org.yearup.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductFilter
+{
+    /**
+     * Search criteria for products. Empty lists and null prices mean "no filter".
+     * Multiple categories or colors are OR-ed together, the groups are AND-ed.
+     */
+    private List<Integer> categoryIds = new ArrayList<>();
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private List<String> colors = new ArrayList<>();
+
+    public ProductFilter()
+    {
+    }
+
+    public ProductFilter(List<Integer> categoryIds, BigDecimal minPrice, BigDecimal maxPrice, List<String> colors)
+    {
+        setCategoryIds(categoryIds);
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        setColors(colors);
+    }
+
+    public List<Integer> getCategoryIds()
+    {
+        return categoryIds;
+    }
+
+    public void setCategoryIds(List<Integer> categoryIds)
+    {
+        this.categoryIds = categoryIds == null ? new ArrayList<>() : new ArrayList<>(categoryIds);
+    }
+
+    public BigDecimal getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public void setMinPrice(BigDecimal minPrice)
+    {
+        this.minPrice = minPrice;
+    }
+
+    public BigDecimal getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(BigDecimal maxPrice)
+    {
+        this.maxPrice = maxPrice;
+    }
+
+    public List<String> getColors()
+    {
+        return colors;
+    }
+
+    public void setColors(List<String> colors)
+    {
+        this.colors = new ArrayList<>();
+        if (colors != null)
+        {
+            // blank values come from "?color=" and mean no color filter
+            colors.stream()
+                  .filter(c -> c != null && !c.isBlank())
+                  .forEach(this.colors::add);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.yearup.models;
+
+import java.util.List;
+
+public class ProductSearchResult
+{
+    /**
+     * A page of products together with the facet counts of the whole matching set.
+     */
+    private List<Product> products;
+    private ProductFacets facets;
+
+    public ProductSearchResult()
+    {
+    }
+
+    public ProductSearchResult(List<Product> products, ProductFacets facets)
+    {
+        this.products = products;
+        this.facets = facets;
+    }
+
+    public List<Product> getProducts()
+    {
+        return products;
+    }
+
+    public void setProducts(List<Product> products)
+    {
+        this.products = products;
+    }
+
+    public ProductFacets getFacets()
+    {
+        return facets;
+    }
+
+    public void setFacets(ProductFacets facets)
+    {
+        this.facets = facets;
+    }
+}
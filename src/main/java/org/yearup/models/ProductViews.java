@@ -0,0 +1,40 @@
+package org.yearup.models;
+
+public class ProductViews
+{
+    /**
+     * How often a product page was viewed: the stored total plus the views not yet written.
+     */
+    private int productId;
+    private long views;
+
+    public ProductViews()
+    {
+    }
+
+    public ProductViews(int productId, long views)
+    {
+        this.productId = productId;
+        this.views = views;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public long getViews()
+    {
+        return views;
+    }
+
+    public void setViews(long views)
+    {
+        this.views = views;
+    }
+}
@@ -0,0 +1,55 @@
+package org.yearup.models;
+
+public class Suggestion
+{
+    public static final String PRODUCT = "product";
+    public static final String CATEGORY = "category";
+
+    /**
+     * A typeahead completion: the product or category name and what it refers to.
+     */
+    private String text;
+    private String type;
+    private int id;
+
+    public Suggestion()
+    {
+    }
+
+    public Suggestion(String text, String type, int id)
+    {
+        this.text = text;
+        this.type = type;
+        this.id = id;
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    public void setText(String text)
+    {
+        this.text = text;
+    }
+
+    public String getType()
+    {
+        return type;
+    }
+
+    public void setType(String type)
+    {
+        this.type = type;
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public void setId(int id)
+    {
+        this.id = id;
+    }
+}
@@ -0,0 +1,90 @@
+package org.yearup.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SyncReport
+{
+    /**
+     * Outcome of a supplier price and stock sync: how many feed rows changed a product, matched it
+     * already, named no known product or could not be read.
+     */
+    private int rows;
+    private int changed;
+    private int unchanged;
+    private int unknown;
+    private int failed;
+    private List<ImportReport.RowError> errors = new ArrayList<>();
+
+    /**
+     * Counts an unreadable row; the message is only kept for the first {@value ImportReport#MAX_ERRORS} of them.
+     */
+    public void fail(int line, String message)
+    {
+        failed++;
+        if (errors.size() < ImportReport.MAX_ERRORS)
+        {
+            errors.add(new ImportReport.RowError(line, message));
+        }
+    }
+
+    public int getRows()
+    {
+        return rows;
+    }
+
+    public void setRows(int rows)
+    {
+        this.rows = rows;
+    }
+
+    public int getChanged()
+    {
+        return changed;
+    }
+
+    public void setChanged(int changed)
+    {
+        this.changed = changed;
+    }
+
+    public int getUnchanged()
+    {
+        return unchanged;
+    }
+
+    public void setUnchanged(int unchanged)
+    {
+        this.unchanged = unchanged;
+    }
+
+    public int getUnknown()
+    {
+        return unknown;
+    }
+
+    public void setUnknown(int unknown)
+    {
+        this.unknown = unknown;
+    }
+
+    public int getFailed()
+    {
+        return failed;
+    }
+
+    public void setFailed(int failed)
+    {
+        this.failed = failed;
+    }
+
+    public List<ImportReport.RowError> getErrors()
+    {
+        return errors;
+    }
+
+    public void setErrors(List<ImportReport.RowError> errors)
+    {
+        this.errors = errors;
+    }
+}
@@ -0,0 +1,41 @@
+package org.yearup.models.cart;
+
+public class CartItemChange
+{
+    /**
+     * One product/quantity pair of a batch cart request.
+     * Whether the quantity is added or set depends on the request.
+     */
+    private int productId;
+    private int quantity;
+
+    public CartItemChange()
+    {
+    }
+
+    public CartItemChange(int productId, int quantity)
+    {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public void setProductId(int productId)
+    {
+        this.productId = productId;
+    }
+
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity)
+    {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,67 @@
+package org.yearup.models.paging;
+
+/**
+ * Sort order, page size and keyset cursor of a product listing request.
+ */
+public class PageRequest
+{
+    public static final int MAX_LIMIT = 500;
+
+    private final ProductSort sort;
+    private final Integer limit;
+    private final ProductCursor after;
+
+    public PageRequest(ProductSort sort, Integer limit, ProductCursor after)
+    {
+        this.sort = sort;
+        this.limit = limit;
+        this.after = after;
+    }
+
+    /**
+     * @return a request for every matching product in product_id order.
+     */
+    public static PageRequest unpaged()
+    {
+        return new PageRequest(ProductSort.PRODUCT_ID, null, null);
+    }
+
+    /**
+     * Builds a page request from the raw request parameters.
+     *
+     * @param sort  The "sort" parameter, or null for product_id order.
+     * @param limit The "limit" parameter, or null to return every match.
+     * @param after The "after" cursor from the previous page, or null for the first page.
+     * @throws IllegalArgumentException if any parameter is invalid.
+     */
+    public static PageRequest of(String sort, Integer limit, String after)
+    {
+        ProductSort productSort = ProductSort.fromParam(sort);
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT))
+        {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        ProductCursor cursor = after == null || after.isBlank() ? null : ProductCursor.decode(after, productSort);
+        return new PageRequest(productSort, limit, cursor);
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public Integer getLimit()
+    {
+        return limit;
+    }
+
+    public ProductCursor getAfter()
+    {
+        return after;
+    }
+
+    public boolean isPaged()
+    {
+        return limit != null;
+    }
+}
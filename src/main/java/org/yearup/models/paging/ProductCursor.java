@@ -0,0 +1,113 @@
+package org.yearup.models.paging;
+
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position of the last product on a page: its sort key and product ID.
+ * Clients only ever see the encoded form, which they pass back as "after".
+ */
+public class ProductCursor
+{
+    private final ProductSort sort;
+    private final int productId;
+    private final BigDecimal price;
+    private final String name;
+
+    public ProductCursor(ProductSort sort, int productId, BigDecimal price, String name)
+    {
+        this.sort = sort;
+        this.productId = productId;
+        this.price = price;
+        this.name = name;
+    }
+
+    /**
+     * @return the cursor that continues a listing after the given product.
+     */
+    public static ProductCursor after(Product product, ProductSort sort)
+    {
+        return new ProductCursor(sort, product.getProductId(), product.getPrice(), product.getName());
+    }
+
+    public ProductSort getSort()
+    {
+        return sort;
+    }
+
+    public int getProductId()
+    {
+        return productId;
+    }
+
+    public BigDecimal getPrice()
+    {
+        return price;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return the opaque, URL safe form of the cursor.
+     */
+    public String encode()
+    {
+        String key;
+        switch (sort)
+        {
+            case PRICE_ASC:
+            case PRICE_DESC:
+                key = price.toPlainString();
+                break;
+            case NAME:
+                key = name;
+                break;
+            default:
+                key = "";
+        }
+        String raw = sort.getParam() + ":" + productId + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encode()}.
+     *
+     * @param encoded The value of the "after" request parameter.
+     * @param sort    The sort order of the current request, which must match the cursor's.
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another sort order.
+     */
+    public static ProductCursor decode(String encoded, ProductSort sort)
+    {
+        try
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3 || ProductSort.fromParam(parts[0]) != sort)
+            {
+                throw new IllegalArgumentException("Cursor does not belong to sort order " + sort.getParam());
+            }
+            int productId = Integer.parseInt(parts[1]);
+            switch (sort)
+            {
+                case PRICE_ASC:
+                case PRICE_DESC:
+                    return new ProductCursor(sort, productId, new BigDecimal(parts[2]), null);
+                case NAME:
+                    return new ProductCursor(sort, productId, null, parts[2]);
+                default:
+                    return new ProductCursor(sort, productId, null, null);
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            // also covers bad base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor: " + encoded, e);
+        }
+    }
+}
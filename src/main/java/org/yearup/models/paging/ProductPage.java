@@ -0,0 +1,53 @@
+package org.yearup.models.paging;
+
+import org.yearup.models.Product;
+
+import java.util.List;
+
+/**
+ * One page of a product listing and the cursor of the page that follows it.
+ */
+public class ProductPage
+{
+    // response header that carries the next cursor, so the body stays a plain product list
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final List<Product> items;
+    private final String nextCursor;
+
+    public ProductPage(List<Product> items, String nextCursor)
+    {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Trims rows fetched with one extra look-ahead row into a page.
+     *
+     * @param rows The rows in page order, at most limit + 1 of them.
+     * @param page The page request the rows were fetched for.
+     */
+    public static ProductPage of(List<Product> rows, PageRequest page)
+    {
+        if (!page.isPaged() || rows.size() <= page.getLimit())
+        {
+            return new ProductPage(rows, null);
+        }
+        List<Product> items = rows.subList(0, page.getLimit());
+        Product last = items.get(items.size() - 1);
+        return new ProductPage(items, ProductCursor.after(last, page.getSort()).encode());
+    }
+
+    public List<Product> getItems()
+    {
+        return items;
+    }
+
+    /**
+     * @return the cursor to pass as "after" for the next page, or null on the last page.
+     */
+    public String getNextCursor()
+    {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,46 @@
+package org.yearup.models.paging;
+
+import java.util.Arrays;
+
+/**
+ * Stable sort orders for product listings. Every order ends with product_id
+ * so that two products never compare equal and keyset cursors are unambiguous.
+ */
+public enum ProductSort
+{
+    PRODUCT_ID("product_id"),
+    PRICE_ASC("price_asc"),
+    PRICE_DESC("price_desc"),
+    NAME("name");
+
+    private final String param;
+
+    ProductSort(String param)
+    {
+        this.param = param;
+    }
+
+    public String getParam()
+    {
+        return param;
+    }
+
+    /**
+     * Resolves the value of a "sort" request parameter.
+     *
+     * @param param The parameter value, or null for the default product_id order.
+     * @return The matching sort order.
+     * @throws IllegalArgumentException if the value is not a known sort order.
+     */
+    public static ProductSort fromParam(String param)
+    {
+        if (param == null || param.isBlank())
+        {
+            return PRODUCT_ID;
+        }
+        return Arrays.stream(values())
+                     .filter(s -> s.param.equalsIgnoreCase(param.trim()))
+                     .findFirst()
+                     .orElseThrow(() -> new IllegalArgumentException("Unknown sort order: " + param));
+    }
+}
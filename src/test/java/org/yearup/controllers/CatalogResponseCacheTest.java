@@ -0,0 +1,186 @@
+package org.yearup.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.yearup.data.events.CatalogVersion;
+import org.yearup.data.events.ProductChangedEvent;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogResponseCacheTest
+{
+    private CatalogVersion catalogVersion;
+    private CatalogResponseCache cache;
+    private int loads;
+
+    // repetitive enough that gzip always makes it smaller
+    private final Callable<ResponseEntity<?>> loader = () -> {
+        loads++;
+        return ResponseEntity.ok(List.of("headphones", "headphones", "headphones", "headphones", "headphones"));
+    };
+
+    @BeforeEach
+    public void setup()
+    {
+        catalogVersion = new CatalogVersion();
+        cache = new CatalogResponseCache(new ObjectMapper(), catalogVersion, 1 << 20);
+        loads = 0;
+    }
+
+    @Test
+    public void respond_shouldServeTheCachedBytes_untilTheCatalogVersionChanges() throws Exception
+    {
+        // act
+        ResponseEntity<?> first = cache.respond(request(null, null), "products", loader);
+        ResponseEntity<?> second = cache.respond(request(null, null), "products", loader);
+        catalogVersion.onProductChanged(ProductChangedEvent.deleted(1));
+        ResponseEntity<?> changed = cache.respond(request(null, null), "products", loader);
+
+        // assert
+        assertEquals(2, loads);
+        assertSame(first.getBody(), second.getBody());
+        assertEquals("[\"headphones\",\"headphones\",\"headphones\",\"headphones\",\"headphones\"]",
+                     new String((byte[]) second.getBody(), StandardCharsets.UTF_8));
+        assertEquals(List.of(HttpHeaders.ACCEPT_ENCODING), second.getHeaders().getVary());
+        assertEquals(catalogVersion.etag(0), first.getHeaders().getETag());
+        assertEquals(catalogVersion.etag(1), changed.getHeaders().getETag());
+    }
+
+    @Test
+    public void respond_shouldServeGzip_onlyWhenTheClientAcceptsIt() throws Exception
+    {
+        // act
+        ResponseEntity<?> gzip = cache.respond(request("gzip, deflate, br", null), "products", loader);
+        ResponseEntity<?> identity = cache.respond(request("gzip;q=0, *", null), "products", loader);
+
+        // assert
+        assertEquals(1, loads);
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(gzip.getHeaders().getETag().endsWith("-gzip\""));
+        assertArrayEquals((byte[]) identity.getBody(),
+                          new GZIPInputStream(new ByteArrayInputStream((byte[]) gzip.getBody())).readAllBytes());
+        assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(catalogVersion.etag(0), identity.getHeaders().getETag());
+    }
+
+    @Test
+    public void acceptsGzip_shouldFollowQValues_andLetGzipOverrideTheWildcard()
+    {
+        // act / assert
+        assertTrue(CatalogResponseCache.acceptsGzip("gzip"));
+        assertTrue(CatalogResponseCache.acceptsGzip("deflate, GZIP;q=0.8"));
+        assertTrue(CatalogResponseCache.acceptsGzip("*"));
+        assertFalse(CatalogResponseCache.acceptsGzip(null));
+        assertFalse(CatalogResponseCache.acceptsGzip("identity"));
+        assertFalse(CatalogResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(CatalogResponseCache.acceptsGzip("*;q=0"));
+        assertFalse(CatalogResponseCache.acceptsGzip("gzip;q=0, *"));
+        assertTrue(CatalogResponseCache.acceptsGzip("gzip;q=0.5, *;q=0"));
+    }
+
+    @Test
+    public void respond_shouldAnswer304_forTheTagOfTheAcceptedEncoding() throws Exception
+    {
+        // arrange
+        String gzipTag = cache.respond(request("gzip", null), "products", loader).getHeaders().getETag();
+
+        // act
+        MockHttpServletResponse notModified = new MockHttpServletResponse();
+        ResponseEntity<?> cached = cache.respond(request("gzip", gzipTag, notModified), "products", loader);
+        ResponseEntity<?> otherEncoding = cache.respond(request(null, gzipTag), "products", loader);
+
+        // assert
+        assertNull(cached);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getStatus());
+        assertNotNull(otherEncoding, "The gzip tag does not match the identity body.");
+        assertEquals(HttpStatus.OK, otherEncoding.getStatusCode());
+    }
+
+    @Test
+    public void respond_shouldPassThroughErrors_withoutCachingThem() throws Exception
+    {
+        // act
+        ResponseEntity<?> missing = cache.respond(request(null, null), "products|42", () -> {
+            loads++;
+            return ResponseEntity.notFound().build();
+        });
+        cache.respond(request(null, null), "products|42", loader);
+
+        // assert
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void respond_shouldEvictTheLeastRecentlyUsed_onceTheByteBudgetIsFull() throws Exception
+    {
+        // arrange: a budget that holds sixteen of these responses
+        cache.respond(request(null, null), "size", loader);
+        long size = cache.bytes();
+        cache = new CatalogResponseCache(new ObjectMapper(), catalogVersion, 16 * size);
+        for (int i = 0; i < 16; i++)
+        {
+            cache.respond(request(null, null), "products|" + i, loader);
+        }
+        cache.respond(request(null, null), "products|0", loader);
+        loads = 0;
+
+        // act
+        cache.respond(request(null, null), "products|16", loader);
+        cache.respond(request(null, null), "products|0", loader);
+        cache.respond(request(null, null), "products|1", loader);
+
+        // assert
+        assertEquals(2, loads, "Only products|1, the least recently used, was evicted.");
+        assertEquals(16 * size, cache.bytes());
+    }
+
+    @Test
+    public void respond_shouldNotCache_aResponseBiggerThanItsShareOfTheBudget() throws Exception
+    {
+        // arrange
+        cache.respond(request(null, null), "size", loader);
+        cache = new CatalogResponseCache(new ObjectMapper(), catalogVersion, 16 * cache.bytes() - 1);
+
+        // act
+        ResponseEntity<?> first = cache.respond(request(null, null), "products", loader);
+        cache.respond(request(null, null), "products", loader);
+
+        // assert
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(3, loads);
+        assertEquals(0, cache.bytes());
+    }
+
+    private static ServletWebRequest request(String acceptEncoding, String ifNoneMatch)
+    {
+        return request(acceptEncoding, ifNoneMatch, new MockHttpServletResponse());
+    }
+
+    private static ServletWebRequest request(String acceptEncoding, String ifNoneMatch, MockHttpServletResponse response)
+    {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/products");
+        if (acceptEncoding != null)
+        {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        if (ifNoneMatch != null)
+        {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+}
@@ -0,0 +1,133 @@
+package org.yearup.controllers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.yearup.data.images.ImageStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImagesControllerTest
+{
+    @TempDir
+    Path root;
+
+    private ImagesController controller;
+    private String etag;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        Files.writeString(root.resolve("phone.png"), "0123456789");
+        ImageStore store = new ImageStore(root.toString());
+        controller = new ImagesController(store, null);
+        etag = "\"" + store.sha256(root.resolve("phone.png")) + "\"";
+    }
+
+    @Test
+    public void getImage_shouldServeTheWholeImage_withoutARange() throws Exception
+    {
+        // act
+        MockHttpServletResponse response = get(new MockHttpServletRequest());
+
+        // assert
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(etag, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("image/png", response.getContentType());
+    }
+
+    @Test
+    public void getImage_shouldServeASingleRange() throws Exception
+    {
+        // arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        // act
+        MockHttpServletResponse response = get(request);
+
+        // assert
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+    }
+
+    @Test
+    public void getImage_shouldServeTheLastBytes_forASuffixRange() throws Exception
+    {
+        // arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=-3");
+
+        // act
+        MockHttpServletResponse response = get(request);
+
+        // assert
+        assertEquals(206, response.getStatus());
+        assertEquals("789", response.getContentAsString());
+        assertEquals("bytes 7-9/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    public void getImage_shouldAnswer416_whenTheRangeStartsPastTheEnd() throws Exception
+    {
+        // arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-20");
+
+        // act
+        MockHttpServletResponse response = get(request);
+
+        // assert
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    public void getImage_shouldAnswer304_whenIfNoneMatchHasTheETag() throws Exception
+    {
+        // arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag);
+
+        // act
+        MockHttpServletResponse response = get(request);
+
+        // assert
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void getImage_shouldServeTheWholeImage_whenIfRangeDoesNotMatch() throws Exception
+    {
+        // arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"stale\"");
+
+        // act
+        MockHttpServletResponse response = get(request);
+
+        // assert
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws Exception
+    {
+        request.setMethod("GET");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImage("phone.png", request, response);
+        return response;
+    }
+}
@@ -0,0 +1,68 @@
+package org.yearup.data;
+
+import org.yearup.models.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds products for unit tests; every field a test does not set keeps a plain default.
+ */
+public final class TestProducts
+{
+    private final Product product;
+
+    private TestProducts(int id)
+    {
+        product = new Product(id, "Product " + id, new BigDecimal("10.00"), 1, "", "", 10, false, "");
+    }
+
+    /**
+     * @param id The product ID.
+     * @return a builder of "Product {id}" in category 1 at 10.00 with a stock of 10, not featured.
+     */
+    public static TestProducts product(int id)
+    {
+        return new TestProducts(id);
+    }
+
+    public TestProducts name(String name)
+    {
+        product.setName(name);
+        return this;
+    }
+
+    public TestProducts price(String price)
+    {
+        product.setPrice(new BigDecimal(price));
+        return this;
+    }
+
+    public TestProducts category(int categoryId)
+    {
+        product.setCategoryId(categoryId);
+        return this;
+    }
+
+    public TestProducts description(String description)
+    {
+        product.setDescription(description);
+        return this;
+    }
+
+    public TestProducts color(String color)
+    {
+        product.setColor(color);
+        return this;
+    }
+
+    public TestProducts featured(boolean featured)
+    {
+        product.setFeatured(featured);
+        return this;
+    }
+
+    public Product build()
+    {
+        return new Product(product);
+    }
+}
@@ -0,0 +1,311 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.events.CategoryChangedEvent;
+import org.yearup.data.interfaces.CategoryDao;
+import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
+
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingCategoryDaoTest
+{
+    private static final long REFRESH_MS = 1000;
+
+    private Table table;
+    private AtomicLong now;
+    private Pending refresher;
+    private CachingCategoryDao dao;
+
+    @BeforeEach
+    public void setup()
+    {
+        table = new Table();
+        table.rows.put(1, new Category(1, "Electronics", "Gadgets"));
+        table.rows.put(2, new Category(2, "Fashion", "Clothing"));
+        now = new AtomicLong();
+        refresher = new Pending();
+        dao = new CachingCategoryDao(table, REFRESH_MS, now::get, refresher);
+        table.events = dao::onCategoryChanged;
+    }
+
+    @Test
+    public void reads_shouldBeAnsweredFromOneLoad()
+    {
+        // act
+        List<Category> all = dao.getAllCategories();
+        Category byId = dao.getById(2);
+        Category byName = dao.getByName("ELECTRONICS");
+
+        // assert
+        assertEquals(1, table.reads);
+        assertEquals(List.of(1, 2), all.stream().map(Category::getCategoryId).toList());
+        assertEquals("Fashion", byId.getName());
+        assertEquals(1, byName.getCategoryId());
+        assertTrue(dao.categoryExist("fashion"));
+        assertNull(dao.getById(3));
+    }
+
+    @Test
+    public void writes_shouldBeVisibleImmediately_withoutAReload()
+    {
+        // arrange
+        dao.getAllCategories();
+
+        // act
+        Category created = dao.create(new Category(0, "Garden", "Outdoor"));
+        dao.update(1, new Category(1, "Devices", "Gadgets"));
+        dao.delete(2);
+
+        // assert
+        assertEquals(1, table.reads);
+        assertEquals("Garden", dao.getById(created.getCategoryId()).getName());
+        assertNull(dao.getByName("Electronics"));
+        assertEquals(1, dao.getByName("devices").getCategoryId());
+        assertFalse(dao.categoryExist("Fashion"));
+    }
+
+    @Test
+    public void changeEvent_shouldSwapTheSnapshot_beforeTheWriteReturns()
+    {
+        // arrange: a later listener reads the categories when it sees the event
+        dao.getAllCategories();
+        List<String> seen = new ArrayList<>();
+        Consumer<CategoryChangedEvent> caching = table.events;
+        table.events = event -> {
+            caching.accept(event);
+            seen.add(dao.getById(event.getCategoryId()).getName());
+        };
+
+        // act
+        dao.update(1, new Category(1, "Devices", "Gadgets"));
+
+        // assert
+        assertEquals(List.of("Devices"), seen);
+    }
+
+    @Test
+    public void staleSnapshot_shouldBeServedWhileItReloadsInTheBackground()
+    {
+        // arrange
+        dao.getAllCategories();
+        table.rows.put(3, new Category(3, "Toys", ""));
+        now.set(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS));
+
+        // act: the read starts one reload and still gets the old snapshot
+        assertNull(dao.getById(3));
+        assertNull(dao.getById(3));
+        assertEquals(1, refresher.tasks.size());
+        refresher.runAll();
+
+        // assert
+        assertEquals(2, table.reads);
+        assertEquals("Toys", dao.getById(3).getName());
+    }
+
+    @Test
+    public void reload_shouldBeDiscardedAndReadAgain_whenAWriteHappenedWhileItRead()
+    {
+        // arrange: the reload reads the table, then a write lands before it installs
+        dao.getAllCategories();
+        table.rows.put(3, new Category(3, "Toys", ""));
+        now.set(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS));
+        table.duringRead = () -> {
+            table.duringRead = null;
+            dao.update(2, new Category(2, "Apparel", "Clothing"));
+        };
+        dao.getById(1);
+
+        // act
+        refresher.runAll();
+
+        // assert: the write is kept and the second read is installed
+        assertEquals(3, table.reads);
+        assertEquals("Apparel", dao.getById(2).getName());
+        assertEquals("Toys", dao.getById(3).getName());
+        assertTrue(refresher.tasks.isEmpty());
+    }
+
+    @Test
+    public void failedReload_shouldBackOff_beforeTheNextAttempt()
+    {
+        // arrange
+        dao.getAllCategories();
+        now.set(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS));
+        table.failing = true;
+        dao.getById(1);
+
+        // act
+        refresher.runAll();
+        dao.getById(1);
+        int queuedRightAway = refresher.tasks.size();
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        dao.getById(1);
+
+        // assert
+        assertEquals(0, queuedRightAway);
+        assertEquals(1, refresher.tasks.size());
+        assertEquals(1, dao.getById(1).getCategoryId(), "The previous snapshot keeps being served.");
+    }
+
+    @Test
+    public void refreshAhead_shouldReload_beforeTheSnapshotExpires()
+    {
+        // arrange
+        dao.getAllCategories();
+
+        // act
+        now.set(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS / 2));
+        dao.refreshAhead();
+        int queuedEarly = refresher.tasks.size();
+        now.set(TimeUnit.MILLISECONDS.toNanos(REFRESH_MS * 3 / 4));
+        dao.refreshAhead();
+
+        // assert
+        assertEquals(0, queuedEarly);
+        assertEquals(1, refresher.tasks.size());
+    }
+
+    @Test
+    public void returnedCategories_shouldNotChangeTheSnapshot()
+    {
+        // act
+        dao.getById(1).setName("Changed");
+        dao.getAllCategories().get(0).setName("Changed");
+
+        // assert
+        assertEquals("Electronics", dao.getById(1).getName());
+    }
+
+    private static final class Table implements CategoryDao
+    {
+        private final Map<Integer, Category> rows = new TreeMap<>();
+        private int reads;
+        private Runnable duringRead;
+        private boolean failing;
+        // stands in for the application events MySqlCategoryDao publishes
+        private Consumer<CategoryChangedEvent> events = event -> {};
+
+        @Override
+        public List<Category> getAllCategories()
+        {
+            reads++;
+            if (failing)
+            {
+                throw new RuntimeException("Connection refused");
+            }
+            List<Category> copy = new ArrayList<>();
+            rows.values().forEach(c -> copy.add(new Category(c.getCategoryId(), c.getName(), c.getDescription())));
+            if (duringRead != null)
+            {
+                duringRead.run();
+            }
+            return copy;
+        }
+
+        @Override
+        public Category getById(int categoryId)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Category getByName(String name)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Category create(Category category)
+        {
+            int id = rows.keySet().stream().max(Integer::compare).orElse(0) + 1;
+            category.setCategoryId(id);
+            rows.put(id, new Category(id, category.getName(), category.getDescription()));
+            events.accept(CategoryChangedEvent.saved(new Category(id, category.getName(), category.getDescription())));
+            return category;
+        }
+
+        @Override
+        public void update(int categoryId, Category category)
+        {
+            rows.put(categoryId, new Category(categoryId, category.getName(), category.getDescription()));
+            events.accept(CategoryChangedEvent.saved(new Category(categoryId, category.getName(), category.getDescription())));
+        }
+
+        @Override
+        public void delete(int categoryId)
+        {
+            rows.remove(categoryId);
+            events.accept(CategoryChangedEvent.deleted(categoryId));
+        }
+
+        @Override
+        public boolean categoryExist(String name)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<CategorySummary> getSummaries()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    // runs submitted reloads only when the test says so
+    private static final class Pending extends AbstractExecutorService
+    {
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+        private void runAll()
+        {
+            Runnable task;
+            while ((task = tasks.poll()) != null)
+            {
+                task.run();
+            }
+        }
+
+        @Override
+        public void execute(Runnable command)
+        {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit)
+        {
+            return true;
+        }
+    }
+}
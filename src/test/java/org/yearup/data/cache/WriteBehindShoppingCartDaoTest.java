@@ -0,0 +1,192 @@
+package org.yearup.data.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import org.yearup.data.events.CartItemAddedEvent;
+import org.yearup.data.index.ProductCatalogIndex;
+import org.yearup.data.mysql.MySqlProductDao;
+import org.yearup.data.mysql.MySqlShoppingCartDao;
+import org.yearup.models.User;
+import org.yearup.models.cart.CartItemChange;
+import org.yearup.models.cart.ShoppingCart;
+import org.yearup.models.cart.ShoppingCartItem;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class WriteBehindShoppingCartDaoTest
+{
+    private static final long IDLE_MS = 1000;
+
+    private final User user = new User(3, "george", "password", "ROLE_USER");
+    private Table table;
+    private AtomicLong now;
+    private List<Object> events;
+    private WriteBehindShoppingCartDao dao;
+
+    @BeforeEach
+    public void setup()
+    {
+        ProductCatalogIndex catalog = new ProductCatalogIndex();
+        catalog.rebuild(List.of(product(8).build(), product(10).build(), product(12).build()));
+        MySqlProductDao productDao = new MySqlProductDao(null, null, catalog);
+
+        table = new Table(productDao);
+        table.rows.put(3, new ArrayList<>(List.of(new CartItemChange(8, 1), new CartItemChange(10, 1))));
+        now = new AtomicLong();
+        events = Collections.synchronizedList(new ArrayList<>());
+        dao = new WriteBehindShoppingCartDao(table, productDao, events::add, IDLE_MS, now::get);
+    }
+
+    @Test
+    public void changes_shouldBeServedFromMemory_andWrittenOncePerFlush()
+    {
+        // act
+        dao.addItem(user, 8, 2);
+        ShoppingCartItem line = dao.setItem(user, 12, 4);
+        dao.removeItem(user, 10);
+        ShoppingCart cart = dao.getByUserId(user);
+
+        // assert: loaded once, nothing written yet
+        assertEquals(1, table.loads);
+        assertEquals(0, table.writes.size());
+        assertEquals(4, line.getQuantity());
+        assertEquals(Set.of(8, 12), cart.getItems().keySet());
+        assertEquals(3, cart.get(8).getQuantity());
+
+        // act
+        dao.flush();
+        dao.flush();
+
+        // assert
+        assertEquals(1, table.writes.size());
+        assertEquals(Map.of(8, 3, 12, 4), table.quantities(3));
+    }
+
+    @Test
+    public void concurrentAdditions_shouldAllCount()
+    {
+        // act
+        IntStream.range(0, 1000).parallel().forEach(i -> dao.addItem(user, 12, 1));
+        dao.flush();
+
+        // assert
+        assertEquals(1000, table.quantities(3).get(12));
+        assertEquals(1000, events.stream().filter(e -> e instanceof CartItemAddedEvent).count());
+    }
+
+    @Test
+    public void getConfirmedCart_shouldWriteTheCartFirst_andDeleteShouldClearItAtOnce()
+    {
+        // arrange
+        dao.addItems(user, List.of(new CartItemChange(12, 2), new CartItemChange(12, 1)));
+
+        // act
+        ShoppingCart cart = dao.getConfirmedCart(user);
+
+        // assert
+        assertEquals(3, cart.get(12).getQuantity());
+        assertEquals(Map.of(8, 1, 10, 1, 12, 3), table.quantities(3));
+
+        // act
+        dao.delete(user);
+
+        // assert
+        assertTrue(table.quantities(3).isEmpty());
+        assertThrows(ResponseStatusException.class, () -> dao.getConfirmedCart(user));
+    }
+
+    @Test
+    public void failedFlush_shouldKeepTheCartChanged_andIdleCartsShouldBeReloaded()
+    {
+        // arrange
+        dao.setItems(user, List.of(new CartItemChange(8, 0), new CartItemChange(10, 5)));
+        table.failing = true;
+
+        // act
+        dao.flush();
+        table.failing = false;
+        dao.flush();
+
+        // assert
+        assertEquals(Map.of(10, 5), table.quantities(3));
+
+        // act: once idle, the cart is dropped and read again on the next use
+        now.set(TimeUnit.MILLISECONDS.toNanos(IDLE_MS));
+        dao.flush();
+        dao.getByUserId(user);
+
+        // assert
+        assertEquals(2, table.loads);
+    }
+
+    @Test
+    public void batchChanges_shouldRejectUnknownProducts_beforeChangingAnything()
+    {
+        // act / assert
+        assertThrows(IllegalArgumentException.class,
+                     () -> dao.addItems(user, List.of(new CartItemChange(8, 1), new CartItemChange(99, 1))));
+        assertNull(dao.addItem(user, 99, 1));
+        assertEquals(1, dao.getByUserId(user).get(8).getQuantity());
+    }
+
+    // the shopping_cart table, without a database
+    private static final class Table extends MySqlShoppingCartDao
+    {
+        private final MySqlProductDao productDao;
+        private final Map<Integer, List<CartItemChange>> rows = new HashMap<>();
+        private final List<Map<Integer, List<CartItemChange>>> writes = new ArrayList<>();
+        private int loads;
+        private boolean failing;
+
+        private Table(MySqlProductDao productDao)
+        {
+            super(null);
+            this.productDao = productDao;
+        }
+
+        private Map<Integer, Integer> quantities(int userId)
+        {
+            Map<Integer, Integer> quantities = new HashMap<>();
+            rows.getOrDefault(userId, List.of()).forEach(line -> quantities.put(line.getProductId(), line.getQuantity()));
+            return quantities;
+        }
+
+        @Override
+        public ShoppingCart getByUserId(User user)
+        {
+            loads++;
+            ShoppingCart cart = new ShoppingCart();
+            for (CartItemChange line : rows.getOrDefault(user.getId(), List.of()))
+            {
+                cart.add(new ShoppingCartItem(productDao.getByIds(List.of(line.getProductId())).getProducts().get(0),
+                                              line.getQuantity(), BigDecimal.ZERO));
+            }
+            return cart;
+        }
+
+        @Override
+        public void delete(User user)
+        {
+            rows.remove(user.getId());
+        }
+
+        @Override
+        public void replaceCarts(Map<Integer, List<CartItemChange>> carts)
+        {
+            if (failing)
+            {
+                throw new RuntimeException("Connection refused");
+            }
+            writes.add(carts);
+            rows.putAll(carts);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.yearup.data.images;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStoreTest
+{
+    @TempDir
+    Path root;
+
+    private ImageStore store;
+
+    @BeforeEach
+    public void setup()
+    {
+        store = new ImageStore(root.toString());
+    }
+
+    @Test
+    public void store_shouldNameImageByContentHash_andKeepIdenticalUploadsOnce() throws Exception
+    {
+        // arrange
+        byte[] laptop = "laptop image bytes".getBytes(StandardCharsets.UTF_8);
+
+        // act
+        String first = store.store(new ByteArrayInputStream(laptop), "laptop.jpg");
+        String second = store.store(new ByteArrayInputStream(laptop), "Laptop-Copy.JPG");
+
+        // assert
+        assertEquals(first, second);
+        assertTrue(ImageStore.isContentAddressed(first));
+        assertEquals(first.substring(0, 64), store.sha256(store.find(first)));
+        try (Stream<Path> files = Files.list(root))
+        {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void store_shouldRejectOtherFileTypes()
+    {
+        assertThrows(IllegalArgumentException.class,
+                     () -> store.store(new ByteArrayInputStream(new byte[1]), "notes.txt"));
+    }
+
+    @Test
+    public void find_shouldRejectNamesOutsideTheDirectory() throws Exception
+    {
+        // arrange
+        Files.writeString(root.resolve("phone.png"), "x");
+
+        // act / assert
+        assertNotNull(store.find("phone.png"));
+        assertNull(store.find("../phone.png"));
+        assertNull(store.find(".hidden"));
+        assertNull(store.find("missing.png"));
+    }
+}
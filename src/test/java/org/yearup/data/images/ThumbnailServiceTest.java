@@ -0,0 +1,72 @@
+package org.yearup.data.images;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailServiceTest
+{
+    @TempDir
+    Path root;
+
+    private ThumbnailService thumbnails;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        ImageIO.write(new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB), "jpg", root.resolve("laptop.jpg").toFile());
+        thumbnails = new ThumbnailService(new ImageStore(root.toString()), List.of(100, 1000), false);
+    }
+
+    @AfterEach
+    public void teardown()
+    {
+        thumbnails.shutdown();
+    }
+
+    @Test
+    public void thumbnail_shouldScaleToWidth_andKeepAspectRatio() throws Exception
+    {
+        // act
+        Path thumbnail = thumbnails.thumbnail("laptop.jpg", 100).get();
+
+        // assert
+        BufferedImage image = ImageIO.read(thumbnail.toFile());
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+        assertEquals(root.resolve(ThumbnailService.DIRECTORY), thumbnail.getParent());
+    }
+
+    @Test
+    public void thumbnail_shouldNeverScaleUp() throws Exception
+    {
+        // act
+        Path thumbnail = thumbnails.thumbnail("laptop.jpg", 1000).get();
+
+        // assert
+        assertEquals(800, ImageIO.read(thumbnail.toFile()).getWidth());
+    }
+
+    @Test
+    public void thumbnail_shouldReuseVariant_andRejectUnknownWidthsAndImages() throws Exception
+    {
+        // act
+        CompletableFuture<Path> first = thumbnails.thumbnail("laptop.jpg", 100);
+        CompletableFuture<Path> second = thumbnails.thumbnail("laptop.jpg", 100);
+
+        // assert
+        assertEquals(first.get(), second.get());
+        assertEquals(first.get(), thumbnails.thumbnail("laptop.jpg", 100).get());
+        assertNull(thumbnails.thumbnail("missing.jpg", 100));
+        assertThrows(IllegalArgumentException.class, () -> thumbnails.thumbnail("laptop.jpg", 123));
+    }
+}
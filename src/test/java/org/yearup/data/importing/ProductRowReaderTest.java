@@ -0,0 +1,72 @@
+package org.yearup.data.importing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductRowReaderTest
+{
+    @Test
+    public void csv_shouldMapColumnsByHeader_andKeepQuotedCommas()
+    {
+        // arrange
+        String feed = "category_id,name,price,description,featured\n"
+                + "1,Tablet,199.50,\"Light, fast and \"\"thin\"\"\",true\n"
+                + "\n"
+                + "2,Scarf,abc,,false\n";
+
+        // act
+        List<ProductRow> rows = readAll(ProductRowReader.csv(new StringReader(feed)));
+
+        // assert
+        assertEquals(2, rows.size(), "The header and the blank line are not rows.");
+        ProductRow tablet = rows.get(0);
+        assertEquals(2, tablet.getLine());
+        assertEquals("Tablet", tablet.getProduct().getName());
+        assertEquals(new BigDecimal("199.50"), tablet.getProduct().getPrice());
+        assertEquals("Light, fast and \"thin\"", tablet.getProduct().getDescription());
+        assertTrue(tablet.getProduct().isFeatured());
+        assertTrue(rows.get(1).isError(), "The price of line 4 is not a number.");
+        assertEquals(4, rows.get(1).getLine());
+    }
+
+    @Test
+    public void csv_withoutRequiredColumns_shouldBeRejected()
+    {
+        // arrange
+        ProductRowReader reader = ProductRowReader.csv(new StringReader("name,color\nTablet,Black\n"));
+
+        // act / assert
+        assertThrows(IllegalArgumentException.class, reader::hasNext);
+    }
+
+    @Test
+    public void ndjson_shouldReadOneProductPerLine_andReportBadLines()
+    {
+        // arrange
+        String feed = "{\"name\":\"Tablet\",\"price\":199.5,\"categoryId\":1}\n"
+                + "{\"name\":\n";
+
+        // act
+        List<ProductRow> rows = readAll(ProductRowReader.ndjson(new StringReader(feed), new ObjectMapper()));
+
+        // assert
+        assertEquals(2, rows.size());
+        assertEquals("Tablet", rows.get(0).getProduct().getName());
+        assertEquals(1, rows.get(0).getProduct().getCategoryId());
+        assertTrue(rows.get(1).isError());
+    }
+
+    private static List<ProductRow> readAll(ProductRowReader reader)
+    {
+        List<ProductRow> rows = new ArrayList<>();
+        reader.forEachRemaining(rows::add);
+        return rows;
+    }
+}
@@ -0,0 +1,140 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.events.CartItemAddedEvent;
+import org.yearup.data.events.OrderPlacedEvent;
+import org.yearup.data.interfaces.OrderDao;
+import org.yearup.models.Product;
+import org.yearup.models.Profile;
+import org.yearup.models.User;
+import org.yearup.models.cart.ShoppingCart;
+import org.yearup.models.cart.ShoppingCartItem;
+import org.yearup.models.order.Order;
+import org.yearup.models.order.OrderLineItem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class BestSellersIndexTest
+{
+    private BestSellersIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        // product 1 sold 3 units, product 2 sold 1 unit
+        index = new BestSellersIndex(new UnitsSold(Map.of(1, 3L, 2, 1L)));
+        index.rebuild(List.of(product(1).category(1).build(), product(2).category(1).build(),
+                              product(3).category(1).build(), product(4).category(2).build()));
+    }
+
+    @Test
+    public void top_shouldRankBySalesLoadedAtStartup()
+    {
+        // act / assert
+        assertArrayEquals(new int[]{1, 2}, index.top(1, 10));
+        assertArrayEquals(new int[]{1}, index.top(1, 1));
+        assertEquals(0, index.top(2, 10).length);
+    }
+
+    @Test
+    public void top_shouldFollowOrdersAndCartAdditions()
+    {
+        // act: 2 now has 1 + 3 units, 3 has one cart addition
+        index.onOrderPlaced(order(line(2, 3), line(4, 1)));
+        index.onCartItemAdded(new CartItemAddedEvent(7, 3));
+
+        // assert
+        assertArrayEquals(new int[]{2, 1, 3}, index.top(1, 10));
+        assertArrayEquals(new int[]{4}, index.top(2, 10));
+    }
+
+    @Test
+    public void top_shouldKeepOnlyTheBestProducts_andFollowCategoryMoves()
+    {
+        // arrange: more products than the heap holds, product 100 + i sold i units
+        List<Product> products = new ArrayList<>();
+        List<OrderLineItem> lines = new ArrayList<>();
+        for (int i = 1; i <= BestSellersIndex.TOP_K * 2; i++)
+        {
+            products.add(product(100 + i).category(5).build());
+            lines.add(line(100 + i, i));
+        }
+        index.rebuild(products);
+
+        // act
+        index.onOrderPlaced(order(lines.toArray(new OrderLineItem[0])));
+        index.productSaved(product(100 + BestSellersIndex.TOP_K * 2).category(6).build());
+
+        // assert: the best seller moved away, the next TOP_K best remain in order
+        int[] expected = IntStream.range(0, BestSellersIndex.TOP_K)
+                                  .map(i -> 100 + BestSellersIndex.TOP_K * 2 - 1 - i)
+                                  .toArray();
+        assertArrayEquals(expected, index.top(5, BestSellersIndex.TOP_K));
+        assertArrayEquals(new int[]{100 + BestSellersIndex.TOP_K * 2}, index.top(6, 10));
+    }
+
+    private static OrderPlacedEvent order(OrderLineItem... lines)
+    {
+        return new OrderPlacedEvent(1, List.of(lines));
+    }
+
+    private static OrderLineItem line(int productId, int quantity)
+    {
+        return new OrderLineItem(0, 1, productId, BigDecimal.ONE, quantity, 0);
+    }
+
+    private static final class UnitsSold implements OrderDao
+    {
+        private final Map<Integer, Long> units;
+
+        private UnitsSold(Map<Integer, Long> units)
+        {
+            this.units = units;
+        }
+
+        @Override
+        public Map<Integer, Long> getUnitsSoldByProduct()
+        {
+            return units;
+        }
+
+        @Override
+        public Order createOrder(Order order, Profile profile, ShoppingCart cart)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OrderLineItem creatOrderLineItem(Order order, OrderLineItem line, Product product, ShoppingCartItem item)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Order insertOrder(User user, Profile profile, ShoppingCart cart)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void insertOrderLineItem(Order order, ShoppingCart cart)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forEachOrderBasket(ObjIntConsumer<int[]> consumer)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+import org.yearup.models.ProductFacets;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.paging.PageRequest;
+import org.yearup.models.paging.ProductPage;
+
+import java.util.ArrayList;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class CatalogSnapshotTest
+{
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    public void setup()
+    {
+        snapshot = CatalogSnapshot.of(List.of(
+                new Product(1, "Smartphone", new BigDecimal("499.99"), 1, "", "Black", 50, false, "smartphone.jpg"),
+                new Product(2, "Laptop", new BigDecimal("899.99"), 1, "", "Gray", 30, false, "laptop.jpg"),
+                new Product(3, "Headphones", new BigDecimal("99.99"), 1, "", "White", 100, true, "headphones.jpg"),
+                new Product(4, "Men's T-Shirt", new BigDecimal("29.99"), 2, "", "Charcoal", 50, true, "mens-tshirt.jpg"),
+                new Product(6, "Men's Dress Shirt", new BigDecimal("49.99"), 2, "", "White", 40, false, "mens-dress-shirt.jpg"),
+                new Product(11, "Coffee Maker", new BigDecimal("79.99"), 3, "", "Black", 30, false, "coffee-maker.jpg")
+        ));
+    }
+
+    @Test
+    public void search_byCategoryAndPrice_shouldMatchTheSqlFilter()
+    {
+        // arrange
+        ProductFilter filter = new ProductFilter(List.of(1), new BigDecimal("50"), new BigDecimal("500"), null);
+
+        // act
+        List<Integer> ids = idsOf(snapshot.search(filter));
+
+        // assert
+        assertEquals(List.of(1, 3), ids, "Because only the smartphone and headphones are in category 1 between 50 and 500.");
+    }
+
+    @Test
+    public void search_withSeveralCategoriesAndColors_shouldOrEachGroup()
+    {
+        // arrange
+        ProductFilter filter = new ProductFilter(List.of(2, 3), null, null, List.of("white", "BLACK"));
+
+        // act
+        List<Integer> ids = idsOf(snapshot.search(filter));
+
+        // assert
+        assertEquals(List.of(6, 11), ids, "Colors should match case-insensitively across both categories.");
+    }
+
+    @Test
+    public void search_withInclusivePriceBounds_shouldIncludeTheBoundaryPrices()
+    {
+        // arrange
+        ProductFilter filter = new ProductFilter(null, new BigDecimal("49.99"), new BigDecimal("99.99"), null);
+
+        // act
+        List<Integer> ids = idsOf(snapshot.search(filter));
+
+        // assert
+        assertEquals(List.of(3, 6, 11), ids);
+    }
+
+    @Test
+    public void with_and_without_shouldNotChangeTheOriginalSnapshot()
+    {
+        // arrange
+        Product updated = new Product(3, "Headphones", new BigDecimal("19.99"), 2, "", "Red", 100, true, "headphones.jpg");
+
+        // act
+        CatalogSnapshot next = snapshot.with(updated).without(1);
+
+        // assert
+        assertEquals(6, snapshot.size(), "The original snapshot is immutable.");
+        assertEquals(new BigDecimal("99.99"), snapshot.getById(3).getPrice());
+        assertEquals(5, next.size());
+        assertNull(next.getById(1));
+        assertEquals(List.of(3, 4, 6), idsOf(next.search(new ProductFilter(List.of(2), null, null, null))));
+        assertEquals(List.of(3), idsOf(next.search(new ProductFilter(null, null, new BigDecimal("20"), null))));
+    }
+
+    @Test
+    public void page_walkingEveryCursor_shouldVisitEachMatchOnceInSortOrder()
+    {
+        // arrange
+        List<Integer> expectedByPriceDesc = List.of(2, 1, 3, 11, 6, 4);
+        List<Integer> expectedByName = List.of(11, 3, 2, 6, 4, 1);
+
+        // act
+        List<Integer> byPriceDesc = walk("price_desc");
+        List<Integer> byName = walk("name");
+
+        // assert
+        assertEquals(expectedByPriceDesc, byPriceDesc);
+        assertEquals(expectedByName, byName);
+    }
+
+    @Test
+    public void facets_shouldCountEveryMatchPerColorCategoryAndPriceBucket()
+    {
+        // arrange
+        ProductFilter filter = new ProductFilter(List.of(1, 2), null, new BigDecimal("500"), null);
+
+        // act
+        ProductFacets facets = snapshot.facets(snapshot.match(filter));
+
+        // assert
+        assertEquals(2, facets.getCategories().get(1));
+        assertEquals(2, facets.getCategories().get(2));
+        assertEquals(2, facets.getColors().get("White"));
+        assertEquals(2, facets.getPrices().get(1).getCount(), "The t-shirt and the dress shirt cost between 25 and 50.");
+        assertEquals(1, facets.getPrices().get(4).getCount(), "The smartphone costs between 250 and 500.");
+    }
+
+    @Test
+    public void with_and_without_shouldIndexLikeASnapshotBuiltFromScratch()
+    {
+        // arrange
+        String[] names = {"Lamp", "lamp", "Émile", "Emily", null, "Zebra", "apple"};
+        String[] colors = {"Black", "white", null};
+        Random random = new Random(42);
+        Map<Integer, Product> catalog = new TreeMap<>();
+        CatalogSnapshot patched = CatalogSnapshot.empty();
+
+        for (int step = 0; step < 400; step++)
+        {
+            // act: mostly saves, some of them replacing a product, and some removals
+            int id = 1 + random.nextInt(150);
+            if (random.nextInt(4) == 0)
+            {
+                catalog.remove(id);
+                patched = patched.without(id);
+            }
+            else
+            {
+                Product saved = product(id).name(names[random.nextInt(names.length)])
+                                           .price(random.nextInt(5) + ".99")
+                                           .category(1 + random.nextInt(3))
+                                           .color(colors[random.nextInt(colors.length)])
+                                           .featured(random.nextBoolean())
+                                           .build();
+                catalog.put(id, saved);
+                patched = patched.with(saved);
+            }
+
+            // assert
+            CatalogSnapshot rebuilt = CatalogSnapshot.of(catalog.values());
+            assertEquals(idsOf(rebuilt.products()), idsOf(patched.products()), "step " + step);
+            assertEquals(rebuilt.featured(), patched.featured(), "step " + step);
+            for (String sort : List.of("price_asc", "price_desc", "name"))
+            {
+                assertEquals(walk(rebuilt, sort), walk(patched, sort), sort + " at step " + step);
+            }
+            for (int category = 1; category <= 3; category++)
+            {
+                ProductFilter filter = new ProductFilter(List.of(category), null, null, null);
+                assertEquals(rebuilt.match(filter), patched.match(filter), "category " + category + " at step " + step);
+            }
+            ProductFilter black = new ProductFilter(null, new BigDecimal("1"), new BigDecimal("3"), List.of("black"));
+            assertEquals(rebuilt.match(black), patched.match(black), "step " + step);
+        }
+    }
+
+    @Test
+    public void page_byName_shouldIgnoreCaseAndAccents_likeMySql()
+    {
+        // arrange
+        CatalogSnapshot names = CatalogSnapshot.of(List.of(
+                product(1).name("eMma").build(),
+                product(2).name("Émile").build(),
+                product(3).name("Emily").build(),
+                product(4).name("emile").build()
+        ));
+
+        // act
+        List<Integer> byName = walk(names, "name");
+
+        // assert
+        assertEquals(List.of(2, 4, 3, 1), byName, "Émile and emile tie and fall back to product_id.");
+    }
+
+    private List<Integer> walk(String sort)
+    {
+        return walk(snapshot, sort);
+    }
+
+    private static List<Integer> walk(CatalogSnapshot snapshot, String sort)
+    {
+        List<Integer> visited = new ArrayList<>();
+        String after = null;
+        do
+        {
+            PageRequest request = PageRequest.of(sort, 4, after);
+            ProductPage page = ProductPage.of(snapshot.page(snapshot.match(new ProductFilter()), request), request);
+            visited.addAll(idsOf(page.getItems()));
+            after = page.getNextCursor();
+        } while (after != null);
+        return visited;
+    }
+
+    private static List<Integer> idsOf(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+}
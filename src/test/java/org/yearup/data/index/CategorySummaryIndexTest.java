@@ -0,0 +1,89 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class CategorySummaryIndexTest
+{
+    private CategorySummaryIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new CategorySummaryIndex();
+        index.rebuildCategories(List.of(new Category(1, "Electronics", ""), new Category(2, "Fashion", "")));
+        index.rebuild(List.of(product(1).category(1).price("499.99").build(),
+                              product(2).category(1).price("99.99").featured(true).build(),
+                              product(3).category(1).price("899.99").build()));
+    }
+
+    @Test
+    public void summaries_shouldAggregateEveryCategory()
+    {
+        // act
+        List<CategorySummary> summaries = index.summaries();
+
+        // assert
+        assertEquals(2, summaries.size());
+        assertSummary(summaries.get(0), 1, 3, 1, "99.99", "899.99");
+        assertSummary(summaries.get(1), 2, 0, 0, null, null);
+    }
+
+    @Test
+    public void summaries_shouldFollowProductWrites()
+    {
+        // act: the cheapest moves category and stops being featured, the most expensive is deleted
+        index.productSaved(product(2).category(2).price("99.99").build());
+        index.productRemoved(3);
+        index.productSaved(product(4).category(2).price("29.99").featured(true).build());
+
+        // assert
+        List<CategorySummary> summaries = index.summaries();
+        assertSummary(summaries.get(0), 1, 1, 0, "499.99", "499.99");
+        assertSummary(summaries.get(1), 2, 2, 1, "29.99", "99.99");
+    }
+
+    @Test
+    public void summaries_shouldKeepEqualPrices_untilTheLastProductAtThatPriceIsGone()
+    {
+        // arrange
+        index.productSaved(product(4).category(1).price("99.99").build());
+
+        // act
+        index.productRemoved(2);
+
+        // assert
+        assertSummary(index.summaries().get(0), 1, 3, 0, "99.99", "899.99");
+    }
+
+    @Test
+    public void summaries_shouldFollowCategoryWrites()
+    {
+        // act
+        index.categorySaved(new Category(2, "Clothing", ""));
+        index.categorySaved(new Category(3, "Garden", ""));
+        index.categoryRemoved(1);
+
+        // assert
+        List<CategorySummary> summaries = index.summaries();
+        assertEquals(List.of("Clothing", "Garden"), summaries.stream().map(CategorySummary::getName).toList());
+    }
+
+    private static void assertSummary(CategorySummary summary, int categoryId, int products, int featured,
+                                      String minPrice, String maxPrice)
+    {
+        assertEquals(categoryId, summary.getCategoryId());
+        assertEquals(products, summary.getProductCount());
+        assertEquals(featured, summary.getFeaturedCount());
+        assertEquals(minPrice == null ? null : new BigDecimal(minPrice), summary.getMinPrice());
+        assertEquals(maxPrice == null ? null : new BigDecimal(maxPrice), summary.getMaxPrice());
+    }
+}
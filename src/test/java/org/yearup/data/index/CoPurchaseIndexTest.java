@@ -0,0 +1,110 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.events.OrderPlacedEvent;
+import org.yearup.models.order.OrderLineItem;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoPurchaseIndexTest
+{
+    private CoPurchaseIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new CoPurchaseIndex(null, true);
+    }
+
+    @Test
+    public void related_shouldRankProductsByOrdersTogether()
+    {
+        // arrange: 1 was bought with 2 three times, with 3 twice and with 4 once
+        List<int[]> baskets = List.of(
+                new int[]{1, 2}, new int[]{1, 2, 3}, new int[]{2, 1},
+                new int[]{3, 1}, new int[]{1, 4}, new int[]{5, 6}
+        );
+
+        // act
+        index.install(countPairs(baskets), scanned(1, 2, 3, 4, 5, 6));
+
+        // assert
+        assertTrue(index.isReady());
+        assertArrayEquals(new int[]{2, 3, 4}, index.related(1));
+        assertArrayEquals(new int[]{1, 3}, index.related(2));
+        assertEquals(0, index.related(42).length);
+    }
+
+    @Test
+    public void countPairs_shouldMatchSequentialCounts_whenSplitOverManyTasks()
+    {
+        // arrange: enough orders for several fork/join leaves
+        List<int[]> baskets = new ArrayList<>();
+        for (int i = 0; i < 5000; i++)
+        {
+            baskets.add(new int[]{1 + i % 7, 8 + i % 5, 13});
+        }
+
+        // act
+        Map<Integer, IntCounts> counts = countPairs(baskets);
+
+        // assert
+        assertEquals(5000, counts.get(13).get(8) + counts.get(13).get(9) + counts.get(13).get(10)
+                           + counts.get(13).get(11) + counts.get(13).get(12));
+        assertEquals(1000, counts.get(8).get(13));
+        assertEquals(0, counts.get(8).get(9));
+    }
+
+    @Test
+    public void onOrderPlaced_shouldUpdateLists_andReplayOrdersPlacedDuringBuild()
+    {
+        // arrange: order 6 committed after the scan read order 7
+        index.onOrderPlaced(order(6, 1, 3));
+        index.onOrderPlaced(order(7, 1, 3));
+        index.onOrderPlaced(order(8, 1, 3));
+
+        // act: the build saw orders 1, 2 and 7
+        index.install(countPairs(List.of(new int[]{1, 2}, new int[]{1, 3}, new int[]{1, 3})), scanned(1, 2, 7));
+        index.onOrderPlaced(order(9, 1, 2, 2));
+
+        // assert: 1-3 from the build and orders 6 and 8, 1-2 from the build and order 9; order 7 is not counted twice
+        assertArrayEquals(new int[]{3, 2}, index.related(1));
+        index.onOrderPlaced(order(10, 2, 1));
+        index.onOrderPlaced(order(11, 2, 1));
+        index.onOrderPlaced(order(12, 2, 1));
+        assertArrayEquals(new int[]{2, 3}, index.related(1));
+    }
+
+    private static Map<Integer, IntCounts> countPairs(List<int[]> baskets)
+    {
+        return ForkJoinPool.commonPool().invoke(new CoPurchaseIndex.CountPairs(baskets, 0, baskets.size()));
+    }
+
+    private static BitSet scanned(int... orderIds)
+    {
+        BitSet scanned = new BitSet();
+        for (int orderId : orderIds)
+        {
+            scanned.set(orderId);
+        }
+        return scanned;
+    }
+
+    private static OrderPlacedEvent order(int orderId, int... productIds)
+    {
+        List<OrderLineItem> lines = new ArrayList<>();
+        for (int productId : productIds)
+        {
+            lines.add(new OrderLineItem(0, orderId, productId, BigDecimal.ONE, 1, 0));
+        }
+        return new OrderPlacedEvent(orderId, lines);
+    }
+}
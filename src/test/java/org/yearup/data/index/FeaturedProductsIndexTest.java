@@ -0,0 +1,55 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class FeaturedProductsIndexTest
+{
+    private FeaturedProductsIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new FeaturedProductsIndex();
+        index.rebuild(List.of(
+                product(9).category(2).featured(true).build(),
+                product(3).category(1).featured(true).build(),
+                product(1).category(1).build(),
+                product(4).category(2).featured(true).build()
+        ));
+    }
+
+    @Test
+    public void featured_shouldListFeaturedProductsInIdOrder()
+    {
+        // act / assert
+        assertEquals(List.of(3, 4, 9), idsOf(index.featured(null)));
+        assertEquals(List.of(4, 9), idsOf(index.featured(2)));
+        assertTrue(index.featured(7).isEmpty());
+    }
+
+    @Test
+    public void productSaved_shouldAddAndDropFeaturedProducts()
+    {
+        // act
+        index.productSaved(product(1).category(1).featured(true).build());
+        index.productSaved(product(9).category(2).build());
+        index.productRemoved(4);
+
+        // assert
+        assertEquals(List.of(1, 3), idsOf(index.featured(null)));
+        assertTrue(index.featured(2).isEmpty(), "Both featured products of category 2 are gone.");
+    }
+
+    private static List<Integer> idsOf(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+}
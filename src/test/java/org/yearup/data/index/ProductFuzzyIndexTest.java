@@ -0,0 +1,76 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class ProductFuzzyIndexTest
+{
+    private ProductFuzzyIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductFuzzyIndex();
+        index.rebuild(List.of(
+                product(3).name("Headphones").build(),
+                product(11).name("Coffee Maker").build(),
+                product(13).name("Blender").build(),
+                product(14).name("Bender Toy").build()
+        ));
+    }
+
+    @Test
+    public void search_shouldToleratePerWordTypos()
+    {
+        // act
+        List<Integer> headphones = idsOf(index.search("hedphones", 10));
+        List<Integer> coffee = idsOf(index.search("cofee makr", 10));
+
+        // assert
+        assertEquals(List.of(3), headphones);
+        assertEquals(List.of(11), coffee);
+    }
+
+    @Test
+    public void search_shouldRankFewerEditsFirst()
+    {
+        // act
+        List<Integer> ids = idsOf(index.search("blendr", 10));
+
+        // assert
+        assertEquals(List.of(13, 14), ids, "blender is one edit away, bender two.");
+    }
+
+    @Test
+    public void search_shouldIgnoreWordsOfRemovedProducts()
+    {
+        // act
+        index.productRemoved(13);
+        index.productSaved(product(3).name("Earbuds").build());
+
+        // assert
+        assertEquals(List.of(14), idsOf(index.search("blendr", 10)));
+        assertTrue(index.search("headphones", 10).isEmpty());
+        assertEquals(List.of(3), idsOf(index.search("earbud", 10)));
+    }
+
+    @Test
+    public void levenshtein_shouldCountEdits()
+    {
+        assertEquals(0, ProductFuzzyIndex.levenshtein("shirt", "shirt"));
+        assertEquals(1, ProductFuzzyIndex.levenshtein("blendr", "blender"));
+        assertEquals(3, ProductFuzzyIndex.levenshtein("kitten", "sitting"));
+    }
+
+    private static List<Integer> idsOf(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+}
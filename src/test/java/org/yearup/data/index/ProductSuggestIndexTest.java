@@ -0,0 +1,115 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Category;
+import org.yearup.models.Suggestion;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class ProductSuggestIndexTest
+{
+    private Map<Integer, Long> views;
+    private ProductSuggestIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        views = new HashMap<>();
+        index = new ProductSuggestIndex(productId -> views.getOrDefault(productId, 0L));
+        index.rebuildCategories(List.of(new Category(2, "Fashion", "")));
+        index.rebuild(List.of(
+                product(4).name("Men's T-Shirt").featured(true).build(),
+                product(5).name("Men's Jeans").build(),
+                product(6).name("Men's Dress Shirt").build(),
+                product(8).name("Women's Jeans").featured(true).build()
+        ));
+    }
+
+    @Test
+    public void suggest_shouldMatchAnyWordAndRankFeaturedFirst_whenViewsAreEqual()
+    {
+        // act
+        List<String> shirts = textsOf(index.suggest("shi", 10));
+        List<String> jeans = textsOf(index.suggest("JEA", 10));
+
+        // assert
+        assertEquals(List.of("Men's T-Shirt", "Men's Dress Shirt"), shirts);
+        assertEquals(List.of("Women's Jeans", "Men's Jeans"), jeans);
+    }
+
+    @Test
+    public void reweigh_shouldRankMostViewedProductsFirst()
+    {
+        // arrange
+        views.put(6, 40L);
+        views.put(5, 3L);
+
+        // act
+        List<String> before = textsOf(index.suggest("mens", 10));
+        index.reweigh();
+        List<String> after = textsOf(index.suggest("mens", 10));
+
+        // assert
+        assertEquals(List.of("Men's T-Shirt", "Men's Dress Shirt", "Men's Jeans"), before);
+        assertEquals(List.of("Men's Dress Shirt", "Men's Jeans", "Men's T-Shirt"), after);
+    }
+
+    @Test
+    public void suggest_shouldIncludeCategories()
+    {
+        // act
+        List<Suggestion> suggestions = index.suggest("fa", 10);
+
+        // assert
+        assertEquals(1, suggestions.size());
+        assertEquals(Suggestion.CATEGORY, suggestions.get(0).getType());
+        assertEquals(2, suggestions.get(0).getId());
+    }
+
+    @Test
+    public void productSavedAndRemoved_shouldUpdateCompletions()
+    {
+        // act
+        index.productSaved(product(5).name("Men's Chinos").build());
+        index.productRemoved(8);
+
+        // assert
+        assertTrue(index.suggest("jea", 10).isEmpty(), "Both jeans were renamed or removed.");
+        assertEquals(List.of("Men's Chinos"), textsOf(index.suggest("mens ch", 10)));
+    }
+
+    @Test
+    public void suggest_shouldFollowSplitAndMergedEdges_asKeysComeAndGo()
+    {
+        // arrange: "shoes" parts from "shirt" after "sh", and "shorts" from "shoes" after "sho"
+        index.productSaved(product(10).name("Shoes").build());
+        index.productSaved(product(11).name("Shorts").build());
+
+        // act
+        List<String> sh = textsOf(index.suggest("sh", 10));
+        List<String> sho = textsOf(index.suggest("sho", 10));
+        index.productRemoved(10);
+        List<String> shoAfterRemove = textsOf(index.suggest("sho", 10));
+        List<String> shorAfterRemove = textsOf(index.suggest("shor", 10));
+        List<String> shoe = textsOf(index.suggest("shoe", 10));
+
+        // assert
+        assertEquals(List.of("Men's T-Shirt", "Men's Dress Shirt", "Shoes", "Shorts"), sh);
+        assertEquals(List.of("Shoes", "Shorts"), sho);
+        assertEquals(List.of("Shorts"), shoAfterRemove);
+        assertEquals(List.of("Shorts"), shorAfterRemove);
+        assertTrue(shoe.isEmpty());
+    }
+
+    private static List<String> textsOf(List<Suggestion> suggestions)
+    {
+        return suggestions.stream().map(Suggestion::getText).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,99 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.models.Product;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class ProductTextIndexTest
+{
+    private ProductTextIndex index;
+
+    @BeforeEach
+    public void setup()
+    {
+        index = new ProductTextIndex();
+        index.rebuild(List.of(
+                product(3).name("Headphones")
+                        .description("Immerse yourself in music with these high-quality headphones.").build(),
+                product(4).name("Men's T-Shirt")
+                        .description("A comfortable and stylish t-shirt for everyday wear.").build(),
+                product(6).name("Men's Dress Shirt")
+                        .description("A sophisticated dress shirt for formal occasions.").build(),
+                product(7).name("Women's Dress")
+                        .description("A beautiful and elegant dress for special occasions.").build(),
+                product(9).name("Women's Blouse").description("A versatile and chic blouse for everyday wear.").build()
+        ));
+    }
+
+    @Test
+    public void search_shouldRankNameMatchesFirst()
+    {
+        // act
+        List<Integer> ids = idsOf(index.search("dress", 10));
+
+        // assert
+        assertEquals(List.of(7, 6), ids, "The women's dress has the term in its short name.");
+    }
+
+    @Test
+    public void search_withPhrase_shouldRequireAdjacentTerms()
+    {
+        // act
+        List<Integer> phrase = idsOf(index.search("\"everyday wear\" stylish", 10));
+        List<Integer> hyphenated = idsOf(index.search("t-shirt", 10));
+
+        // assert
+        assertEquals(List.of(4), phrase);
+        assertEquals(List.of(4), hyphenated);
+    }
+
+    @Test
+    public void search_withPrefix_shouldExpandTerms()
+    {
+        // act
+        List<Integer> ids = idsOf(index.search("head*", 10));
+
+        // assert
+        assertEquals(List.of(3), ids);
+    }
+
+    @Test
+    public void search_withShortPrefix_shouldKeepTheMostCommonExpansions()
+    {
+        // arrange: more rare terms than expansions, all sorting before "shirt"
+        for (int i = 0; i < 70; i++)
+        {
+            index.productSaved(product(100 + i).name("Part s" + (1000 + i)).description("Spare part.").build());
+        }
+
+        // act
+        List<Integer> ids = idsOf(index.search("s*", 200));
+
+        // assert
+        assertTrue(ids.containsAll(List.of(4, 6)), "shirt is in more documents than any s1xxx term.");
+    }
+
+    @Test
+    public void productSavedAndRemoved_shouldUpdateTheIndexInPlace()
+    {
+        // act
+        index.productSaved(product(9).name("Women's Silk Blouse").description("Silk blouse.").build());
+        index.productRemoved(3);
+
+        // assert
+        assertEquals(List.of(9), idsOf(index.search("silk", 10)));
+        assertTrue(index.search("headphones", 10).isEmpty());
+        assertTrue(index.search("versatile", 10).isEmpty(), "The old description should be gone.");
+    }
+
+    private static List<Integer> idsOf(List<Product> products)
+    {
+        return products.stream().map(Product::getProductId).collect(Collectors.toList());
+    }
+}
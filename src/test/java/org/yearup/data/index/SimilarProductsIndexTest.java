@@ -0,0 +1,196 @@
+package org.yearup.data.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yearup.models.Product;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.yearup.data.TestProducts.product;
+
+class SimilarProductsIndexTest
+{
+    @TempDir
+    Path directory;
+
+    private static final List<Product> PRODUCTS = List.of(
+            product(1).name("Wireless Headphones")
+                    .description("Noise cancelling over ear headphones").color("Black").category(1).build(),
+            product(2).name("Bluetooth Headphones")
+                    .description("Wireless over ear headphones with long battery").color("Black").category(1).build(),
+            product(3).name("Men's Dress Shirt")
+                    .description("Slim fit cotton dress shirt").color("White").category(2).build(),
+            product(4).name("Women's Dress Shirt")
+                    .description("Cotton shirt for the office").color("White").category(2).build(),
+            product(5).name("Garden Hose").description("Fifty foot expandable hose").color("Green").category(3).build()
+    );
+
+    @Test
+    public void similar_shouldRankProductsWithSharedTextFirst()
+    {
+        // arrange
+        SimilarProductsIndex index = new SimilarProductsIndex("");
+        index.rebuild(PRODUCTS);
+
+        // act / assert
+        assertEquals(2, index.similar(1, 1)[0]);
+        assertEquals(4, index.similar(3, 1)[0]);
+        assertFalse(contains(index.similar(5, 4), 5), "A product is not similar to itself.");
+        assertNull(index.similar(42, 3));
+    }
+
+    @Test
+    public void productSaved_shouldMoveProductToItsNewNeighbours()
+    {
+        // arrange
+        SimilarProductsIndex index = new SimilarProductsIndex("");
+        index.rebuild(PRODUCTS);
+
+        // act
+        index.productSaved(product(5).name("Over Ear Headphones")
+                .description("Wireless noise cancelling headphones").color("Black").category(1).build());
+        index.productRemoved(2);
+
+        // assert
+        assertEquals(5, index.similar(1, 1)[0]);
+        assertNull(index.similar(2, 1));
+        assertFalse(contains(index.similar(1, 4), 2));
+    }
+
+    @Test
+    public void rebuild_shouldLoadSavedIndex_onlyForTheSameProducts() throws Exception
+    {
+        // arrange
+        Path file = directory.resolve("similar.idx");
+        new SimilarProductsIndex(file.toString()).rebuild(PRODUCTS);
+        long saved = Files.getLastModifiedTime(file).toMillis();
+
+        // act
+        SimilarProductsIndex restarted = new SimilarProductsIndex(file.toString());
+        restarted.rebuild(PRODUCTS);
+
+        // assert: loaded, so nothing is written back
+        assertEquals(2, restarted.similar(1, 1)[0]);
+        assertEquals(saved, Files.getLastModifiedTime(file).toMillis());
+
+        // act: any indexed text change makes the file stale
+        List<Product> changed = new ArrayList<>(PRODUCTS);
+        changed.set(4, product(5).name("Garden Hose Reel")
+                .description("Fifty foot expandable hose").color("Green").category(3).build());
+        Files.setLastModifiedTime(file, FileTime.fromMillis(saved - 10_000));
+        new SimilarProductsIndex(file.toString()).rebuild(changed);
+
+        // assert
+        assertNotEquals(saved - 10_000, Files.getLastModifiedTime(file).toMillis());
+    }
+
+    @Test
+    public void save_shouldCompactTombstones_soTheSavedIndexIsReused() throws Exception
+    {
+        // arrange
+        Path file = directory.resolve("similar.idx");
+        SimilarProductsIndex index = new SimilarProductsIndex(file.toString());
+        index.rebuild(PRODUCTS);
+        Product moved = product(5).name("Over Ear Headphones")
+                .description("Wireless noise cancelling headphones").color("Black").category(1).build();
+        index.productSaved(moved);
+
+        // act
+        index.save();
+        long saved = Files.getLastModifiedTime(file).toMillis();
+        List<Product> changed = new ArrayList<>(PRODUCTS);
+        changed.set(4, moved);
+        SimilarProductsIndex restarted = new SimilarProductsIndex(file.toString());
+        restarted.rebuild(changed);
+
+        // assert
+        assertEquals(saved, Files.getLastModifiedTime(file).toMillis());
+        assertEquals(5, restarted.similar(1, 1)[0]);
+    }
+
+    @Test
+    public void hnswGraph_shouldReturnKResults_whenMostCandidatesAreRemoved()
+    {
+        // arrange
+        Random random = new Random(11);
+        HnswGraph graph = new HnswGraph(16, 8, 50);
+        for (int i = 0; i < 500; i++)
+        {
+            graph.add(i, randomUnitVector(random, 16));
+        }
+        IntStream.range(0, 500).forEach(graph::insert);
+        IntStream.range(0, 500).filter(i -> i % 4 != 0).forEach(graph::remove);
+
+        // act
+        int[] found = graph.search(randomUnitVector(random, 16), 20, 20, id -> true);
+
+        // assert
+        assertEquals(20, found.length);
+        assertTrue(Arrays.stream(found).allMatch(id -> id % 4 == 0));
+        assertEquals(375, graph.removed());
+    }
+
+    @Test
+    public void hnswGraph_shouldFindExactNeighboursOfMostQueries()
+    {
+        // arrange: random unit vectors, inserted in parallel
+        Random random = new Random(7);
+        int count = 2000;
+        float[][] vectors = new float[count][];
+        HnswGraph graph = new HnswGraph(32, 12, 100);
+        for (int i = 0; i < count; i++)
+        {
+            vectors[i] = randomUnitVector(random, 32);
+            graph.add(i, vectors[i]);
+        }
+        IntStream.range(0, count).parallel().forEach(graph::insert);
+
+        // act
+        int found = 0;
+        for (int q = 0; q < 100; q++)
+        {
+            float[] query = randomUnitVector(random, 32);
+            int exact = 0;
+            for (int i = 1; i < count; i++)
+            {
+                if (HnswGraph.distance(query, vectors[i]) < HnswGraph.distance(query, vectors[exact]))
+                {
+                    exact = i;
+                }
+            }
+            if (graph.search(query, 1, 64, id -> true)[0] == exact)
+            {
+                found++;
+            }
+        }
+
+        // assert
+        assertTrue(found >= 90, "Recall@1 was " + found + "%");
+    }
+
+    private static boolean contains(int[] values, int value)
+    {
+        return Arrays.stream(values).anyMatch(v -> v == value);
+    }
+
+    private static float[] randomUnitVector(Random random, int dimensions)
+    {
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++)
+        {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < dimensions; i++)
+        {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -3,7 +3,9 @@ package org.yearup.data.mysql;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.yearup.models.Category;
+import org.yearup.models.CategorySummary;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -124,4 +126,19 @@ public class MySqlCategoryDaoTest extends BaseDaoTestClass {
         Category result = dao.getById(categoryIdToDelete);
         assertNull(result, "The Category should no longer exist in the database after deletion.");
     }
+
+    @Test
+    public void test_case_get_summaries() {
+        // Act
+        List<CategorySummary> summaries = dao.getSummaries();
+
+        // Assert
+        assertEquals(3, summaries.size(), "Every category should have a summary");
+        CategorySummary fashion = summaries.get(1);
+        assertEquals("Fashion", fashion.getName());
+        assertEquals(6, fashion.getProductCount(), "The product count should match");
+        assertEquals(2, fashion.getFeaturedCount(), "The featured count should match");
+        assertEquals(new BigDecimal("29.99"), fashion.getMinPrice(), "The lowest price should match");
+        assertEquals(new BigDecimal("79.99"), fashion.getMaxPrice(), "The highest price should match");
+    }
 }
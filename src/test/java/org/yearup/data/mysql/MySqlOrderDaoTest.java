@@ -10,6 +10,8 @@ import org.yearup.models.order.Order;
 import org.yearup.models.order.OrderLineItem;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -57,4 +59,30 @@ public class MySqlOrderDaoTest extends BaseDaoTestClass{
         // Assert
     }
 
+    @Test
+    public void forEachOrderBasket_shouldGroupOrderLinesByOrder() {
+        // Arrange
+        Profile profile = new Profile();
+        profile.setAddress("123 Main St");
+        profile.setCity("TestCity");
+        profile.setState("TestState");
+        profile.setZip("12345");
+        ShoppingCart cart = new ShoppingCart();
+        cart.setTotal(new BigDecimal("99.99"));
+        Order order = new Order();
+        order.setUserId(1);
+        dao.createOrder(order, profile, cart);
+        for (int productId : new int[]{1, 2, 1}) {
+            Product product = new Product(productId, "Product " + productId, new BigDecimal("10.00"), 1, "", "", 1, false, "");
+            dao.creatOrderLineItem(order, new OrderLineItem(), product, new ShoppingCartItem(product, 1, BigDecimal.ZERO));
+        }
+
+        // Act
+        Map<Integer, int[]> baskets = new HashMap<>();
+        dao.forEachOrderBasket((productIds, orderId) -> baskets.put(orderId, productIds));
+
+        // Assert
+        assertArrayEquals(new int[]{1, 2}, baskets.get(order.getOrderId()), "Each product should be listed once.");
+    }
+
 }
@@ -3,9 +3,20 @@ package org.yearup.data.mysql;
 import org.apache.ibatis.javassist.bytecode.DuplicateMemberException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.yearup.data.importing.PriceStockFeedReader;
+import org.yearup.data.importing.ProductRowReader;
+import org.yearup.models.ImportReport;
 import org.yearup.models.Product;
+import org.yearup.models.ProductBatch;
+import org.yearup.models.ProductFilter;
+import org.yearup.models.SyncReport;
+import org.yearup.models.paging.ProductSort;
 
+import java.io.StringReader;
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -87,6 +98,85 @@ class MySqlProductDaoTest extends BaseDaoTestClass
         assertEquals(expectedProducts.size(), actualProducts.size(), "Should return the correct number of products");
     }
 
+    @Test
+    public void forEachMatch_shouldHandOverMatchingProducts_inSortOrder() {
+        // Arrange
+        ProductFilter filter = new ProductFilter(List.of(1), null, null, null);
+        List<Integer> streamedIds = new ArrayList<>();
+
+        // Act
+        dao.forEachMatch(filter, ProductSort.PRICE_ASC, product -> streamedIds.add(product.getProductId()));
+
+        // Assert
+        assertEquals(List.of(3, 1, 2), streamedIds, "Electronics should stream cheapest first.");
+    }
+
+    @Test
+    public void getByIds_shouldKeepRequestOrder_andReportMissingIds() {
+        // Act
+        ProductBatch batch = dao.getByIds(List.of(3, 999, 1, 3));
+
+        // Assert
+        List<Integer> foundIds = new ArrayList<>();
+        batch.getProducts().forEach(product -> foundIds.add(product.getProductId()));
+        assertEquals(List.of(3, 1), foundIds, "Products should come back once each, in the order asked for.");
+        assertEquals(List.of(999), batch.getMissingIds(), "There is no product 999.");
+    }
+
+    @Test
+    public void importProducts_shouldInsertNewRows_andReportDuplicatesAndErrors() throws SQLException {
+        // Arrange
+        String feed = "name,price,category_id\n"
+                + "Tablet,199.99,1\n"
+                + "tablet,189.99,1\n"
+                + "Smartphone,499.99,1\n"
+                + "Kite,19.99,99\n";
+
+        // Act
+        ImportReport report = dao.importProducts(ProductRowReader.csv(new StringReader(feed)));
+
+        // Assert
+        assertEquals(4, report.getRows());
+        assertEquals(1, report.getInserted(), "Only the first Tablet is new.");
+        assertEquals(2, report.getDuplicates(), "The second tablet and the existing Smartphone are duplicates.");
+        assertEquals(1, report.getFailed());
+        assertEquals(5, report.getErrors().get(0).getLine(), "Category 99 does not exist.");
+        assertTrue(dao.productExist("Tablet", 1));
+
+        // the import joined the test transaction, so rolling it back leaves the fixture as it was
+        Connection connection = dataSource.getConnection();
+        assertFalse(connection.getAutoCommit());
+        connection.rollback();
+        assertFalse(dao.productExist("Tablet", 1));
+    }
+
+    @Test
+    public void syncPriceAndStock_shouldOnlyUpdateChangedProducts() throws SQLException {
+        // Arrange: product 1 keeps its price and stock, product 2 gets a new price
+        String feed = "product_id,stock,price\n"
+                + "1,50,499.990\n"
+                + "2,30,849.99\n"
+                + "999,5,1.00\n"
+                + "3,many,99.99\n";
+
+        // Act
+        SyncReport report = dao.syncPriceAndStock(new PriceStockFeedReader(new StringReader(feed)));
+
+        // Assert
+        assertEquals(4, report.getRows());
+        assertEquals(1, report.getChanged());
+        assertEquals(1, report.getUnchanged(), "499.990 is the price product 1 already has.");
+        assertEquals(1, report.getUnknown());
+        assertEquals(1, report.getFailed());
+        assertEquals(new BigDecimal("849.99"), dao.getById(2).getPrice());
+
+        // the sync joined the test transaction, so rolling it back restores the fixture price
+        Connection connection = dataSource.getConnection();
+        assertFalse(connection.getAutoCommit());
+        connection.rollback();
+        assertNotEquals(new BigDecimal("849.99"), dao.getById(2).getPrice());
+    }
+
     /**
      * test for  public List<Product> listByCategoryId(int categoryId)
      */
@@ -312,4 +402,16 @@ class MySqlProductDaoTest extends BaseDaoTestClass
         Product deletedProduct = dao.getById(productIdToDelete);
         assertNull(deletedProduct, "The product should no longer exist in the database after deletion.");
     }
+
+    @Test
+    public void test_case_update_image_url() {
+        // Act: Point product 1 at a new image
+        Product updated = dao.updateImageUrl(1, "0123abcd.jpg");
+
+        // Assert: Only the image changed, and unknown products are reported
+        assertEquals("0123abcd.jpg", updated.getImageUrl());
+        assertEquals("Smartphone", dao.getById(1).getName());
+        assertEquals("0123abcd.jpg", dao.getById(1).getImageUrl());
+        assertNull(dao.updateImageUrl(999999, "0123abcd.jpg"));
+    }
 }
\ No newline at end of file
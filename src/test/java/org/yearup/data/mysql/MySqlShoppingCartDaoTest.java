@@ -2,9 +2,15 @@ package org.yearup.data.mysql;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.yearup.models.ProductBatch;
+import org.yearup.models.User;
+import org.yearup.models.cart.CartItemChange;
 import org.yearup.models.cart.ShoppingCart;
 import org.yearup.models.cart.ShoppingCartItem;
 
+import java.util.Collection;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 //public class MySqlShoppingCartDaoTest extends BaseDaoTestClass {
@@ -96,3 +102,125 @@ import static org.junit.jupiter.api.Assertions.*;
 //
 //
 //}
+
+class MySqlShoppingCartDaoTest extends BaseDaoTestClass
+{
+    private final User user = new User(1, "user", "password", "ROLE_USER");
+    private MySqlShoppingCartDao dao;
+
+    @BeforeEach
+    public void setup()
+    {
+        dao = new MySqlShoppingCartDao(dataSource);
+    }
+
+    @Test
+    public void addItem_shouldInsertALine_whenTheProductIsNotInTheCart()
+    {
+        // act
+        ShoppingCartItem line = dao.addItem(user, 1, 2);
+
+        // assert
+        assertEquals(1, line.getProductId());
+        assertEquals("Smartphone", line.getProduct().getName());
+        assertEquals(2, line.getQuantity());
+        assertEquals(2, dao.getByUserId(user).get(1).getQuantity());
+    }
+
+    @Test
+    public void addItem_shouldReturnTheIncreasedQuantity_whenTheProductIsInTheCart()
+    {
+        // arrange
+        dao.addItem(user, 1, 2);
+
+        // act: the new quantity comes back through LAST_INSERT_ID, not a second read
+        ShoppingCartItem line = dao.addItem(user, 1, 3);
+
+        // assert
+        assertEquals(5, line.getQuantity());
+        assertEquals(5, dao.getByUserId(user).get(1).getQuantity());
+    }
+
+    @Test
+    public void addItem_shouldReturnNull_whenTheProductDoesNotExist()
+    {
+        // act
+        ShoppingCartItem line = dao.addItem(user, 999, 1);
+
+        // assert
+        assertNull(line);
+        assertTrue(dao.getByUserId(user).getItems().isEmpty());
+    }
+
+    @Test
+    public void addItems_shouldMergeDuplicateProducts_intoOneLine()
+    {
+        // arrange
+        dao.addItem(user, 1, 1);
+
+        // act
+        ShoppingCart cart = dao.addItems(user, List.of(new CartItemChange(1, 2),
+                                                       new CartItemChange(3, 1),
+                                                       new CartItemChange(1, 3)));
+
+        // assert
+        assertEquals(2, cart.getItems().size());
+        assertEquals(6, cart.get(1).getQuantity());
+        assertEquals(1, cart.get(3).getQuantity());
+    }
+
+    @Test
+    public void setItems_shouldDeleteTheLine_whenTheQuantityIsZero()
+    {
+        // arrange
+        dao.addItems(user, List.of(new CartItemChange(1, 2), new CartItemChange(3, 1)));
+
+        // act
+        ShoppingCart cart = dao.setItems(user, List.of(new CartItemChange(1, 0), new CartItemChange(3, 4)));
+
+        // assert
+        assertFalse(cart.contains(1));
+        assertEquals(4, cart.get(3).getQuantity());
+        assertFalse(dao.getByUserId(user).contains(1));
+    }
+
+    @Test
+    public void addItems_shouldRejectTheWholeBatch_whenAProductIsUnknown()
+    {
+        // arrange
+        dao.addItem(user, 1, 1);
+
+        // act
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> dao.addItems(user, List.of(new CartItemChange(1, 2), new CartItemChange(999, 1))));
+
+        // assert
+        assertTrue(error.getMessage().contains("999"));
+        assertEquals(1, dao.getByUserId(user).get(1).getQuantity(), "Product 1 was not added either.");
+    }
+
+    @Test
+    public void setItems_shouldUndoEveryLine_whenAWriteInTheBatchFails()
+    {
+        // arrange: the product check lets 999 through, so the foreign key fails it after product 3 was written
+        MySqlProductDao everyProductExists = new MySqlProductDao(dataSource)
+        {
+            @Override
+            public ProductBatch getByIds(Collection<Integer> productIds)
+            {
+                return new ProductBatch();
+            }
+        };
+        dao = new MySqlShoppingCartDao(dataSource, null, everyProductExists);
+        dao.addItem(user, 1, 1);
+
+        // act
+        assertThrows(RuntimeException.class,
+                () -> dao.setItems(user, List.of(new CartItemChange(999, 1), new CartItemChange(3, 2))));
+
+        // assert: undone back to the start of the batch, without losing the line added before it
+        ShoppingCart cart = dao.getByUserId(user);
+        assertFalse(cart.contains(3));
+        assertEquals(1, cart.get(1).getQuantity());
+    }
+}
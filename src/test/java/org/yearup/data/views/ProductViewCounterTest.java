@@ -0,0 +1,129 @@
+package org.yearup.data.views;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yearup.data.events.ProductChangedEvent;
+import org.yearup.data.interfaces.ProductViewDao;
+import org.yearup.models.ProductViews;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductViewCounterTest
+{
+    private StoredViews dao;
+    private ProductViewCounter counter;
+
+    @BeforeEach
+    public void setup()
+    {
+        dao = new StoredViews();
+        dao.views.put(1, 10L);
+        counter = new ProductViewCounter(dao);
+        counter.load();
+    }
+
+    @Test
+    public void flush_shouldWriteOnlyTheViewsSinceTheLastFlush()
+    {
+        // arrange
+        IntStream.range(0, 1000).parallel().forEach(i -> counter.viewed(i % 2 == 0 ? 1 : 2));
+
+        // act
+        counter.flush();
+        counter.viewed(2);
+        counter.flush();
+        counter.flush();
+
+        // assert
+        assertEquals(List.of(Map.of(1, 500L, 2, 500L), Map.of(2, 1L)), dao.batches);
+        assertEquals(510L, dao.views.get(1));
+        assertEquals(510L, counter.views(1));
+        assertEquals(501L, counter.views(2));
+    }
+
+    @Test
+    public void flush_shouldKeepViews_whenTheWriteFails()
+    {
+        // arrange
+        counter.viewed(3);
+        dao.failing = true;
+
+        // act
+        counter.flush();
+        counter.viewed(3);
+        dao.failing = false;
+        counter.flush();
+
+        // assert
+        assertEquals(List.of(Map.of(3, 2L)), dao.batches);
+    }
+
+    @Test
+    public void mostViewed_shouldRankStoredAndNewViews_andForgetDeletedProducts()
+    {
+        // arrange
+        for (int i = 0; i < 11; i++)
+        {
+            counter.viewed(2);
+        }
+        counter.viewed(3);
+        counter.viewed(4);
+
+        // act
+        counter.onProductChanged(ProductChangedEvent.deleted(4));
+        List<ProductViews> top = counter.mostViewed(3);
+
+        // assert
+        assertEquals(List.of(2, 1, 3), top.stream().map(ProductViews::getProductId).toList());
+        assertEquals(11L, top.get(0).getViews());
+        assertEquals(0L, counter.views(4));
+    }
+
+    @Test
+    public void revisited_shouldOnlyCountProductsWithACounter()
+    {
+        // arrange
+        counter.viewed(2);
+        counter.onProductChanged(ProductChangedEvent.deleted(2));
+
+        // act
+        counter.revisited(1);
+        counter.revisited(2);
+        counter.revisited(99);
+        counter.flush();
+
+        // assert
+        assertEquals(11L, counter.views(1));
+        assertEquals(List.of(Map.of(1, 1L)), dao.batches);
+    }
+
+    private static final class StoredViews implements ProductViewDao
+    {
+        private final Map<Integer, Long> views = new HashMap<>();
+        private final List<Map<Integer, Long>> batches = new ArrayList<>();
+        private boolean failing;
+
+        @Override
+        public Map<Integer, Long> getViews()
+        {
+            return new HashMap<>(views);
+        }
+
+        @Override
+        public void addViews(Map<Integer, Long> added)
+        {
+            if (failing)
+            {
+                throw new RuntimeException("Connection refused");
+            }
+            batches.add(Map.copyOf(added));
+            added.forEach((productId, count) -> views.merge(productId, count, Long::sum));
+        }
+    }
+}
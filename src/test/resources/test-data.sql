@@ -77,6 +77,14 @@ CREATE TABLE shopping_cart (
                                FOREIGN KEY (product_id) REFERENCES products(product_id)
 );
 
+-- view counts, written in batches by the application
+CREATE TABLE product_views (
+                               product_id INT NOT NULL,
+                               views BIGINT NOT NULL DEFAULT 0,
+                               PRIMARY KEY (product_id),
+                               FOREIGN KEY (product_id) REFERENCES products(product_id) ON DELETE CASCADE
+);
+
 
 /*  INSERT Users  */
 INSERT INTO users (username, hashed_password, role)